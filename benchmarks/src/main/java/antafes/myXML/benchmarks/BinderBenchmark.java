@@ -0,0 +1,217 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML.benchmarks;
+
+import antafes.myXML.XMLBinder;
+import antafes.myXML.XMLParser;
+import antafes.myXML.XMLWriter;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Throughput of mapping objects with the XMLBinder, compared to handwritten
+ * addChild and getTagValue calls and to per call reflection.
+ *
+ * @author Neithan
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinderBenchmark
+{
+    @Param({"1000"})
+    public int records;
+
+    private ArrayList<Item> items;
+    private Element itemsElement;
+    private XMLBinder<Item> binder;
+
+    @Setup
+    public void setUp()
+    {
+        this.binder = XMLBinder.of(Item.class);
+        this.items = new ArrayList<>();
+
+        for (int i = 0; i < this.records; i++)
+        {
+            Item item = new Item();
+            item.id = i;
+            item.name = "item" + i;
+            item.amount = i * 1.5;
+            item.count = i % 100;
+            item.active = i % 2 == 0;
+            this.items.add(item);
+        }
+
+        XMLWriter writer = new XMLWriter("root");
+        this.itemsElement = writer.addChild("items");
+        this.binder.writeAll(writer, this.itemsElement, this.items);
+    }
+
+    @Benchmark
+    public XMLWriter writeHandwritten()
+    {
+        XMLWriter writer = new XMLWriter("root");
+        Element parent = writer.addChild("items");
+
+        for (Item item : this.items)
+        {
+            Element element = writer.addChild(parent, "item");
+            writer.addChild(element, "id", Long.toString(item.id));
+            writer.addChild(element, "name", item.name);
+            writer.addChild(element, "amount", Double.toString(item.amount));
+            writer.addChild(element, "count", Integer.toString(item.count));
+            writer.addChild(element, "active", Boolean.toString(item.active));
+        }
+
+        return writer;
+    }
+
+    @Benchmark
+    public XMLWriter writeBinder()
+    {
+        XMLWriter writer = new XMLWriter("root");
+        this.binder.writeAll(writer, writer.addChild("items"), this.items);
+
+        return writer;
+    }
+
+    @Benchmark
+    public XMLWriter writeReflection() throws IllegalAccessException
+    {
+        XMLWriter writer = new XMLWriter("root");
+        Element parent = writer.addChild("items");
+
+        for (Item item : this.items)
+        {
+            Element element = writer.addChild(parent, "item");
+
+            for (Field field : Item.class.getDeclaredFields())
+            {
+                field.setAccessible(true);
+                writer.addChild(element, field.getName(), String.valueOf(field.get(item)));
+            }
+        }
+
+        return writer;
+    }
+
+    @Benchmark
+    public ArrayList<Item> readHandwritten()
+    {
+        ArrayList<Item> read = new ArrayList<>();
+
+        for (Node node = this.itemsElement.getFirstChild(); node != null; node = node.getNextSibling())
+        {
+            Element element = (Element) node;
+            Item item = new Item();
+            item.id = Long.parseLong(XMLParser.getTagValue("id", element));
+            item.name = XMLParser.getTagValue("name", element);
+            item.amount = XMLParser.getTagValueDouble("amount", element);
+            item.count = XMLParser.getTagValueInt("count", element);
+            item.active = XMLParser.getTagValueBoolean("active", element);
+            read.add(item);
+        }
+
+        return read;
+    }
+
+    @Benchmark
+    public ArrayList<Item> readBinder()
+    {
+        return this.binder.readAll(this.itemsElement);
+    }
+
+    @Benchmark
+    public ArrayList<Item> readReflection() throws ReflectiveOperationException
+    {
+        ArrayList<Item> read = new ArrayList<>();
+
+        for (Node node = this.itemsElement.getFirstChild(); node != null; node = node.getNextSibling())
+        {
+            Element element = (Element) node;
+            Item item = Item.class.getDeclaredConstructor().newInstance();
+
+            for (Field field : Item.class.getDeclaredFields())
+            {
+                field.setAccessible(true);
+                String value = XMLParser.getTagValue(field.getName(), element);
+
+                if (field.getType() == long.class)
+                {
+                    field.setLong(item, Long.parseLong(value));
+                }
+                else if (field.getType() == double.class)
+                {
+                    field.setDouble(item, Double.parseDouble(value));
+                }
+                else if (field.getType() == int.class)
+                {
+                    field.setInt(item, Integer.parseInt(value));
+                }
+                else if (field.getType() == boolean.class)
+                {
+                    field.setBoolean(item, Boolean.parseBoolean(value));
+                }
+                else
+                {
+                    field.set(item, value);
+                }
+            }
+
+            read.add(item);
+        }
+
+        return read;
+    }
+
+    /**
+     * The mapped record.
+     */
+    public static class Item
+    {
+        private long id;
+        private String name;
+        private double amount;
+        private int count;
+        private boolean active;
+    }
+}
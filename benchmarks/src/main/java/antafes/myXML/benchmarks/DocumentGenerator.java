@@ -0,0 +1,203 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML.benchmarks;
+
+import antafes.myXML.XMLRowTemplate;
+import antafes.myXML.XMLWriter;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import org.w3c.dom.Element;
+
+/**
+ * Creates synthetic documents for the benchmarks. A document consists of the
+ * given number of records, each with a name, a value and a chain of nested
+ * nodes of the given depth. Records and nodes carry the given number of
+ * attributes. The documents match the benchmark.xsd schema.
+ *
+ * @author Neithan
+ */
+public final class DocumentGenerator
+{
+    /**
+     * The generator is only used through its static methods.
+     */
+    private DocumentGenerator()
+    {
+    }
+
+    /**
+     * Create the document as a string.
+     *
+     * @param records    The number of records.
+     * @param depth      The depth of the nested nodes inside of each record.
+     * @param attributes The number of attributes on each record and node.
+     *
+     * @return The XML document.
+     */
+    public static String generate(int records, int depth, int attributes)
+    {
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<root>\n");
+
+        for (int i = 0; i < records; i++)
+        {
+            xml.append("    <record id=\"").append(i).append('"');
+            DocumentGenerator.appendAttributes(xml, i, attributes);
+            xml.append(">\n");
+            xml.append("        <name>record &amp; ").append(i).append("</name>\n");
+            xml.append("        <value>").append(i).append("</value>\n");
+
+            for (int d = 0; d < depth; d++)
+            {
+                xml.append("        <node");
+                DocumentGenerator.appendAttributes(xml, d, attributes);
+                xml.append('>');
+            }
+
+            if (depth > 0)
+            {
+                xml.append("<leaf>leaf ").append(i).append("</leaf>");
+            }
+
+            for (int d = 0; d < depth; d++)
+            {
+                xml.append("</node>");
+            }
+
+            xml.append("\n    </record>\n");
+        }
+
+        return xml.append("</root>\n").toString();
+    }
+
+    /**
+     * Add the same records to the given writer.
+     *
+     * @param writer     The writer to fill.
+     * @param records    The number of records.
+     * @param depth      The depth of the nested nodes inside of each record.
+     * @param attributes The number of attributes on each record and node.
+     */
+    public static void fill(XMLWriter writer, int records, int depth, int attributes)
+    {
+        for (int i = 0; i < records; i++)
+        {
+            HashMap<String, String> recordAttributes = DocumentGenerator.createAttributes(i, attributes);
+            recordAttributes.put("id", Integer.toString(i));
+            Element record = writer.addChild("record", recordAttributes);
+            writer.addChild(record, "name", "record & " + i);
+            writer.addChild(record, "value", Integer.toString(i));
+            Element parent = record;
+
+            for (int d = 0; d < depth; d++)
+            {
+                parent = writer.addChild(parent, "node", DocumentGenerator.createAttributes(d, attributes));
+            }
+
+            if (depth > 0)
+            {
+                writer.addChild(parent, "leaf", "leaf " + i);
+            }
+        }
+    }
+
+    /**
+     * Add the same records without nested nodes to the given writer, using a
+     * row template. The result equals fill with a depth of 0.
+     *
+     * @param writer     The writer to fill.
+     * @param records    The number of records.
+     * @param attributes The number of attributes on each record.
+     */
+    public static void fillRows(XMLWriter writer, int records, int attributes)
+    {
+        XMLRowTemplate.Builder<Integer> builder = XMLRowTemplate.<Integer>builder("record")
+            .attribute("id", i -> Integer.toString(i));
+
+        for (int a = 0; a < attributes; a++)
+        {
+            int offset = a;
+            builder.attribute("a" + a, i -> "value " + (i + offset));
+        }
+
+        XMLRowTemplate<Integer> template = builder
+            .child("name", i -> "record & " + i)
+            .child("value", i -> Integer.toString(i))
+            .build();
+        ArrayList<Integer> rows = new ArrayList<>(records);
+
+        for (int i = 0; i < records; i++)
+        {
+            rows.add(i);
+        }
+
+        writer.addRows(template, rows);
+    }
+
+    /**
+     * Get the schema of the generated documents.
+     *
+     * @return The schema as a stream.
+     */
+    public static InputStream schema()
+    {
+        return DocumentGenerator.class.getResourceAsStream("/benchmark.xsd");
+    }
+
+    /**
+     * Append the attributes to an element start tag.
+     *
+     * @param xml        The document built so far.
+     * @param seed       The value used to vary the attribute values.
+     * @param attributes The number of attributes.
+     */
+    private static void appendAttributes(StringBuilder xml, int seed, int attributes)
+    {
+        for (int a = 0; a < attributes; a++)
+        {
+            xml.append(" a").append(a).append("=\"value ").append(seed + a).append('"');
+        }
+    }
+
+    /**
+     * Create the attribute map for the writer.
+     *
+     * @param seed       The value used to vary the attribute values.
+     * @param attributes The number of attributes.
+     *
+     * @return The attributes.
+     */
+    private static HashMap<String, String> createAttributes(int seed, int attributes)
+    {
+        HashMap<String, String> map = new HashMap<>();
+
+        for (int a = 0; a < attributes; a++)
+        {
+            map.put("a" + a, "value " + (seed + a));
+        }
+
+        return map;
+    }
+}
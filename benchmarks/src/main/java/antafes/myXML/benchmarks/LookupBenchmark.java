@@ -0,0 +1,141 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML.benchmarks;
+
+import antafes.myXML.XMLParser;
+import antafes.myXML.XMLPath;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Element;
+
+/**
+ * Throughput of the static lookup helpers of the XMLParser, compared to the
+ * compiled XMLPath, javax.xml.xpath and the tag index.
+ *
+ * @author Neithan
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LookupBenchmark
+{
+    @Param({"1000"})
+    public int records;
+
+    @Param({"2", "8"})
+    public int depth;
+
+    @Param({"0", "4"})
+    public int attributes;
+
+    private Element root;
+    private Element indexedRoot;
+    private XMLPath valuePath;
+    private XPathExpression valueXPath;
+
+    @Setup
+    public void setUp() throws XPathExpressionException
+    {
+        byte[] content = DocumentGenerator.generate(this.records, this.depth, this.attributes).getBytes(StandardCharsets.UTF_8);
+        XMLParser parser = new XMLParser();
+        parser.parse(new ByteArrayInputStream(content));
+        this.root = parser.getRootElement();
+
+        XMLParser indexedParser = new XMLParser();
+        indexedParser.setTagIndex(true);
+        indexedParser.parse(new ByteArrayInputStream(content));
+        this.indexedRoot = indexedParser.getRootElement();
+
+        this.valuePath = XMLPath.compile("record/value");
+        this.valueXPath = XPathFactory.newInstance().newXPath().compile("record/value");
+    }
+
+    @Benchmark
+    public String getTagValue()
+    {
+        return XMLParser.getTagValue("value", this.root);
+    }
+
+    @Benchmark
+    public String getTagValueIndexed()
+    {
+        return XMLParser.getTagValue("value", this.indexedRoot);
+    }
+
+    @Benchmark
+    public String xmlPath()
+    {
+        return this.valuePath.getString(this.root);
+    }
+
+    @Benchmark
+    public String xpath() throws XPathExpressionException
+    {
+        return (String) this.valueXPath.evaluate(this.root, XPathConstants.STRING);
+    }
+
+    @Benchmark
+    public boolean tagExistsMissing()
+    {
+        return XMLParser.tagExists("missing", this.root);
+    }
+
+    @Benchmark
+    public boolean tagExistsMissingIndexed()
+    {
+        return XMLParser.tagExists("missing", this.indexedRoot);
+    }
+
+    @Benchmark
+    public ArrayList<Element> getAllTags()
+    {
+        return XMLParser.getAllTags("record", this.root);
+    }
+
+    @Benchmark
+    public ArrayList<Element> getAllChildren()
+    {
+        return XMLParser.getAllChildren(this.root);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML.benchmarks;
+
+import antafes.myXML.XMLParseResult;
+import antafes.myXML.XMLParser;
+import antafes.myXML.XMLParserEngine;
+import antafes.myXML.XMLRecordIterator;
+import antafes.myXML.XMLValidator;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.w3c.dom.Document;
+
+/**
+ * Throughput of XMLParser.parse with and without a schema.
+ *
+ * @author Neithan
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark
+{
+    @Param({"100", "10000"})
+    public int records;
+
+    @Param({"2", "8"})
+    public int depth;
+
+    @Param({"0", "4"})
+    public int attributes;
+
+    private byte[] content;
+    private XMLParser parser;
+    private XMLParser schemaParser;
+    private XMLParser singlePassParser;
+    private XMLParserEngine engine;
+
+    @Setup
+    public void setUp()
+    {
+        this.content = DocumentGenerator.generate(this.records, this.depth, this.attributes).getBytes(StandardCharsets.UTF_8);
+        this.parser = new XMLParser();
+        this.schemaParser = new XMLParser(DocumentGenerator.schema());
+        this.singlePassParser = new XMLParser(DocumentGenerator.schema());
+        this.singlePassParser.setSinglePassValidation(true);
+        this.engine = new XMLParserEngine(new XMLValidator(DocumentGenerator.schema()));
+    }
+
+    @Benchmark
+    public Document parse()
+    {
+        this.parser.parse(new ByteArrayInputStream(this.content));
+
+        return this.parser.getDocument();
+    }
+
+    @Benchmark
+    public Document parseWithSchema()
+    {
+        this.schemaParser.parse(new ByteArrayInputStream(this.content));
+
+        return this.schemaParser.getDocument();
+    }
+
+    @Benchmark
+    public Document parseWithSchemaSinglePass()
+    {
+        this.singlePassParser.parse(new ByteArrayInputStream(this.content));
+
+        return this.singlePassParser.getDocument();
+    }
+
+    @Benchmark
+    public XMLParseResult parseEngineWithSchema()
+    {
+        return this.engine.parse(new ByteArrayInputStream(this.content));
+    }
+
+    @Benchmark
+    public void streamRecords(Blackhole blackhole)
+    {
+        XMLRecordIterator iterator = this.parser.stream(new ByteArrayInputStream(this.content), "record");
+
+        while (iterator.hasNext())
+        {
+            blackhole.consume(iterator.next());
+        }
+    }
+}
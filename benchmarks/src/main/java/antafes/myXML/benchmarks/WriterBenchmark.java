@@ -0,0 +1,147 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML.benchmarks;
+
+import antafes.myXML.XMLOutputProfile;
+import antafes.myXML.XMLWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of building and serializing documents with the XMLWriter. The
+ * serialize benchmarks use the direct serializer instead of a transformer.
+ *
+ * @author Neithan
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriterBenchmark
+{
+    @Param({"100", "10000"})
+    public int records;
+
+    @Param({"2", "8"})
+    public int depth;
+
+    @Param({"0", "4"})
+    public int attributes;
+
+    private XMLWriter writer;
+    private XMLWriter directWriter;
+    private ByteArrayOutputStream output;
+
+    @Setup
+    public void setUp()
+    {
+        this.writer = new XMLWriter("root");
+        DocumentGenerator.fill(this.writer, this.records, this.depth, this.attributes);
+        this.directWriter = new XMLWriter("root");
+        this.directWriter.setDirectSerialization(true);
+        DocumentGenerator.fill(this.directWriter, this.records, this.depth, this.attributes);
+        this.output = new ByteArrayOutputStream();
+    }
+
+    @Benchmark
+    public XMLWriter build()
+    {
+        XMLWriter built = new XMLWriter("root");
+        DocumentGenerator.fill(built, this.records, this.depth, this.attributes);
+
+        return built;
+    }
+
+    @Benchmark
+    public XMLWriter buildFlat()
+    {
+        XMLWriter built = new XMLWriter("root");
+        DocumentGenerator.fill(built, this.records, 0, this.attributes);
+
+        return built;
+    }
+
+    @Benchmark
+    public XMLWriter buildRows()
+    {
+        XMLWriter built = new XMLWriter("root");
+        DocumentGenerator.fillRows(built, this.records, this.attributes);
+
+        return built;
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream writeToOutputStream()
+    {
+        return this.writer.writeToOutputStream();
+    }
+
+    @Benchmark
+    public int write()
+    {
+        this.output.reset();
+        this.writer.write(new OutputStreamWriter(this.output, StandardCharsets.UTF_8));
+
+        return this.output.size();
+    }
+
+    @Benchmark
+    public int writeIndented()
+    {
+        this.output.reset();
+        this.writer.write(this.output, XMLOutputProfile.INDENTED);
+
+        return this.output.size();
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream serializeToOutputStream()
+    {
+        return this.directWriter.writeToOutputStream();
+    }
+
+    @Benchmark
+    public int serializeIndented()
+    {
+        this.output.reset();
+        this.directWriter.write(this.output, XMLOutputProfile.INDENTED);
+
+        return this.output.size();
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Runs a task for every file of a batch on a fixed pool of worker threads.
+ * Used by the batch methods of the parser engine and the validator.
+ *
+ * @author Neithan
+ */
+final class XMLBatch
+{
+    /**
+     * The batch is only used through its static method.
+     */
+    private XMLBatch()
+    {
+    }
+
+    /**
+     * Run the task for all given files with a pool of worker threads. A task
+     * which could not be run or failed unexpectedly gets the result created
+     * from its exception. The pool is shut down before returning.
+     *
+     * @param <T>         The type of the results.
+     * @param paths       The files.
+     * @param parallelism The number of worker threads.
+     * @param task        The task run for each file.
+     * @param failed      Creates the result of a task which did not finish.
+     *
+     * @return The result for each path, in the order of the given collection.
+     */
+    static <T> LinkedHashMap<Path, T> run(Collection<Path> paths, int parallelism, Function<Path, T> task, Function<Exception, T> failed)
+    {
+        if (parallelism < 1)
+        {
+            throw new IllegalArgumentException("The parallelism must be at least 1.");
+        }
+
+        LinkedHashMap<Path, Future<T>> futures = new LinkedHashMap<>();
+        LinkedHashMap<Path, T> results = new LinkedHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+
+        try
+        {
+            for (Path path : paths)
+            {
+                futures.put(path, executor.submit(() -> task.apply(path)));
+            }
+
+            for (Map.Entry<Path, Future<T>> entry : futures.entrySet())
+            {
+                try
+                {
+                    results.put(entry.getKey(), entry.getValue().get());
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    results.put(entry.getKey(), failed.apply(e));
+                }
+                catch (ExecutionException e)
+                {
+                    results.put(entry.getKey(), failed.apply(e));
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        return results;
+    }
+}
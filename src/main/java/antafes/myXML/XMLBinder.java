@@ -0,0 +1,706 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Maps objects to elements and back. Every field of the class becomes a child
+ * element named like the field, holding the value as text. Strings, enums,
+ * the primitive types and their wrappers are supported, static and transient
+ * fields are left out.
+ *
+ * The class is looked at once, the binder keeps method handles for the
+ * fields and the no argument constructor. Primitive values are read and
+ * written through handles of their exact type, so they are never boxed.
+ * Binders are cached per class and can be shared between threads. The cache
+ * is a ClassValue, so it does not keep the bound classes or their class
+ * loaders alive.
+ *
+ * A null value leaves out its child element, a missing child element keeps
+ * the value set by the constructor.
+ *
+ * @param <T> The bound class.
+ *
+ * @author Neithan
+ */
+public final class XMLBinder<T>
+{
+    private static final ClassValue<XMLBinder<?>> BINDERS = new ClassValue<XMLBinder<?>>()
+    {
+        @Override
+        protected XMLBinder<?> computeValue(Class<?> type)
+        {
+            return new XMLBinder<>(type);
+        }
+    };
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    private final Class<T> type;
+    private final String name;
+    private final Property[] properties;
+    private final HashMap<String, Property> propertiesByName = new HashMap<>();
+    private final MethodHandle constructor;
+
+    /**
+     * Create a new binder and look up the accessors of all fields.
+     *
+     * @param type The bound class.
+     */
+    private XMLBinder(Class<T> type)
+    {
+        this.type = type;
+        this.name = Character.toLowerCase(type.getSimpleName().charAt(0)) + type.getSimpleName().substring(1);
+
+        ArrayList<Field> fields = new ArrayList<>();
+        XMLBinder.collectFields(type, fields);
+        this.properties = new Property[fields.size()];
+
+        try
+        {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+            for (int i = 0; i < this.properties.length; i++)
+            {
+                Field field = fields.get(i);
+                field.setAccessible(true);
+                this.properties[i] = new Property(i, field, lookup);
+                this.propertiesByName.put(field.getName(), this.properties[i]);
+            }
+
+            this.constructor = XMLBinder.findConstructor(type, lookup);
+        }
+        catch (IllegalAccessException | RuntimeException ex)
+        {
+            throw new IllegalArgumentException("Cannot bind " + type.getName(), ex);
+        }
+    }
+
+    /**
+     * Get the binder for the given class, it is created on first use.
+     *
+     * @param <T>  The bound class.
+     * @param type The bound class.
+     *
+     * @return The binder.
+     *
+     * @throws IllegalArgumentException If a field has an unsupported type or
+     *                                  is not accessible.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> XMLBinder<T> of(Class<T> type)
+    {
+        return (XMLBinder<T>) BINDERS.get(type);
+    }
+
+    /**
+     * Get the bound class.
+     *
+     * @return The class.
+     */
+    public Class<T> getType()
+    {
+        return this.type;
+    }
+
+    /**
+     * Get the name of the elements written for the objects, which is the
+     * simple class name starting in lower case.
+     *
+     * @return The element name.
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+
+    /**
+     * Add an element for the object to the given parent.
+     *
+     * @param writer The writer owning the document.
+     * @param parent The parent element.
+     * @param object The object.
+     *
+     * @return The added element.
+     */
+    public Element write(XMLWriter writer, Element parent, T object)
+    {
+        return this.write(writer, parent, this.name, object);
+    }
+
+    /**
+     * Add an element with the given name for the object to the parent.
+     *
+     * @param writer The writer owning the document.
+     * @param parent The parent element.
+     * @param name   The element name.
+     * @param object The object.
+     *
+     * @return The added element.
+     */
+    public Element write(XMLWriter writer, Element parent, String name, T object)
+    {
+        Element element = writer.addChild(parent, name);
+
+        try
+        {
+            for (Property property : this.properties)
+            {
+                String text = property.get(object);
+
+                if (text != null)
+                {
+                    writer.addChild(element, property.name, text);
+                }
+            }
+        }
+        catch (RuntimeException | Error ex)
+        {
+            throw ex;
+        }
+        catch (Throwable ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+
+        return element;
+    }
+
+    /**
+     * Add an element for each object to the given parent.
+     *
+     * @param writer  The writer owning the document.
+     * @param parent  The parent element.
+     * @param objects The objects.
+     *
+     * @return The number of added elements.
+     */
+    public int writeAll(XMLWriter writer, Element parent, Iterable<? extends T> objects)
+    {
+        int count = 0;
+
+        for (T object : objects)
+        {
+            this.write(writer, parent, object);
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Create an object from the child elements of the given element. Child
+     * elements not matching a field are ignored.
+     *
+     * @param element The element.
+     *
+     * @return The object.
+     *
+     * @throws XMLNumberFormatException If a number could not be parsed, the
+     *                                  index is the one of the field.
+     * @throws UnsupportedOperationException If the class has no constructor
+     *                                       without arguments.
+     */
+    public T read(Element element)
+    {
+        if (this.constructor == null)
+        {
+            throw new UnsupportedOperationException(this.type.getName() + " has no constructor without arguments");
+        }
+
+        try
+        {
+            Object object = (Object) this.constructor.invokeExact();
+            int next = 0;
+
+            for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling())
+            {
+                if (child.getNodeType() != Node.ELEMENT_NODE)
+                {
+                    continue;
+                }
+
+                // Elements written by the binder come in field order, so the
+                // next field is checked before looking up the name.
+                String childName = child.getNodeName();
+                Property property = next < this.properties.length && this.properties[next].name.equals(childName)
+                    ? this.properties[next]
+                    : this.propertiesByName.get(childName);
+
+                if (property != null)
+                {
+                    property.set(object, child.getTextContent());
+                    next = property.index + 1;
+                }
+            }
+
+            return this.type.cast(object);
+        }
+        catch (RuntimeException | Error ex)
+        {
+            throw ex;
+        }
+        catch (Throwable ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Create an object for each child element of the given parent, which has
+     * the name of the binder.
+     *
+     * @param parent The parent element.
+     *
+     * @return A list of objects.
+     */
+    public ArrayList<T> readAll(Element parent)
+    {
+        ArrayList<T> objects = new ArrayList<>();
+
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling())
+        {
+            if (child.getNodeType() == Node.ELEMENT_NODE && child.getNodeName().equals(this.name))
+            {
+                objects.add(this.read((Element) child));
+            }
+        }
+
+        return objects;
+    }
+
+    /**
+     * Collect the bound fields, the fields of super classes first.
+     *
+     * @param type   The class.
+     * @param fields The list to add the fields to.
+     */
+    private static void collectFields(Class<?> type, ArrayList<Field> fields)
+    {
+        if (type == null || type == Object.class)
+        {
+            return;
+        }
+
+        XMLBinder.collectFields(type.getSuperclass(), fields);
+
+        for (Field field : type.getDeclaredFields())
+        {
+            int modifiers = field.getModifiers();
+
+            if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic())
+            {
+                fields.add(field);
+            }
+        }
+    }
+
+    /**
+     * Find the constructor without arguments.
+     *
+     * @param type   The class.
+     * @param lookup The lookup to create the handle with.
+     *
+     * @return The constructor handle returning an object, or null if there is
+     *         no such constructor.
+     *
+     * @throws IllegalAccessException
+     */
+    private static MethodHandle findConstructor(Class<?> type, MethodHandles.Lookup lookup) throws IllegalAccessException
+    {
+        if (Modifier.isAbstract(type.getModifiers()))
+        {
+            return null;
+        }
+
+        Constructor<?> constructor;
+
+        try
+        {
+            constructor = type.getDeclaredConstructor();
+        }
+        catch (NoSuchMethodException ex)
+        {
+            return null;
+        }
+
+        constructor.setAccessible(true);
+
+        return lookup.unreflectConstructor(constructor).asType(CONSTRUCTOR_TYPE);
+    }
+
+    /**
+     * The kinds of fields, the primitive ones keep their wrappers apart.
+     */
+    private enum Kind
+    {
+        BOOLEAN, BYTE, SHORT, CHAR, INT, LONG, FLOAT, DOUBLE, STRING, ENUM;
+
+        /**
+         * Get the kind of a field type.
+         *
+         * @param type The field type.
+         *
+         * @return The kind.
+         */
+        static Kind of(Class<?> type)
+        {
+            if (type == boolean.class || type == Boolean.class)
+            {
+                return BOOLEAN;
+            }
+
+            if (type == byte.class || type == Byte.class)
+            {
+                return BYTE;
+            }
+
+            if (type == short.class || type == Short.class)
+            {
+                return SHORT;
+            }
+
+            if (type == char.class || type == Character.class)
+            {
+                return CHAR;
+            }
+
+            if (type == int.class || type == Integer.class)
+            {
+                return INT;
+            }
+
+            if (type == long.class || type == Long.class)
+            {
+                return LONG;
+            }
+
+            if (type == float.class || type == Float.class)
+            {
+                return FLOAT;
+            }
+
+            if (type == double.class || type == Double.class)
+            {
+                return DOUBLE;
+            }
+
+            if (type == String.class)
+            {
+                return STRING;
+            }
+
+            if (type.isEnum())
+            {
+                return ENUM;
+            }
+
+            throw new IllegalArgumentException("Unsupported field type " + type.getName());
+        }
+    }
+
+    /**
+     * The accessors of a single field. Primitive fields get handles of their
+     * exact type, all others handles taking and returning objects.
+     */
+    private static final class Property
+    {
+        private final int index;
+        private final String name;
+        private final Kind kind;
+        private final boolean primitive;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+        private final HashMap<String, Object> constants;
+
+        /**
+         * Create the accessors of the field.
+         *
+         * @param index  The position of the field.
+         * @param field  The accessible field.
+         * @param lookup The lookup to create the handles with.
+         *
+         * @throws IllegalAccessException
+         */
+        Property(int index, Field field, MethodHandles.Lookup lookup) throws IllegalAccessException
+        {
+            Class<?> fieldType = field.getType();
+            Class<?> handleType = fieldType.isPrimitive() ? fieldType : Object.class;
+
+            this.index = index;
+            this.name = field.getName();
+            this.kind = Kind.of(fieldType);
+            this.primitive = fieldType.isPrimitive();
+            this.getter = lookup.unreflectGetter(field)
+                .asType(MethodType.methodType(handleType, Object.class));
+            this.setter = lookup.unreflectSetter(field)
+                .asType(MethodType.methodType(void.class, Object.class, handleType));
+
+            if (this.kind == Kind.ENUM)
+            {
+                this.constants = new HashMap<>();
+
+                for (Object constant : fieldType.getEnumConstants())
+                {
+                    this.constants.put(((Enum<?>) constant).name(), constant);
+                }
+            }
+            else
+            {
+                this.constants = null;
+            }
+        }
+
+        /**
+         * Get the value of the field as text.
+         *
+         * @param object The object.
+         *
+         * @return The text or null if the field is null.
+         *
+         * @throws Throwable
+         */
+        String get(Object object) throws Throwable
+        {
+            if (!this.primitive)
+            {
+                Object value = (Object) this.getter.invokeExact(object);
+
+                if (value == null)
+                {
+                    return null;
+                }
+
+                return this.kind == Kind.ENUM ? ((Enum<?>) value).name() : value.toString();
+            }
+
+            switch (this.kind)
+            {
+                case BOOLEAN:
+                    return Boolean.toString((boolean) this.getter.invokeExact(object));
+                case BYTE:
+                    return Byte.toString((byte) this.getter.invokeExact(object));
+                case SHORT:
+                    return Short.toString((short) this.getter.invokeExact(object));
+                case CHAR:
+                    return String.valueOf((char) this.getter.invokeExact(object));
+                case INT:
+                    return Integer.toString((int) this.getter.invokeExact(object));
+                case LONG:
+                    return Long.toString((long) this.getter.invokeExact(object));
+                case FLOAT:
+                    return Float.toString((float) this.getter.invokeExact(object));
+                default:
+                    return Double.toString((double) this.getter.invokeExact(object));
+            }
+        }
+
+        /**
+         * Parse the text and set it as the value of the field.
+         *
+         * @param object The object.
+         * @param text   The text.
+         *
+         * @throws Throwable
+         */
+        void set(Object object, String text) throws Throwable
+        {
+            switch (this.kind)
+            {
+                case BOOLEAN:
+                    boolean booleanValue = Boolean.parseBoolean(text.trim());
+
+                    if (this.primitive)
+                    {
+                        this.setter.invokeExact(object, booleanValue);
+                    }
+                    else
+                    {
+                        this.setter.invokeExact(object, (Object) booleanValue);
+                    }
+
+                    break;
+                case BYTE:
+                    byte byteValue = (byte) this.parseInt(text, Byte.MIN_VALUE, Byte.MAX_VALUE);
+
+                    if (this.primitive)
+                    {
+                        this.setter.invokeExact(object, byteValue);
+                    }
+                    else
+                    {
+                        this.setter.invokeExact(object, (Object) byteValue);
+                    }
+
+                    break;
+                case SHORT:
+                    short shortValue = (short) this.parseInt(text, Short.MIN_VALUE, Short.MAX_VALUE);
+
+                    if (this.primitive)
+                    {
+                        this.setter.invokeExact(object, shortValue);
+                    }
+                    else
+                    {
+                        this.setter.invokeExact(object, (Object) shortValue);
+                    }
+
+                    break;
+                case CHAR:
+                    // A single whitespace character is a value of its own,
+                    // longer texts are trimmed like the other kinds.
+                    String character = text.length() == 1 ? text : text.trim();
+
+                    if (character.length() != 1)
+                    {
+                        throw new IllegalArgumentException("Expected a single character for " + this.name + ": \"" + text + "\"");
+                    }
+
+                    if (this.primitive)
+                    {
+                        this.setter.invokeExact(object, character.charAt(0));
+                    }
+                    else
+                    {
+                        this.setter.invokeExact(object, (Object) character.charAt(0));
+                    }
+
+                    break;
+                case INT:
+                    int intValue = XMLNumberParser.parseInt(text, this.index);
+
+                    if (this.primitive)
+                    {
+                        this.setter.invokeExact(object, intValue);
+                    }
+                    else
+                    {
+                        this.setter.invokeExact(object, (Object) intValue);
+                    }
+
+                    break;
+                case LONG:
+                    long longValue = XMLNumberParser.parseLong(text, this.index);
+
+                    if (this.primitive)
+                    {
+                        this.setter.invokeExact(object, longValue);
+                    }
+                    else
+                    {
+                        this.setter.invokeExact(object, (Object) longValue);
+                    }
+
+                    break;
+                case FLOAT:
+                    float floatValue = this.parseFloat(text);
+
+                    if (this.primitive)
+                    {
+                        this.setter.invokeExact(object, floatValue);
+                    }
+                    else
+                    {
+                        this.setter.invokeExact(object, (Object) floatValue);
+                    }
+
+                    break;
+                case DOUBLE:
+                    double doubleValue = XMLNumberParser.parseDouble(text, this.index);
+
+                    if (this.primitive)
+                    {
+                        this.setter.invokeExact(object, doubleValue);
+                    }
+                    else
+                    {
+                        this.setter.invokeExact(object, (Object) doubleValue);
+                    }
+
+                    break;
+                case STRING:
+                    this.setter.invokeExact(object, (Object) text);
+                    break;
+                default:
+                    Object constant = this.constants.get(text.trim());
+
+                    if (constant == null)
+                    {
+                        throw new IllegalArgumentException("No constant " + text + " for " + this.name);
+                    }
+
+                    this.setter.invokeExact(object, constant);
+            }
+        }
+
+        /**
+         * Parse an integer within the given range.
+         *
+         * @param text The text.
+         * @param min  The smallest allowed value.
+         * @param max  The largest allowed value.
+         *
+         * @return The value.
+         */
+        private int parseInt(String text, int min, int max)
+        {
+            int value = XMLNumberParser.parseInt(text, this.index);
+
+            if (value < min || value > max)
+            {
+                throw new XMLNumberFormatException(text, this.index);
+            }
+
+            return value;
+        }
+
+        /**
+         * Parse a float, reporting malformed values with the field index.
+         *
+         * @param text The text.
+         *
+         * @return The value.
+         */
+        private float parseFloat(String text)
+        {
+            try
+            {
+                return Float.parseFloat(text);
+            }
+            catch (NumberFormatException ex)
+            {
+                throw new XMLNumberFormatException(text, this.index);
+            }
+        }
+    }
+}
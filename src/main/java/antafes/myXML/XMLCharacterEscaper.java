@@ -0,0 +1,166 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Escapes text and attribute values the same way the identity transformer
+ * does when writing UTF-8. Runs of characters which need no escaping are
+ * written in one go.
+ *
+ * @author Neithan
+ */
+final class XMLCharacterEscaper
+{
+    private static final String[] TEXT = new String[128];
+    private static final String[] ATTRIBUTE = new String[128];
+
+    static
+    {
+        TEXT['&'] = "&amp;";
+        TEXT['<'] = "&lt;";
+        TEXT['>'] = "&gt;";
+        TEXT['\r'] = "&#13;";
+
+        ATTRIBUTE['&'] = "&amp;";
+        ATTRIBUTE['<'] = "&lt;";
+        ATTRIBUTE['>'] = "&gt;";
+        ATTRIBUTE['"'] = "&quot;";
+        ATTRIBUTE['\t'] = "&#9;";
+        ATTRIBUTE['\n'] = "&#10;";
+        ATTRIBUTE['\r'] = "&#13;";
+
+        for (char c = 1; c < 0x20; c++)
+        {
+            if (c != '\t' && c != '\n' && c != '\r')
+            {
+                TEXT[c] = "&#" + (int) c + ";";
+                ATTRIBUTE[c] = TEXT[c];
+            }
+        }
+
+        TEXT[0x7F] = "&#127;";
+    }
+
+    /**
+     * The escaper is only used through its static methods.
+     */
+    private XMLCharacterEscaper()
+    {
+    }
+
+    /**
+     * Get the replacement of an ASCII character, as written by the identity
+     * transformer. This is the one table the other escapers are built from.
+     *
+     * @param c         The character, below 128.
+     * @param attribute Whether the character is in an attribute value.
+     *
+     * @return The character reference or entity, null if the character is
+     *         written as it is.
+     */
+    static String getReplacement(char c, boolean attribute)
+    {
+        return attribute ? ATTRIBUTE[c] : TEXT[c];
+    }
+
+    /**
+     * Write the given text content.
+     *
+     * @param writer The writer to write to.
+     * @param value  The text.
+     *
+     * @throws IOException
+     */
+    static void writeText(Writer writer, String value) throws IOException
+    {
+        XMLCharacterEscaper.write(writer, value, TEXT);
+    }
+
+    /**
+     * Write the given attribute value.
+     *
+     * @param writer The writer to write to.
+     * @param value  The attribute value.
+     *
+     * @throws IOException
+     */
+    static void writeAttribute(Writer writer, String value) throws IOException
+    {
+        XMLCharacterEscaper.write(writer, value, ATTRIBUTE);
+    }
+
+    /**
+     * Write the value, replacing the characters found in the table.
+     * Characters outside of the basic multilingual plane and, in text, the
+     * control characters up to U+009F are written as character references.
+     *
+     * @param writer       The writer to write to.
+     * @param value        The value.
+     * @param replacements The replacement table.
+     *
+     * @throws IOException
+     */
+    private static void write(Writer writer, String value, String[] replacements) throws IOException
+    {
+        int start = 0;
+        int length = value.length();
+
+        for (int i = 0; i < length; i++)
+        {
+            char c = value.charAt(i);
+            String replacement = null;
+
+            if (c < 128)
+            {
+                replacement = replacements[c];
+            }
+            else if (c <= 0x9F && replacements == TEXT)
+            {
+                replacement = "&#" + (int) c + ";";
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1)))
+            {
+                replacement = "&#" + Character.toCodePoint(c, value.charAt(i + 1)) + ";";
+            }
+
+            if (replacement != null)
+            {
+                writer.write(value, start, i - start);
+                writer.write(replacement);
+
+                if (Character.isHighSurrogate(c))
+                {
+                    i++;
+                }
+
+                start = i + 1;
+            }
+        }
+
+        writer.write(value, start, length - start);
+    }
+}
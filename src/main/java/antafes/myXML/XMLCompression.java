@@ -0,0 +1,246 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The compression formats the XMLWriter can write and the XMLParser detects
+ * when reading.
+ *
+ * @author Neithan
+ */
+public enum XMLCompression
+{
+    /**
+     * Plain XML.
+     */
+    NONE(null)
+    {
+        @Override
+        OutputStream compress(OutputStream stream, int level, int bufferSize)
+        {
+            return new NonClosingOutputStream(stream);
+        }
+    },
+    /**
+     * Gzip file format, as written by the gzip tool.
+     */
+    GZIP("gzip")
+    {
+        @Override
+        OutputStream compress(OutputStream stream, int level, int bufferSize) throws IOException
+        {
+            return new GZIPOutputStream(new NonClosingOutputStream(stream), bufferSize)
+            {
+                {
+                    this.def.setLevel(level);
+                }
+            };
+        }
+    },
+    /**
+     * Deflate data with a zlib header.
+     */
+    DEFLATE("deflate")
+    {
+        @Override
+        OutputStream compress(OutputStream stream, int level, int bufferSize)
+        {
+            return new DeflaterOutputStream(new NonClosingOutputStream(stream), new Deflater(level), bufferSize)
+            {
+                @Override
+                public void close() throws IOException
+                {
+                    super.close();
+                    this.def.end();
+                }
+            };
+        }
+    };
+
+    /**
+     * The buffer size used by default for compressing and decompressing.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 65536;
+
+    private final String contentEncoding;
+
+    /**
+     * Create a new compression.
+     *
+     * @param contentEncoding The name of the compression in the
+     *                        Content-Encoding header of HTTP.
+     */
+    private XMLCompression(String contentEncoding)
+    {
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * Get the name of the compression in the Content-Encoding header of HTTP.
+     *
+     * @return The name or null for plain XML.
+     */
+    public String getContentEncoding()
+    {
+        return this.contentEncoding;
+    }
+
+    /**
+     * Wrap the stream to compress everything written to it. Closing the
+     * returned stream finishes the compressed data, but leaves the given
+     * stream open.
+     *
+     * @param stream     The stream to write the compressed data to.
+     * @param level      The compression level from 0 to 9, -1 for the default.
+     * @param bufferSize The size of the output buffer.
+     *
+     * @return The compressing stream.
+     *
+     * @throws IOException
+     */
+    abstract OutputStream compress(OutputStream stream, int level, int bufferSize) throws IOException;
+
+    /**
+     * Check if data starting with the given bytes is gzip or zlib compressed.
+     *
+     * @param first  The first byte, -1 if there is none.
+     * @param second The second byte, -1 if there is none.
+     *
+     * @return True if the bytes are the magic bytes of gzip or zlib.
+     */
+    static boolean isCompressed(int first, int second)
+    {
+        if (first == 0x1F && second == 0x8B)
+        {
+            return true;
+        }
+
+        // The zlib header names the deflate method in the lower four bits and
+        // is a multiple of 31. No XML document starts like that.
+        return first >= 0 && second >= 0 && (first & 0x0F) == 8 && (first >> 4) <= 7 && ((first << 8) | second) % 31 == 0;
+    }
+
+    /**
+     * Detect gzip and zlib compressed data by its magic bytes and wrap the
+     * stream to decompress it. Other data is returned unchanged. The first
+     * bytes are looked at with mark and reset if the stream supports it.
+     *
+     * @param stream The stream to read.
+     *
+     * @return The decompressing stream or a stream over the plain data.
+     *
+     * @throws IOException
+     */
+    static InputStream decompress(InputStream stream) throws IOException
+    {
+        int first;
+        int second;
+
+        if (stream.markSupported())
+        {
+            stream.mark(2);
+            first = stream.read();
+            second = stream.read();
+            stream.reset();
+        }
+        else
+        {
+            PushbackInputStream pushback = new PushbackInputStream(stream, 2);
+            first = pushback.read();
+            second = first < 0 ? -1 : pushback.read();
+
+            if (second >= 0)
+            {
+                pushback.unread(second);
+            }
+
+            if (first >= 0)
+            {
+                pushback.unread(first);
+            }
+
+            stream = pushback;
+        }
+
+        if (first == 0x1F && second == 0x8B)
+        {
+            return new GZIPInputStream(stream, DEFAULT_BUFFER_SIZE);
+        }
+
+        if (XMLCompression.isCompressed(first, second))
+        {
+            return new InflaterInputStream(stream, new Inflater(), DEFAULT_BUFFER_SIZE)
+            {
+                @Override
+                public void close() throws IOException
+                {
+                    super.close();
+                    this.inf.end();
+                }
+            };
+        }
+
+        return stream;
+    }
+
+    /**
+     * Passes all bytes on, but only flushes the wrapped stream when closed.
+     */
+    private static class NonClosingOutputStream extends FilterOutputStream
+    {
+        /**
+         * Create a new stream writing to the given stream.
+         *
+         * @param stream The wrapped stream.
+         */
+        NonClosingOutputStream(OutputStream stream)
+        {
+            super(stream);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            this.out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            this.out.flush();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML;
+
+/**
+ * The ways the XMLWriter can send a document to an url.
+ *
+ * @author Neithan
+ */
+public enum XMLDeliveryMode
+{
+    /**
+     * The document is url encoded into the "message" form field. The whole
+     * request body is built in memory before it is sent.
+     */
+    FORM("application/x-www-form-urlencoded"),
+    /**
+     * The document is url encoded into the "message" form field while it is
+     * serialized and sent in chunks.
+     */
+    STREAMING_FORM("application/x-www-form-urlencoded"),
+    /**
+     * The document is the request body, sent in chunks while it is
+     * serialized. Additional parameters are appended to the query string of
+     * the url.
+     */
+    RAW("application/xml; charset=UTF-8");
+
+    private final String contentType;
+
+    /**
+     * Create a new delivery mode.
+     *
+     * @param contentType The content type of the request body.
+     */
+    private XMLDeliveryMode(String contentType)
+    {
+        this.contentType = contentType;
+    }
+
+    /**
+     * Get the content type of the request body.
+     *
+     * @return The content type.
+     */
+    public String getContentType()
+    {
+        return this.contentType;
+    }
+}
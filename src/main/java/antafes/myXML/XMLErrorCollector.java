@@ -0,0 +1,152 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+package antafes.myXML;
+
+import java.util.ArrayList;
+import java.util.Objects;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Error handler which collects validation errors up to a maximum, before the
+ * validation is aborted. Fatal errors always abort. Every warning and error
+ * is passed on to another handler first, if there is one. The collected
+ * exceptions hold the line and column of each error.
+ *
+ * The maximum counts the positions with errors, not the reported errors.
+ * An invalid value is reported twice at the same position, as an invalid
+ * datatype and as an invalid type, which counts as one error.
+ *
+ * @author Neithan
+ */
+class XMLErrorCollector implements ErrorHandler
+{
+    private final int maxErrors;
+    private final ErrorHandler handler;
+    private final ArrayList<SAXParseException> errors = new ArrayList<>();
+    private int positions;
+
+    /**
+     * Create a new collector.
+     *
+     * @param maxErrors The number of errors after which the validation is
+     *                  aborted, 0 for no limit.
+     * @param handler   The handler to pass the errors on to, may be null.
+     */
+    XMLErrorCollector(int maxErrors, ErrorHandler handler)
+    {
+        this.maxErrors = maxErrors;
+        this.handler = handler;
+    }
+
+    /**
+     * Get the collected errors, including the fatal one.
+     *
+     * @return A list of exceptions.
+     */
+    ArrayList<SAXParseException> getErrors()
+    {
+        return this.errors;
+    }
+
+    /**
+     * Warnings are only passed on.
+     *
+     * @param exception
+     *
+     * @throws SAXException
+     */
+    @Override
+    public void warning(SAXParseException exception) throws SAXException
+    {
+        if (this.handler != null)
+        {
+            this.handler.warning(exception);
+        }
+    }
+
+    /**
+     * Collect the error and abort if the maximum number of positions with
+     * errors has been reached.
+     *
+     * @param exception
+     *
+     * @throws SAXException
+     */
+    @Override
+    public void error(SAXParseException exception) throws SAXException
+    {
+        if (this.handler != null)
+        {
+            this.handler.error(exception);
+        }
+
+        if (this.errors.isEmpty() || !XMLErrorCollector.isSamePosition(this.errors.get(this.errors.size() - 1), exception))
+        {
+            this.positions++;
+        }
+
+        this.errors.add(exception);
+
+        if (this.maxErrors > 0 && this.positions >= this.maxErrors)
+        {
+            throw exception;
+        }
+    }
+
+    /**
+     * Collect the error and abort.
+     *
+     * @param exception
+     *
+     * @throws SAXException
+     */
+    @Override
+    public void fatalError(SAXParseException exception) throws SAXException
+    {
+        if (this.handler != null)
+        {
+            this.handler.fatalError(exception);
+        }
+
+        this.errors.add(exception);
+
+        throw exception;
+    }
+
+    /**
+     * Check if two errors have been reported at the same position.
+     *
+     * @param first  The first error.
+     * @param second The second error.
+     *
+     * @return True if the document, line and column are the same.
+     */
+    private static boolean isSamePosition(SAXParseException first, SAXParseException second)
+    {
+        return first.getLineNumber() == second.getLineNumber()
+            && first.getColumnNumber() == second.getColumnNumber()
+            && Objects.equals(first.getSystemId(), second.getSystemId());
+    }
+}
@@ -0,0 +1,392 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * Escapes XML so it can be inserted into other XML, using hexadecimal
+ * character references like "&amp;#x26;". Text only needs the markup
+ * characters escaped, attribute values the quotes as well. The value is
+ * scanned once, if nothing has to be escaped the given string is returned.
+ * Escaped values can also be appended to a writer or any other Appendable,
+ * e.g. while streaming large payloads.
+ *
+ * @author Neithan
+ */
+public final class XMLEscaper
+{
+    private static final String[] TEXT = new String[128];
+    private static final String[] ATTRIBUTE = new String[128];
+
+    static
+    {
+        // The markup characters are the printable ones the transformer
+        // escapes, written as hexadecimal references instead.
+        for (char c = 0x20; c < 0x7F; c++)
+        {
+            if (XMLCharacterEscaper.getReplacement(c, false) != null)
+            {
+                TEXT[c] = XMLEscaper.reference(c);
+            }
+
+            if (XMLCharacterEscaper.getReplacement(c, true) != null)
+            {
+                ATTRIBUTE[c] = XMLEscaper.reference(c);
+            }
+        }
+
+        ATTRIBUTE['\''] = XMLEscaper.reference('\'');
+    }
+
+    /**
+     * The escaper is only used through its static methods.
+     */
+    private XMLEscaper()
+    {
+    }
+
+    /**
+     * Get the hexadecimal character reference of an ASCII character.
+     *
+     * @param c The character.
+     *
+     * @return The reference.
+     */
+    private static String reference(char c)
+    {
+        return String.format("&#x%02X;", (int) c);
+    }
+
+    /**
+     * Escape the markup characters &amp;, &lt; and &gt; of a text.
+     *
+     * @param value The text.
+     *
+     * @return The escaped text, or the given instance if nothing changed.
+     */
+    public static String escapeText(String value)
+    {
+        return XMLEscaper.escape(value, TEXT);
+    }
+
+    /**
+     * Escape the markup characters and both quotes of an attribute value.
+     *
+     * @param value The attribute value.
+     *
+     * @return The escaped value, or the given instance if nothing changed.
+     */
+    public static String escapeAttribute(String value)
+    {
+        return XMLEscaper.escape(value, ATTRIBUTE);
+    }
+
+    /**
+     * Append the escaped text to the target.
+     *
+     * @param value  The text.
+     * @param target The target to append to.
+     *
+     * @throws IOException
+     *
+     * @see #escapeText(java.lang.String)
+     */
+    public static void escapeText(CharSequence value, Appendable target) throws IOException
+    {
+        XMLEscaper.escape(value, 0, TEXT, target);
+    }
+
+    /**
+     * Append the escaped attribute value to the target.
+     *
+     * @param value  The attribute value.
+     * @param target The target to append to.
+     *
+     * @throws IOException
+     *
+     * @see #escapeAttribute(java.lang.String)
+     */
+    public static void escapeAttribute(CharSequence value, Appendable target) throws IOException
+    {
+        XMLEscaper.escape(value, 0, ATTRIBUTE, target);
+    }
+
+    /**
+     * Convert the character references written by the escape methods back
+     * into the original characters. Every reference is converted once, so an
+     * escaped reference stays a reference.
+     *
+     * @param value The escaped value.
+     *
+     * @return The original value, or the given instance if nothing changed.
+     */
+    public static String unescape(String value)
+    {
+        int start = XMLEscaper.indexOfReference(value, 0);
+
+        if (start < 0)
+        {
+            return value;
+        }
+
+        StringBuilder builder = new StringBuilder(value.length());
+
+        try
+        {
+            XMLEscaper.unescape(value, start, builder);
+        }
+        catch (IOException ex)
+        {
+            throw new UncheckedIOException(ex);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Append the unescaped value to the target.
+     *
+     * @param value  The escaped value.
+     * @param target The target to append to.
+     *
+     * @throws IOException
+     *
+     * @see #unescape(java.lang.String)
+     */
+    public static void unescape(CharSequence value, Appendable target) throws IOException
+    {
+        XMLEscaper.unescape(value, XMLEscaper.indexOfReference(value, 0), target);
+    }
+
+    /**
+     * Escape the value into a new string if needed.
+     *
+     * @param value        The value.
+     * @param replacements The replacement table.
+     *
+     * @return The escaped value.
+     */
+    private static String escape(String value, String[] replacements)
+    {
+        int start = XMLEscaper.indexOfEscape(value, replacements);
+
+        if (start < 0)
+        {
+            return value;
+        }
+
+        StringBuilder builder = new StringBuilder(value.length() + 16);
+
+        try
+        {
+            XMLEscaper.escape(value, start, replacements, builder);
+        }
+        catch (IOException ex)
+        {
+            throw new UncheckedIOException(ex);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Append the value, replacing the characters found in the table. Nothing
+     * before the given index needs to be replaced.
+     *
+     * @param value        The value.
+     * @param first        The index of the first character to check.
+     * @param replacements The replacement table.
+     * @param target       The target to append to.
+     *
+     * @throws IOException
+     */
+    private static void escape(CharSequence value, int first, String[] replacements, Appendable target) throws IOException
+    {
+        int start = 0;
+        int length = value.length();
+
+        for (int i = first; i < length; i++)
+        {
+            char c = value.charAt(i);
+
+            if (c < 128 && replacements[c] != null)
+            {
+                XMLEscaper.append(target, value, start, i);
+                target.append(replacements[c]);
+                start = i + 1;
+            }
+        }
+
+        XMLEscaper.append(target, value, start, length);
+    }
+
+    /**
+     * Append the value, converting the references back. Nothing before the
+     * given index needs to be converted.
+     *
+     * @param value  The value.
+     * @param first  The index of the first reference, -1 if there is none.
+     * @param target The target to append to.
+     *
+     * @throws IOException
+     */
+    private static void unescape(CharSequence value, int first, Appendable target) throws IOException
+    {
+        int start = 0;
+        int length = value.length();
+
+        for (int i = first; i >= 0; i = XMLEscaper.indexOfReference(value, start))
+        {
+            XMLEscaper.append(target, value, start, i);
+            target.append(XMLEscaper.referencedCharacter(value, i));
+            start = i + 6;
+        }
+
+        XMLEscaper.append(target, value, start, length);
+    }
+
+    /**
+     * Find the first character which has to be replaced.
+     *
+     * @param value        The value.
+     * @param replacements The replacement table.
+     *
+     * @return The index or -1 if there is none.
+     */
+    private static int indexOfEscape(String value, String[] replacements)
+    {
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+
+            if (c < 128 && replacements[c] != null)
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Find the next reference written by the escape methods.
+     *
+     * @param value The value.
+     * @param from  The index to start at.
+     *
+     * @return The index or -1 if there is none.
+     */
+    private static int indexOfReference(CharSequence value, int from)
+    {
+        for (int i = from; i + 6 <= value.length(); i++)
+        {
+            if (value.charAt(i) == '&' && XMLEscaper.referencedCharacter(value, i) != 0)
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Get the character referenced at the given index.
+     *
+     * @param value The value.
+     * @param index The index of the ampersand.
+     *
+     * @return The character or 0 if there is no known reference.
+     */
+    private static char referencedCharacter(CharSequence value, int index)
+    {
+        if (value.charAt(index + 1) != '#' || value.charAt(index + 2) != 'x' || value.charAt(index + 5) != ';')
+        {
+            return 0;
+        }
+
+        char high = value.charAt(index + 3);
+        char low = value.charAt(index + 4);
+
+        if (high == '2')
+        {
+            switch (low)
+            {
+                case '6':
+                    return '&';
+                case '2':
+                    return '"';
+                case '7':
+                    return '\'';
+                default:
+                    return 0;
+            }
+        }
+
+        if (high == '3')
+        {
+            switch (low)
+            {
+                case 'C':
+                    return '<';
+                case 'E':
+                    return '>';
+                default:
+                    return 0;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Append a range of the value without creating a sub sequence for
+     * writers and string builders.
+     *
+     * @param target The target to append to.
+     * @param value  The value.
+     * @param start  The start of the range.
+     * @param end    The end of the range, exclusive.
+     *
+     * @throws IOException
+     */
+    private static void append(Appendable target, CharSequence value, int start, int end) throws IOException
+    {
+        if (start == end)
+        {
+            return;
+        }
+
+        if (target instanceof Writer && value instanceof String)
+        {
+            ((Writer) target).write((String) value, start, end - start);
+        }
+        else
+        {
+            target.append(value, start, end);
+        }
+    }
+}
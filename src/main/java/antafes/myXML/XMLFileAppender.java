@@ -0,0 +1,614 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Inserts serialized elements before the closing tag of the root element of
+ * an existing file. Only the end of the file is read, the elements and the
+ * original end are written in place. The file has to be UTF-8 encoded and
+ * must not be compressed.
+ *
+ * Before the file is changed, the position and the original end are stored
+ * in a journal next to it, named like the file with ".append" added. The
+ * journal is removed once the append is done. A journal left over by a crash
+ * is used to roll back the unfinished append, before the next append starts.
+ * Until then the file may not be well-formed. The journal and the file are
+ * always forced to the disk, so this also holds for a power loss.
+ *
+ * The file is locked while appending or rolling back, against other threads
+ * as well as other processes. A missing file is created under the lock as
+ * well, so only the first of concurrent appends writes the whole document.
+ *
+ * @author Neithan
+ */
+final class XMLFileAppender
+{
+    /**
+     * Added to the file name for the name of the journal.
+     */
+    static final String JOURNAL_SUFFIX = ".append";
+    private static final int TAIL_SIZE = 4096;
+    private static final int JOURNAL_HEADER_SIZE = 12;
+    private static final int JOURNAL_CHECKSUM_SIZE = 8;
+    private static final int HEAD_SIZE = 256;
+    private static final Pattern ENCODING = Pattern.compile("encoding\\s*=\\s*[\"']([^\"']*)[\"']");
+    private static final ConcurrentHashMap<Path, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+
+    private final Path file;
+    private final Path journal;
+
+    /**
+     * Create a new appender for the given file.
+     *
+     * @param file The file to append to.
+     */
+    XMLFileAppender(File file)
+    {
+        this.file = file.toPath();
+        this.journal = new File(file.getPath() + JOURNAL_SUFFIX).toPath();
+    }
+
+    /**
+     * Roll back an append which has not been finished, if there is a journal.
+     *
+     * @return True if the file has been rolled back.
+     *
+     * @throws IOException
+     */
+    boolean recover() throws IOException
+    {
+        if (!Files.exists(this.journal))
+        {
+            return false;
+        }
+
+        ReentrantLock lock = this.getLock();
+        lock.lock();
+
+        try
+        {
+            if (!Files.exists(this.file))
+            {
+                this.deleteJournal();
+
+                return false;
+            }
+
+            try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                FileLock fileLock = channel.lock())
+            {
+                return this.recover(channel);
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Roll back an append which has not been finished, if there is a journal.
+     * An incomplete journal was written before the file was changed, so it
+     * is only removed. The file has to be locked.
+     *
+     * @param channel The channel of the file.
+     *
+     * @return True if the file has been rolled back.
+     *
+     * @throws IOException
+     */
+    private boolean recover(FileChannel channel) throws IOException
+    {
+        if (!Files.exists(this.journal))
+        {
+            return false;
+        }
+
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(this.journal));
+        boolean rolledBack = false;
+
+        if (XMLFileAppender.isComplete(data))
+        {
+            long offset = data.getLong(0);
+            data.position(JOURNAL_HEADER_SIZE).limit(data.capacity() - JOURNAL_CHECKSUM_SIZE);
+
+            if (offset <= channel.size())
+            {
+                XMLFileAppender.restore(channel, offset, data.slice());
+                rolledBack = true;
+            }
+        }
+
+        this.deleteJournal();
+
+        return rolledBack;
+    }
+
+    /**
+     * Get the lock of the file within this process. A file lock is held by
+     * the whole process, so threads have to be kept apart separately.
+     *
+     * @return The lock.
+     *
+     * @throws IOException
+     */
+    private ReentrantLock getLock() throws IOException
+    {
+        // The key must not change when the file is created, so the real path
+        // of the directory is used for a missing file.
+        Path key = this.file.toAbsolutePath().normalize();
+
+        if (Files.exists(key))
+        {
+            key = key.toRealPath();
+        }
+        else if (key.getParent() != null && Files.exists(key.getParent()))
+        {
+            key = key.getParent().toRealPath().resolve(key.getFileName());
+        }
+
+        return LOCKS.computeIfAbsent(key, path -> new ReentrantLock());
+    }
+
+    /**
+     * Insert the content before the closing tag of the root element. An empty
+     * root element is expanded into a start and an end tag. The content has
+     * to consist of complete lines, which are indented for the first level
+     * below the root. A missing or empty file is created with the whole
+     * document instead, under the same lock.
+     *
+     * @param rootName The name of the root element.
+     * @param content  The serialized elements.
+     * @param document The serialized document for a missing or empty file.
+     *
+     * @throws IOException If the file does not end with the root element, is
+     *                     compressed or not encoded in UTF-8.
+     */
+    void append(String rootName, byte[] content, byte[] document) throws IOException
+    {
+        ReentrantLock lock = this.getLock();
+        lock.lock();
+
+        try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            FileLock fileLock = channel.lock())
+        {
+            this.recover(channel);
+
+            if (channel.size() == 0)
+            {
+                this.create(channel, document);
+
+                return;
+            }
+
+            this.checkFormat(channel);
+            this.append(channel, rootName, content);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write the whole document into the empty file. The journal holds an
+     * empty end, so a crash leaves an empty file after the roll back. The
+     * file has to be locked.
+     *
+     * @param channel  The channel of the file.
+     * @param document The serialized document.
+     *
+     * @throws IOException
+     */
+    private void create(FileChannel channel, byte[] document) throws IOException
+    {
+        ByteBuffer empty = ByteBuffer.allocate(0);
+        this.writeJournal(0, empty.duplicate());
+
+        try
+        {
+            XMLFileAppender.write(channel, ByteBuffer.wrap(document), 0);
+            channel.force(false);
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            XMLFileAppender.restore(channel, 0, empty);
+            this.deleteJournal();
+
+            throw ex;
+        }
+
+        this.deleteJournal();
+    }
+
+    /**
+     * Make sure the file is neither compressed nor in another encoding than
+     * UTF-8, in which the content and the root name are written.
+     *
+     * @param channel The channel of the file.
+     *
+     * @throws IOException If the file cannot be appended to.
+     */
+    private void checkFormat(FileChannel channel) throws IOException
+    {
+        byte[] head = XMLFileAppender.read(channel, 0, (int) Math.min(channel.size(), HEAD_SIZE));
+        int first = head.length > 0 ? head[0] & 0xFF : -1;
+        int second = head.length > 1 ? head[1] & 0xFF : -1;
+
+        if (XMLCompression.isCompressed(first, second))
+        {
+            throw new IOException("The file " + this.file + " is compressed, only uncompressed files can be appended to");
+        }
+
+        // Byte order marks and the start of a document in UTF-16 or UTF-32.
+        if (first == 0xFE || first == 0xFF || first == 0 || second == 0)
+        {
+            throw new IOException("The file " + this.file + " is not encoded in UTF-8");
+        }
+
+        String declaration = new String(head, StandardCharsets.ISO_8859_1);
+        int end = declaration.indexOf("?>");
+
+        if (declaration.startsWith("<?xml") && end > 0)
+        {
+            Matcher matcher = ENCODING.matcher(declaration.substring(0, end));
+
+            if (matcher.find() && !matcher.group(1).equalsIgnoreCase("UTF-8") && !matcher.group(1).equalsIgnoreCase("UTF8"))
+            {
+                throw new IOException("The file " + this.file + " is encoded in " + matcher.group(1) + ", only UTF-8 files can be appended to");
+            }
+        }
+    }
+
+    /**
+     * Insert the content before the closing tag of the root element. The
+     * file has to be locked.
+     *
+     * @param channel  The channel of the file.
+     * @param rootName The name of the root element.
+     * @param content  The serialized elements.
+     *
+     * @throws IOException If the file does not end with the root element.
+     */
+    private void append(FileChannel channel, String rootName, byte[] content) throws IOException
+    {
+        long size = channel.size();
+        byte[] name = rootName.getBytes(StandardCharsets.UTF_8);
+        int length = (int) Math.min(size, TAIL_SIZE);
+        byte[] buffer;
+        int end;
+        int tag;
+
+        // Read more of the end of the file, until it holds the whole last
+        // tag.
+        while (true)
+        {
+            buffer = XMLFileAppender.read(channel, size - length, length);
+            end = XMLFileAppender.lastNonWhitespace(buffer);
+            tag = end < 0 ? -1 : XMLFileAppender.lastIndexOf(buffer, (byte) '<', end);
+
+            if (tag >= 0 || length == size)
+            {
+                break;
+            }
+
+            length = (int) Math.min(size, Math.min((long) length * 2, Integer.MAX_VALUE - 8));
+        }
+
+        if (tag < 0 || buffer[end] != '>')
+        {
+            throw new IOException("Could not find the end of the root element " + rootName + " in " + this.file);
+        }
+
+        ByteArrayOutputStream insert = new ByteArrayOutputStream(content.length + 2 * name.length + 8);
+        int position;
+        int skip;
+
+        if (buffer[tag + 1] == '/' && XMLFileAppender.isName(buffer, tag + 2, end, name, false))
+        {
+            // Keep an indentation of the closing tag, which is on its own
+            // line, otherwise start a new line for the content.
+            position = tag;
+
+            while (position > 0 && (buffer[position - 1] == ' ' || buffer[position - 1] == '\t'))
+            {
+                position--;
+            }
+
+            if (position > 0 && buffer[position - 1] == '\n')
+            {
+                insert.write(content);
+            }
+            else
+            {
+                position = tag;
+                insert.write('\n');
+                insert.write(content);
+            }
+
+            skip = 0;
+        }
+        else if (buffer[end - 1] == '/' && XMLFileAppender.isName(buffer, tag + 1, end - 1, name, true))
+        {
+            position = end - 1;
+            insert.write('>');
+            insert.write('\n');
+            insert.write(content);
+            insert.write('<');
+            insert.write('/');
+            insert.write(name);
+            insert.write('>');
+            skip = 2;
+        }
+        else
+        {
+            throw new IOException("The file " + this.file + " does not end with the root element " + rootName);
+        }
+
+        long offset = size - length + position;
+        ByteBuffer tail = ByteBuffer.wrap(buffer, position, buffer.length - position).slice();
+        this.writeJournal(offset, tail.duplicate());
+
+        try
+        {
+            XMLFileAppender.write(channel, ByteBuffer.wrap(insert.toByteArray()), offset);
+            tail.position(skip);
+            XMLFileAppender.write(channel, tail, offset + insert.size());
+            channel.force(false);
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            tail.position(0);
+            this.restore(channel, offset, tail);
+            this.deleteJournal();
+
+            throw ex;
+        }
+
+        this.deleteJournal();
+    }
+
+    /**
+     * Cut the file at the offset and write the original end again.
+     *
+     * @param channel The channel of the file.
+     * @param offset  The offset of the original end.
+     * @param tail    The original end.
+     *
+     * @throws IOException
+     */
+    private static void restore(FileChannel channel, long offset, ByteBuffer tail) throws IOException
+    {
+        channel.truncate(offset);
+        XMLFileAppender.write(channel, tail, offset);
+        channel.force(false);
+    }
+
+    /**
+     * Write the journal: the offset, the length of the original end, the end
+     * itself and a checksum of all of it.
+     *
+     * @param offset The offset of the original end.
+     * @param tail   The original end.
+     *
+     * @throws IOException
+     */
+    private void writeJournal(long offset, ByteBuffer tail) throws IOException
+    {
+        ByteBuffer data = ByteBuffer.allocate(JOURNAL_HEADER_SIZE + tail.remaining() + JOURNAL_CHECKSUM_SIZE);
+        data.putLong(offset);
+        data.putInt(tail.remaining());
+        data.put(tail);
+
+        CRC32 checksum = new CRC32();
+        checksum.update(data.array(), 0, data.position());
+        data.putLong(checksum.getValue());
+
+        try (FileOutputStream stream = new FileOutputStream(this.journal.toFile()))
+        {
+            stream.write(data.array());
+            stream.getChannel().force(true);
+        }
+
+        XMLWriter.syncDirectory(this.journal.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Remove the journal.
+     *
+     * @throws IOException
+     */
+    private void deleteJournal() throws IOException
+    {
+        Files.deleteIfExists(this.journal);
+        XMLWriter.syncDirectory(this.journal.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Check the length and the checksum of a journal.
+     *
+     * @param data The content of the journal.
+     *
+     * @return True if the journal has been written completely.
+     */
+    private static boolean isComplete(ByteBuffer data)
+    {
+        if (data.capacity() < JOURNAL_HEADER_SIZE + JOURNAL_CHECKSUM_SIZE
+            || data.getInt(8) != data.capacity() - JOURNAL_HEADER_SIZE - JOURNAL_CHECKSUM_SIZE)
+        {
+            return false;
+        }
+
+        CRC32 checksum = new CRC32();
+        checksum.update(data.array(), 0, data.capacity() - JOURNAL_CHECKSUM_SIZE);
+
+        return checksum.getValue() == data.getLong(data.capacity() - JOURNAL_CHECKSUM_SIZE);
+    }
+
+    /**
+     * Read a range of the file.
+     *
+     * @param channel The channel of the file.
+     * @param offset  The start of the range.
+     * @param length  The length of the range.
+     *
+     * @return The bytes.
+     *
+     * @throws IOException
+     */
+    private static byte[] read(FileChannel channel, long offset, int length) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer, offset + buffer.position()) < 0)
+            {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+
+        return buffer.array();
+    }
+
+    /**
+     * Write all remaining bytes at the given offset.
+     *
+     * @param channel The channel of the file.
+     * @param buffer  The bytes.
+     * @param offset  The offset.
+     *
+     * @throws IOException
+     */
+    private static void write(FileChannel channel, ByteBuffer buffer, long offset) throws IOException
+    {
+        long position = offset;
+
+        while (buffer.hasRemaining())
+        {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Find the last byte which is no XML whitespace.
+     *
+     * @param buffer The bytes.
+     *
+     * @return The index or -1 if there is none.
+     */
+    private static int lastNonWhitespace(byte[] buffer)
+    {
+        for (int i = buffer.length - 1; i >= 0; i--)
+        {
+            byte b = buffer[i];
+
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r')
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Find the last occurrence of a byte before the given index.
+     *
+     * @param buffer The bytes.
+     * @param value  The byte to look for.
+     * @param before The index to search before.
+     *
+     * @return The index or -1 if there is none.
+     */
+    private static int lastIndexOf(byte[] buffer, byte value, int before)
+    {
+        for (int i = before - 1; i >= 0; i--)
+        {
+            if (buffer[i] == value)
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Check if the range holds the name, optionally followed by whitespace.
+     * If attributes are allowed, anything may follow the whitespace.
+     *
+     * @param buffer     The bytes.
+     * @param start      The start of the range.
+     * @param end        The end of the range, exclusive.
+     * @param name       The encoded name.
+     * @param attributes Whether attributes may follow the name.
+     *
+     * @return True if the name matches.
+     */
+    private static boolean isName(byte[] buffer, int start, int end, byte[] name, boolean attributes)
+    {
+        if (end - start < name.length)
+        {
+            return false;
+        }
+
+        for (int i = 0; i < name.length; i++)
+        {
+            if (buffer[start + i] != name[i])
+            {
+                return false;
+            }
+        }
+
+        for (int i = start + name.length; i < end; i++)
+        {
+            byte b = buffer[i];
+
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r')
+            {
+                return attributes && i > start + name.length;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Writer url encoding the written characters into a stream, the same way
+ * URLEncoder does. Characters outside of ASCII are encoded with the given
+ * charset, which has to be compatible to ASCII.
+ *
+ * @author Neithan
+ */
+class XMLFormEncodingWriter extends Writer
+{
+    private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'};
+    private final OutputStream stream;
+    private final Charset charset;
+    private char highSurrogate;
+
+    /**
+     * Create a new writer.
+     *
+     * @param stream  The stream to write the encoded bytes to.
+     * @param charset The charset for characters outside of ASCII.
+     */
+    XMLFormEncodingWriter(OutputStream stream, Charset charset)
+    {
+        this.stream = stream;
+        this.charset = charset;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException
+    {
+        for (int i = off; i < off + len; i++)
+        {
+            char c = cbuf[i];
+
+            if (this.highSurrogate != 0)
+            {
+                this.encode(new String(new char[] {this.highSurrogate, c}));
+                this.highSurrogate = 0;
+            }
+            else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '.' || c == '-' || c == '*' || c == '_')
+            {
+                this.stream.write(c);
+            }
+            else if (c == ' ')
+            {
+                this.stream.write('+');
+            }
+            else if (c < 0x80)
+            {
+                this.writeEscaped(c);
+            }
+            else if (Character.isHighSurrogate(c))
+            {
+                this.highSurrogate = c;
+            }
+            else
+            {
+                this.encode(String.valueOf(c));
+            }
+        }
+    }
+
+    /**
+     * Escape every byte of the characters encoded with the charset.
+     *
+     * @param value The characters.
+     *
+     * @throws IOException
+     */
+    private void encode(String value) throws IOException
+    {
+        for (byte b : value.getBytes(this.charset))
+        {
+            this.writeEscaped(b & 0xFF);
+        }
+    }
+
+    /**
+     * Write a percent escaped byte.
+     *
+     * @param b The byte.
+     *
+     * @throws IOException
+     */
+    private void writeEscaped(int b) throws IOException
+    {
+        this.stream.write('%');
+        this.stream.write(HEX[b >> 4]);
+        this.stream.write(HEX[b & 0x0F]);
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        this.stream.flush();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (this.highSurrogate != 0)
+        {
+            this.encode(String.valueOf(this.highSurrogate));
+            this.highSurrogate = 0;
+        }
+
+        this.stream.close();
+    }
+}
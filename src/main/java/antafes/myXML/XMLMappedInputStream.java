@@ -0,0 +1,230 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * InputStream reading a memory mapped file. The file is mapped in regions of
+ * at most 1 GB, the bytes are read straight from the page cache without being
+ * copied onto the heap first. The mapping stays valid after the file channel
+ * has been closed and is released once the stream is garbage collected.
+ * Until then the file stays in use, which e.g. on Windows prevents replacing
+ * it. Files smaller than 8 MB are therefore read onto the heap instead, the
+ * file is closed once the stream has been created.
+ *
+ * @author Neithan
+ */
+class XMLMappedInputStream extends InputStream
+{
+    private static final long REGION_SIZE = 1L << 30;
+    private static final long MAP_THRESHOLD = 8L << 20;
+    private final ByteBuffer[] regions;
+    private int region;
+    private int markRegion;
+    private int markPosition;
+
+    /**
+     * Create a new stream over the given mapped regions.
+     *
+     * @param regions The mapped regions of the file in order.
+     */
+    private XMLMappedInputStream(ByteBuffer[] regions)
+    {
+        this.regions = regions;
+    }
+
+    /**
+     * Map the given file into memory, or read it, if it is smaller than the
+     * threshold for mapping.
+     *
+     * @param file The file to map.
+     *
+     * @return A stream over the mapped file.
+     *
+     * @throws IOException
+     */
+    static XMLMappedInputStream map(File file) throws IOException
+    {
+        try (FileInputStream fis = new FileInputStream(file); FileChannel channel = fis.getChannel())
+        {
+            long size = channel.size();
+
+            if (size < MAP_THRESHOLD)
+            {
+                ByteBuffer buffer = ByteBuffer.allocate((int) size);
+
+                while (buffer.hasRemaining())
+                {
+                    if (channel.read(buffer) < 0)
+                    {
+                        break;
+                    }
+                }
+
+                buffer.flip();
+
+                return new XMLMappedInputStream(new ByteBuffer[] {buffer});
+            }
+
+            ByteBuffer[] regions = new ByteBuffer[(int) ((size + REGION_SIZE - 1) / REGION_SIZE)];
+
+            for (int i = 0; i < regions.length; i++)
+            {
+                long position = i * REGION_SIZE;
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(REGION_SIZE, size - position));
+            }
+
+            return new XMLMappedInputStream(regions);
+        }
+    }
+
+    /**
+     * Create a second stream over the same mapping, starting at the
+     * beginning of the file. No bytes are copied.
+     *
+     * @return A new independent stream.
+     */
+    XMLMappedInputStream duplicate()
+    {
+        ByteBuffer[] duplicates = new ByteBuffer[this.regions.length];
+
+        for (int i = 0; i < this.regions.length; i++)
+        {
+            duplicates[i] = this.regions[i].duplicate();
+            duplicates[i].rewind();
+        }
+
+        return new XMLMappedInputStream(duplicates);
+    }
+
+    /**
+     * Get the current region, skipping all regions which have been read
+     * completely.
+     *
+     * @return The current region or null at the end of the file.
+     */
+    private ByteBuffer current()
+    {
+        while (this.region < this.regions.length)
+        {
+            if (this.regions[this.region].hasRemaining())
+            {
+                return this.regions[this.region];
+            }
+
+            this.region++;
+        }
+
+        return null;
+    }
+
+    @Override
+    public int read()
+    {
+        ByteBuffer buffer = this.current();
+
+        if (buffer == null)
+        {
+            return -1;
+        }
+
+        return buffer.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len)
+    {
+        if (len == 0)
+        {
+            return 0;
+        }
+
+        ByteBuffer buffer = this.current();
+
+        if (buffer == null)
+        {
+            return -1;
+        }
+
+        int n = Math.min(len, buffer.remaining());
+        buffer.get(b, off, n);
+
+        return n;
+    }
+
+    @Override
+    public long skip(long n)
+    {
+        long skipped = 0;
+        ByteBuffer buffer;
+
+        while (skipped < n && (buffer = this.current()) != null)
+        {
+            int step = (int) Math.min(n - skipped, buffer.remaining());
+            buffer.position(buffer.position() + step);
+            skipped += step;
+        }
+
+        return skipped;
+    }
+
+    @Override
+    public int available()
+    {
+        ByteBuffer buffer = this.current();
+
+        return buffer == null ? 0 : buffer.remaining();
+    }
+
+    @Override
+    public boolean markSupported()
+    {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit)
+    {
+        ByteBuffer buffer = this.current();
+        this.markRegion = this.region;
+        this.markPosition = buffer == null ? 0 : buffer.position();
+    }
+
+    @Override
+    public synchronized void reset()
+    {
+        for (int i = this.markRegion; i < this.regions.length && i <= this.region; i++)
+        {
+            this.regions[i].position(i == this.markRegion ? this.markPosition : 0);
+        }
+
+        this.region = this.markRegion;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML;
+
+/**
+ * Thrown by the primitive array extractors of the XMLParser if a value could
+ * not be parsed. Holds the index of the malformed value.
+ *
+ * @author Neithan
+ */
+public class XMLNumberFormatException extends NumberFormatException
+{
+    private static final long serialVersionUID = 1L;
+    private final int index;
+
+    /**
+     * Create a new exception for the value at the given index.
+     *
+     * @param value The malformed value.
+     * @param index The index of the value.
+     */
+    public XMLNumberFormatException(String value, int index)
+    {
+        super("For input string: \"" + value + "\" at index " + index);
+        this.index = index;
+    }
+
+    /**
+     * Get the index of the malformed value.
+     *
+     * @return The index.
+     */
+    public int getIndex()
+    {
+        return this.index;
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML;
+
+/**
+ * Parses numbers straight from the character data of a node, without
+ * creating substrings or boxed values. Leading and trailing XML whitespace is
+ * ignored.
+ *
+ * @author Neithan
+ */
+final class XMLNumberParser
+{
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    /**
+     * The parser is only used through its static methods.
+     */
+    private XMLNumberParser()
+    {
+    }
+
+    /**
+     * Parse an integer.
+     *
+     * @param value The character data.
+     * @param index The index of the value, used for error reporting.
+     *
+     * @return The parsed value.
+     */
+    static int parseInt(String value, int index)
+    {
+        long result = XMLNumberParser.parseLong(value, index);
+
+        if (result < Integer.MIN_VALUE || result > Integer.MAX_VALUE)
+        {
+            throw new XMLNumberFormatException(value, index);
+        }
+
+        return (int) result;
+    }
+
+    /**
+     * Parse a long.
+     *
+     * @param value The character data.
+     * @param index The index of the value, used for error reporting.
+     *
+     * @return The parsed value.
+     */
+    static long parseLong(String value, int index)
+    {
+        int start = XMLNumberParser.skipWhitespace(value, 0);
+        int end = XMLNumberParser.trimWhitespace(value, start);
+        boolean negative = false;
+
+        if (start < end && (value.charAt(start) == '-' || value.charAt(start) == '+'))
+        {
+            negative = value.charAt(start) == '-';
+            start++;
+        }
+
+        if (start == end)
+        {
+            throw new XMLNumberFormatException(value, index);
+        }
+
+        // Accumulate negatively, so Long.MIN_VALUE can be parsed as well.
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplyLimit = limit / 10;
+        long result = 0;
+
+        for (int i = start; i < end; i++)
+        {
+            int digit = value.charAt(i) - '0';
+
+            if (digit < 0 || digit > 9 || result < multiplyLimit)
+            {
+                throw new XMLNumberFormatException(value, index);
+            }
+
+            result *= 10;
+
+            if (result < limit + digit)
+            {
+                throw new XMLNumberFormatException(value, index);
+            }
+
+            result -= digit;
+        }
+
+        return negative ? result : -result;
+    }
+
+    /**
+     * Parse a double. Plain decimal numbers with up to 15 significant digits
+     * are parsed directly, everything else is handed to Double.parseDouble.
+     *
+     * @param value The character data.
+     * @param index The index of the value, used for error reporting.
+     *
+     * @return The parsed value.
+     */
+    static double parseDouble(String value, int index)
+    {
+        int start = XMLNumberParser.skipWhitespace(value, 0);
+        int end = XMLNumberParser.trimWhitespace(value, start);
+        int i = start;
+        boolean negative = false;
+
+        if (i < end && (value.charAt(i) == '-' || value.charAt(i) == '+'))
+        {
+            negative = value.charAt(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        boolean fraction = false;
+
+        for (; i < end; i++)
+        {
+            char c = value.charAt(i);
+
+            if (c >= '0' && c <= '9')
+            {
+                digits++;
+
+                if (mantissa != 0 || c != '0')
+                {
+                    significantDigits++;
+                }
+
+                if (significantDigits > MAX_EXACT_DIGITS)
+                {
+                    return XMLNumberParser.parseDoubleSlow(value, start, end, index);
+                }
+
+                mantissa = mantissa * 10 + (c - '0');
+
+                if (fraction)
+                {
+                    exponent--;
+                }
+            }
+            else if (c == '.' && !fraction)
+            {
+                fraction = true;
+            }
+            else
+            {
+                break;
+            }
+        }
+
+        if (digits == 0)
+        {
+            return XMLNumberParser.parseDoubleSlow(value, start, end, index);
+        }
+
+        if (i < end)
+        {
+            char c = value.charAt(i);
+
+            if (c != 'e' && c != 'E')
+            {
+                return XMLNumberParser.parseDoubleSlow(value, start, end, index);
+            }
+
+            int j = i + 1;
+            boolean negativeExponent = false;
+            int explicitExponent = 0;
+
+            if (j < end && (value.charAt(j) == '-' || value.charAt(j) == '+'))
+            {
+                negativeExponent = value.charAt(j) == '-';
+                j++;
+            }
+
+            if (j == end)
+            {
+                return XMLNumberParser.parseDoubleSlow(value, start, end, index);
+            }
+
+            for (; j < end; j++)
+            {
+                int digit = value.charAt(j) - '0';
+
+                // Large exponents are left to the slow path anyway.
+                if (digit < 0 || digit > 9 || explicitExponent > 1000)
+                {
+                    return XMLNumberParser.parseDoubleSlow(value, start, end, index);
+                }
+
+                explicitExponent = explicitExponent * 10 + digit;
+            }
+
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        double result = mantissa;
+
+        if (mantissa != 0)
+        {
+            if (exponent < -22 || exponent > 22)
+            {
+                return XMLNumberParser.parseDoubleSlow(value, start, end, index);
+            }
+
+            result = exponent < 0 ? result / POWERS_OF_TEN[-exponent] : result * POWERS_OF_TEN[exponent];
+        }
+
+        return negative ? -result : result;
+    }
+
+    /**
+     * Parse a double with Double.parseDouble.
+     *
+     * @param value The character data.
+     * @param start The start of the trimmed value.
+     * @param end   The end of the trimmed value.
+     * @param index The index of the value, used for error reporting.
+     *
+     * @return The parsed value.
+     */
+    private static double parseDoubleSlow(String value, int start, int end, int index)
+    {
+        try
+        {
+            return Double.parseDouble(value.substring(start, end));
+        }
+        catch (NumberFormatException e)
+        {
+            throw new XMLNumberFormatException(value, index);
+        }
+    }
+
+    /**
+     * Get the position of the first non whitespace character.
+     *
+     * @param value The character data.
+     * @param start The position to start at.
+     *
+     * @return The position.
+     */
+    private static int skipWhitespace(String value, int start)
+    {
+        int i = start;
+
+        while (i < value.length() && XMLNumberParser.isWhitespace(value.charAt(i)))
+        {
+            i++;
+        }
+
+        return i;
+    }
+
+    /**
+     * Get the end of the value without trailing whitespace.
+     *
+     * @param value The character data.
+     * @param start The start of the value.
+     *
+     * @return The position after the last non whitespace character.
+     */
+    private static int trimWhitespace(String value, int start)
+    {
+        int end = value.length();
+
+        while (end > start && XMLNumberParser.isWhitespace(value.charAt(end - 1)))
+        {
+            end--;
+        }
+
+        return end;
+    }
+
+    /**
+     * Check if the character is XML whitespace.
+     *
+     * @param c The character.
+     *
+     * @return Returns true for space, tab, carriage return and line feed.
+     */
+    private static boolean isWhitespace(char c)
+    {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+    }
+}
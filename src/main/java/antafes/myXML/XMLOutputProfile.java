@@ -0,0 +1,82 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML;
+
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+
+/**
+ * The output formats the XMLWriter can serialize a document in.
+ *
+ * @author Neithan
+ */
+public enum XMLOutputProfile
+{
+    /**
+     * UTF-8 with XML declaration, indented by 4 spaces. Used by the write
+     * methods.
+     */
+    INDENTED
+    {
+        @Override
+        void configure(Transformer transformer)
+        {
+            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "no");
+            transformer.setOutputProperty(OutputKeys.METHOD, "xml");
+            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+            transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
+        }
+    },
+    /**
+     * UTF-8 with XML declaration, without any indentation. Used by
+     * writeToOutputStream and writeToURL.
+     */
+    COMPACT
+    {
+        @Override
+        void configure(Transformer transformer)
+        {
+        }
+    },
+    /**
+     * UTF-8 without XML declaration and indentation, e.g. for XML which is
+     * embedded into other XML.
+     */
+    NO_DECLARATION
+    {
+        @Override
+        void configure(Transformer transformer)
+        {
+            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+        }
+    };
+
+    /**
+     * Set the output properties of this profile on a new transformer.
+     *
+     * @param transformer The transformer to configure.
+     */
+    abstract void configure(Transformer transformer);
+}
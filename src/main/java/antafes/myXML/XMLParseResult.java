@@ -0,0 +1,108 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML;
+
+import java.util.ArrayList;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * The outcome of a single parse run of the XMLParserEngine. Holds either the
+ * parsed document or the exceptions thrown while parsing.
+ *
+ * @author Neithan
+ */
+public class XMLParseResult
+{
+    private final Document document;
+    private final ArrayList<Exception> exceptionList;
+
+    /**
+     * Create a new parse result.
+     *
+     * @param document      The parsed document, null if parsing failed.
+     * @param exceptionList The exceptions thrown while parsing.
+     */
+    XMLParseResult(Document document, ArrayList<Exception> exceptionList)
+    {
+        this.document = document;
+        this.exceptionList = exceptionList;
+    }
+
+    /**
+     * Check if the document has been parsed successfully.
+     *
+     * @return Returns true if successful, otherwise false.
+     */
+    public boolean isSuccessful()
+    {
+        return this.document != null;
+    }
+
+    /**
+     * Get the parsed document.
+     *
+     * @return Object representation of the XML file or null if parsing failed.
+     */
+    public Document getDocument()
+    {
+        return this.document;
+    }
+
+    /**
+     * Get the root element of the parsed document.
+     *
+     * @return The XML Element representing the root node or null if parsing
+     *         failed.
+     */
+    public Element getRootElement()
+    {
+        if (this.document == null)
+        {
+            return null;
+        }
+
+        return this.document.getDocumentElement();
+    }
+
+    /**
+     * Get the list of exceptions thrown during the parse process.
+     *
+     * @return An ArrayList of Exception objects.
+     */
+    public ArrayList<Exception> getExceptionList()
+    {
+        return this.exceptionList;
+    }
+
+    /**
+     * Get the last thrown exception.
+     *
+     * @return The last exception as an object.
+     */
+    public Exception getLastException()
+    {
+        return this.exceptionList.get(this.exceptionList.size() - 1);
+    }
+}
@@ -29,12 +29,18 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.validation.Schema;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -47,9 +53,15 @@ import org.xml.sax.SAXException;
  */
 public class XMLParser
 {
+    private static final DocumentBuilderFactory FACTORY = DocumentBuilderFactory.newInstance();
+    static final String NORMALIZED_VALUE_FEATURE = "http://apache.org/xml/features/validation/schema/normalized-value";
     private XMLValidator validator;
-    private DocumentBuilderFactory factory;
     private DocumentBuilder builder;
+    private DocumentBuilder validatingBuilder;
+    private Schema validatingSchema;
+    private XMLInputFactory inputFactory;
+    private boolean singlePassValidation;
+    private boolean tagIndex;
     private Document document;
     private ArrayList<Exception> exceptionList;
 
@@ -82,7 +94,8 @@ public class XMLParser
      */
     public XMLParser(File schema) throws FileNotFoundException
     {
-        this(new FileInputStream(schema));
+        this.validator = new XMLValidator(schema);
+        this.prepare();
     }
 
     /**
@@ -103,11 +116,14 @@ public class XMLParser
     private void prepare()
     {
         this.exceptionList = new ArrayList<>();
-        this.factory = DocumentBuilderFactory.newInstance();
 
         try
         {
-            this.builder = this.factory.newDocumentBuilder();
+            // The factory is shared to avoid the service lookup, but it is not thread safe.
+            synchronized (FACTORY)
+            {
+                this.builder = FACTORY.newDocumentBuilder();
+            }
         }
         catch(ParserConfigurationException e)
         {
@@ -116,6 +132,96 @@ public class XMLParser
         }
     }
 
+    /**
+     * Get the document builder which validates against the schema while
+     * building the document. The builder is created on first use and again
+     * after the schema of the validator has been reloaded.
+     *
+     * @return The validating document builder.
+     *
+     * @throws ParserConfigurationException
+     */
+    private DocumentBuilder getValidatingBuilder() throws ParserConfigurationException
+    {
+        Schema schema = this.validator.getSchema();
+
+        if (this.validatingBuilder == null || this.validatingSchema != schema)
+        {
+            DocumentBuilderFactory validatingFactory = DocumentBuilderFactory.newInstance();
+            validatingFactory.setNamespaceAware(true);
+
+            try
+            {
+                // Keep the text as written, like the two pass validation does.
+                validatingFactory.setFeature(NORMALIZED_VALUE_FEATURE, false);
+            }
+            catch (ParserConfigurationException e)
+            {
+                // Another parser implementation, the values may be normalized.
+            }
+
+            validatingFactory.setSchema(schema);
+
+            this.validatingBuilder = validatingFactory.newDocumentBuilder();
+            this.validatingBuilder.setErrorHandler(new XMLStrictErrorHandler());
+            this.validatingSchema = schema;
+        }
+
+        return this.validatingBuilder;
+    }
+
+    /**
+     * Enable or disable the single pass validation. If enabled, the schema
+     * validation is done while the document is built, instead of reading the
+     * whole stream into memory, validating it and parsing it again afterwards.
+     * Validation errors are still added to the exception list of the
+     * validator. The document holds the same nodes and values, but
+     * whitespace between the child elements of elements without text is
+     * marked as element content whitespace, which getTextContent leaves out.
+     *
+     * @param singlePassValidation True to validate while parsing.
+     */
+    public void setSinglePassValidation(boolean singlePassValidation)
+    {
+        this.singlePassValidation = singlePassValidation;
+    }
+
+    /**
+     * Check if the single pass validation is enabled.
+     *
+     * @return Returns true if enabled, otherwise false.
+     */
+    public boolean isSinglePassValidation()
+    {
+        return this.singlePassValidation;
+    }
+
+    /**
+     * Enable or disable the tag index for the following parse runs. If
+     * enabled, an index from tag name to elements is built for every parsed
+     * document, which is used by the static lookup helpers like getTagElement,
+     * getAllTags or tagExists. This makes repeated lookups on the same
+     * document cheap, but costs some time and memory on each parse run. The
+     * index is dropped on the first change of the document, so it only pays
+     * off for documents which are read without being changed.
+     *
+     * @param tagIndex True to build the tag index.
+     */
+    public void setTagIndex(boolean tagIndex)
+    {
+        this.tagIndex = tagIndex;
+    }
+
+    /**
+     * Check if the tag index is built for parsed documents.
+     *
+     * @return Returns true if enabled, otherwise false.
+     */
+    public boolean isTagIndex()
+    {
+        return this.tagIndex;
+    }
+
     /**
      * Get the list of exceptions thrown during the parse process.
      *
@@ -172,7 +278,10 @@ public class XMLParser
     }
 
     /**
-     * Parse the given file.
+     * Parse the given file. A file of at least 8 MB is memory mapped and read
+     * straight from the mapping for validation and parsing, so it is never
+     * copied onto the heap as a whole. Smaller files are read once. Gzip and
+     * zlib compressed files are decompressed on the fly.
      *
      * @param file The file to parse.
      *
@@ -180,19 +289,39 @@ public class XMLParser
      */
     public boolean parse(File file)
     {
+        XMLMappedInputStream mapped;
+        InputStream stream;
+
         try
         {
-            return this.parse(new FileInputStream(file));
+            mapped = XMLMappedInputStream.map(file);
+            stream = XMLCompression.decompress(mapped);
+
+            if (this.validator != null && !this.singlePassValidation)
+            {
+                if (!this.validator.validate(XMLCompression.decompress(mapped.duplicate())))
+                {
+                    return false;
+                }
+            }
         }
-        catch (FileNotFoundException e)
+        catch (IOException e)
         {
             this.exceptionList.add(e);
             return false;
         }
+
+        if (this.validator != null && this.singlePassValidation)
+        {
+            return this.parseValidating(stream);
+        }
+
+        return this.build(stream);
     }
 
     /**
-     * Parse the given InputStream.
+     * Parse the given InputStream. Gzip and zlib compressed data is
+     * decompressed on the fly.
      *
      * @param stream The stream to parse.
      *
@@ -202,6 +331,26 @@ public class XMLParser
     {
         if (stream != null)
         {
+            try
+            {
+                stream = XMLCompression.decompress(stream);
+            }
+            catch (IOException e)
+            {
+                this.exceptionList.add(e);
+                return false;
+            }
+
+            if (this.validator == null)
+            {
+                return this.build(stream);
+            }
+
+            if (this.singlePassValidation)
+            {
+                return this.parseValidating(stream);
+            }
+
             try
             {
                 ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -213,24 +362,12 @@ public class XMLParser
 
                 InputStream is1 = new ByteArrayInputStream(content);
 
-                if (this.validator != null && !this.validator.validate(is1))
+                if (!this.validator.validate(is1))
                 {
                     return false;
                 }
 
-                try
-                {
-                    InputStream is2 = new ByteArrayInputStream(content);
-                    this.document = this.builder.parse(is2);
-                    this.document.getDocumentElement().normalize();
-
-                    return true;
-                }
-                catch(SAXException | IOException e)
-                {
-                    this.exceptionList.add(e);
-                    return false;
-                }
+                return this.build(new ByteArrayInputStream(content));
             }
             catch(IOException ex)
             {
@@ -241,6 +378,189 @@ public class XMLParser
         return false;
     }
 
+    /**
+     * Build the document from the given InputStream without validating it.
+     *
+     * @param stream The stream to parse.
+     *
+     * @return Returns true if successful, otherwise false.
+     */
+    private boolean build(InputStream stream)
+    {
+        try
+        {
+            this.document = this.builder.parse(stream);
+            this.document.getDocumentElement().normalize();
+
+            if (this.tagIndex)
+            {
+                XMLTagIndex.build(this.document);
+            }
+
+            return true;
+        }
+        catch(SAXException | IOException e)
+        {
+            this.exceptionList.add(e);
+            return false;
+        }
+    }
+
+    /**
+     * Parse all given files in parallel. Every file gets its own parse result
+     * holding the document or the thrown exceptions, the exception list of a
+     * parser is not involved.
+     *
+     * @param paths       The files to parse.
+     * @param parallelism The number of worker threads.
+     *
+     * @return The result for each path, in the order of the given collection.
+     *
+     * @see XMLParserEngine#parseAll(java.util.Collection, int)
+     */
+    public static LinkedHashMap<Path, XMLParseResult> parseAll(Collection<Path> paths, int parallelism)
+    {
+        return new XMLParserEngine().parseAll(paths, parallelism);
+    }
+
+    /**
+     * Parse all given files in parallel and validate them against the schema
+     * of the given validator while parsing. The compiled schema is shared,
+     * every worker thread reuses its own validating document builder. A file
+     * which does not match the schema gets a failed parse result.
+     *
+     * @param paths       The files to parse.
+     * @param parallelism The number of worker threads.
+     * @param validator   The validator holding the compiled schema.
+     *
+     * @return The result for each path, in the order of the given collection.
+     *
+     * @see XMLParserEngine#XMLParserEngine(antafes.myXML.XMLValidator)
+     */
+    public static LinkedHashMap<Path, XMLParseResult> parseAll(Collection<Path> paths, int parallelism, XMLValidator validator)
+    {
+        return new XMLParserEngine(validator).parseAll(paths, parallelism);
+    }
+
+    /**
+     * Parse the given InputStream and validate it against the schema in one
+     * pass.
+     *
+     * @param stream The stream to parse.
+     *
+     * @return Returns true if successful, otherwise false.
+     */
+    private boolean parseValidating(InputStream stream)
+    {
+        if (this.validator.getSchema() == null)
+        {
+            // Let the validator report the missing schema like it does for the two pass mode.
+            return this.validator.validate(stream);
+        }
+
+        try
+        {
+            this.document = this.getValidatingBuilder().parse(stream);
+            this.document.getDocumentElement().normalize();
+
+            if (this.tagIndex)
+            {
+                XMLTagIndex.build(this.document);
+            }
+
+            return true;
+        }
+        catch (SAXException e)
+        {
+            this.validator.getExceptionList().add(e);
+            return false;
+        }
+        catch (IOException | ParserConfigurationException e)
+        {
+            this.exceptionList.add(e);
+            return false;
+        }
+    }
+
+    /**
+     * Stream the records with the given tag name from the file at the given
+     * path.
+     *
+     * @param path The path where an XML file resides.
+     * @param tag  The tag name of the records.
+     *
+     * @return An iterator over the record elements.
+     *
+     * @see #stream(java.io.InputStream, java.lang.String)
+     */
+    public XMLRecordIterator stream(String path, String tag)
+    {
+        return this.stream(new File(path), tag);
+    }
+
+    /**
+     * Stream the records with the given tag name from the given file.
+     *
+     * @param file The file to read.
+     * @param tag  The tag name of the records.
+     *
+     * @return An iterator over the record elements.
+     *
+     * @see #stream(java.io.InputStream, java.lang.String)
+     */
+    public XMLRecordIterator stream(File file, String tag)
+    {
+        try
+        {
+            return this.stream(new FileInputStream(file), tag);
+        }
+        catch (FileNotFoundException e)
+        {
+            this.exceptionList.add(e);
+            return new XMLRecordIterator(null, null, this.builder, tag, this.exceptionList);
+        }
+    }
+
+    /**
+     * Stream the records with the given tag name from the given InputStream.
+     * Only one record is held in memory at a time, each of them is built into
+     * its own document. Compressed data is detected like when parsing. The
+     * schema is not applied while streaming. Exceptions
+     * thrown while reading end the iteration and are added to the exception
+     * list.
+     *
+     * @param stream The stream to read.
+     * @param tag    The tag name of the records.
+     *
+     * @return An iterator over the record elements.
+     */
+    public XMLRecordIterator stream(InputStream stream, String tag)
+    {
+        try
+        {
+            if (this.inputFactory == null)
+            {
+                this.inputFactory = XMLInputFactory.newInstance();
+                this.inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+            }
+
+            stream = XMLCompression.decompress(stream);
+
+            return new XMLRecordIterator(
+                this.inputFactory.createXMLStreamReader(stream),
+                stream,
+                this.builder,
+                tag,
+                this.exceptionList
+            );
+        }
+        catch (XMLStreamException | IOException e)
+        {
+            this.exceptionList.add(e);
+            return new XMLRecordIterator(null, stream, this.builder, tag, this.exceptionList);
+        }
+    }
+
     /**
      * Get the XML validator. This will only return an object, if a schema has
      * been set.
@@ -294,8 +614,7 @@ public class XMLParser
      */
     public static Node getTagNode(String tag, Element element)
     {
-        NodeList list = element.getElementsByTagName(tag).item(0).getChildNodes();
-        return (Node) list.item(0);
+        return XMLParser.getTagElement(tag, element).getFirstChild();
     }
 
     /**
@@ -308,6 +627,13 @@ public class XMLParser
      */
     public static Element getTagElement(String tag, Element element)
     {
+        XMLTagIndex index = XMLTagIndex.get(element);
+
+        if (index != null && !tag.equals("*"))
+        {
+            return index.getFirst(tag, element);
+        }
+
         return (Element) element.getElementsByTagName(tag).item(0);
     }
 
@@ -426,9 +752,10 @@ public class XMLParser
     public static ArrayList<Element> getAllTags(String tag, Element element)
     {
         ArrayList<Element> elements = new ArrayList<>();
+        Element tagElement = element.hasChildNodes() ? XMLParser.getTagElement(tag, element) : null;
 
-        if (element.hasChildNodes() && element.getElementsByTagName(tag).getLength() > 0) {
-            NodeList list = element.getElementsByTagName(tag).item(0).getChildNodes();
+        if (tagElement != null) {
+            NodeList list = tagElement.getChildNodes();
             for (int i = 0; i < list.getLength(); i++)
             {
                 Node node = (Node) list.item(i);
@@ -502,6 +829,221 @@ public class XMLParser
         return values;
     }
 
+    /**
+     * Get the values of all elements found like getAllTags does, parsed
+     * straight into an int array without boxing.
+     *
+     * @param tag     The tag to search the elements for.
+     * @param element The parent element.
+     *
+     * @return An array of values.
+     *
+     * @throws XMLNumberFormatException If a value is malformed, holds its index.
+     */
+    public static int[] getAllTagValuesIntArray(String tag, Element element)
+    {
+        int[] values = new int[XMLParser.countAllTags(tag, element)];
+        XMLParser.getAllTagValuesInt(tag, element, values);
+
+        return values;
+    }
+
+    /**
+     * Get the values of all elements found like getAllTags does, parsed
+     * straight into the given buffer without boxing. Values which do not fit
+     * into the buffer are skipped, but counted.
+     *
+     * @param tag     The tag to search the elements for.
+     * @param element The parent element.
+     * @param buffer  The buffer to write the values into.
+     *
+     * @return The number of values found.
+     *
+     * @throws XMLNumberFormatException If a value is malformed, holds its index.
+     */
+    public static int getAllTagValuesInt(String tag, Element element, int[] buffer)
+    {
+        int count = 0;
+        Element tagElement = element.hasChildNodes() ? XMLParser.getTagElement(tag, element) : null;
+
+        if (tagElement != null)
+        {
+            for (Node node = tagElement.getFirstChild(); node != null; node = node.getNextSibling())
+            {
+                if (node.getNodeType() == Node.ELEMENT_NODE)
+                {
+                    if (count < buffer.length)
+                    {
+                        buffer[count] = XMLNumberParser.parseInt(XMLParser.getCharacterData(node), count);
+                    }
+
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Get the values of all elements found like getAllTags does, parsed
+     * straight into a long array without boxing.
+     *
+     * @param tag     The tag to search the elements for.
+     * @param element The parent element.
+     *
+     * @return An array of values.
+     *
+     * @throws XMLNumberFormatException If a value is malformed, holds its index.
+     */
+    public static long[] getAllTagValuesLongArray(String tag, Element element)
+    {
+        long[] values = new long[XMLParser.countAllTags(tag, element)];
+        XMLParser.getAllTagValuesLong(tag, element, values);
+
+        return values;
+    }
+
+    /**
+     * Get the values of all elements found like getAllTags does, parsed
+     * straight into the given buffer without boxing. Values which do not fit
+     * into the buffer are skipped, but counted.
+     *
+     * @param tag     The tag to search the elements for.
+     * @param element The parent element.
+     * @param buffer  The buffer to write the values into.
+     *
+     * @return The number of values found.
+     *
+     * @throws XMLNumberFormatException If a value is malformed, holds its index.
+     */
+    public static int getAllTagValuesLong(String tag, Element element, long[] buffer)
+    {
+        int count = 0;
+        Element tagElement = element.hasChildNodes() ? XMLParser.getTagElement(tag, element) : null;
+
+        if (tagElement != null)
+        {
+            for (Node node = tagElement.getFirstChild(); node != null; node = node.getNextSibling())
+            {
+                if (node.getNodeType() == Node.ELEMENT_NODE)
+                {
+                    if (count < buffer.length)
+                    {
+                        buffer[count] = XMLNumberParser.parseLong(XMLParser.getCharacterData(node), count);
+                    }
+
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Get the values of all elements found like getAllTags does, parsed
+     * straight into a double array without boxing.
+     *
+     * @param tag     The tag to search the elements for.
+     * @param element The parent element.
+     *
+     * @return An array of values.
+     *
+     * @throws XMLNumberFormatException If a value is malformed, holds its index.
+     */
+    public static double[] getAllTagValuesDoubleArray(String tag, Element element)
+    {
+        double[] values = new double[XMLParser.countAllTags(tag, element)];
+        XMLParser.getAllTagValuesDouble(tag, element, values);
+
+        return values;
+    }
+
+    /**
+     * Get the values of all elements found like getAllTags does, parsed
+     * straight into the given buffer without boxing. Values which do not fit
+     * into the buffer are skipped, but counted.
+     *
+     * @param tag     The tag to search the elements for.
+     * @param element The parent element.
+     * @param buffer  The buffer to write the values into.
+     *
+     * @return The number of values found.
+     *
+     * @throws XMLNumberFormatException If a value is malformed, holds its index.
+     */
+    public static int getAllTagValuesDouble(String tag, Element element, double[] buffer)
+    {
+        int count = 0;
+        Element tagElement = element.hasChildNodes() ? XMLParser.getTagElement(tag, element) : null;
+
+        if (tagElement != null)
+        {
+            for (Node node = tagElement.getFirstChild(); node != null; node = node.getNextSibling())
+            {
+                if (node.getNodeType() == Node.ELEMENT_NODE)
+                {
+                    if (count < buffer.length)
+                    {
+                        buffer[count] = XMLNumberParser.parseDouble(XMLParser.getCharacterData(node), count);
+                    }
+
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Count the elements getAllTags would return, without creating a list.
+     *
+     * @param tag     The tag to search for.
+     * @param element The parent element.
+     *
+     * @return The number of elements.
+     */
+    private static int countAllTags(String tag, Element element)
+    {
+        int count = 0;
+        Element tagElement = element.hasChildNodes() ? XMLParser.getTagElement(tag, element) : null;
+
+        if (tagElement != null)
+        {
+            for (Node node = tagElement.getFirstChild(); node != null; node = node.getNextSibling())
+            {
+                if (node.getNodeType() == Node.ELEMENT_NODE)
+                {
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Get the character data of the first child of the given element. The
+     * string is taken from the node as is, no copy is made.
+     *
+     * @param element The element.
+     *
+     * @return The character data or an empty string if there is none.
+     */
+    private static String getCharacterData(Node element)
+    {
+        Node child = element.getFirstChild();
+
+        if (child == null || child.getNodeValue() == null)
+        {
+            return "";
+        }
+
+        return child.getNodeValue();
+    }
+
     /**
      * Get a list of all child elements.
      *
@@ -548,7 +1090,7 @@ public class XMLParser
      */
     public static boolean tagExists(String tag, Element element)
     {
-        return element.getElementsByTagName(tag).item(0) != null;
+        return XMLParser.getTagElement(tag, element) != null;
     }
 
     /**
@@ -558,17 +1100,11 @@ public class XMLParser
      * @param xml The prepared XML as a string.
      *
      * @return The parsed XML.
+     *
+     * @see XMLEscaper#unescape(java.lang.String)
      */
     public static String parsePrepareXML(String xml)
     {
-        String preparedXML;
-
-        preparedXML = xml.replace("&#x26;", "&");
-        preparedXML = preparedXML.replace("&#x3C;", "<");
-        preparedXML = preparedXML.replace("&#x3E;", ">");
-        preparedXML = preparedXML.replace("&#x22;", "\"");
-        preparedXML = preparedXML.replace("&#x27;", "'");
-
-        return preparedXML;
+        return XMLEscaper.unescape(xml);
     }
 }
\ No newline at end of file
@@ -0,0 +1,314 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.validation.Schema;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+/**
+ * A parser which can be shared between threads. Every thread gets its own
+ * document builder which is reset after each use, the parsed document and the
+ * thrown exceptions are returned as an XMLParseResult instead of being stored
+ * in the engine.
+ *
+ * @author Neithan
+ */
+public class XMLParserEngine
+{
+    private final DocumentBuilderFactory factory;
+    private final XMLStrictErrorHandler errorHandler;
+    private final ThreadLocal<Builder> builders;
+    private final Schema schema;
+    private final XMLValidator validator;
+
+    /**
+     * Create a new parser engine without a schema.
+     */
+    public XMLParserEngine()
+    {
+        this((Schema) null);
+    }
+
+    /**
+     * Create a new parser engine which validates against the schema of the
+     * given validator. The current schema of the validator is used for every
+     * parse run, so a reloaded schema is picked up by the next one.
+     *
+     * @param validator The validator holding the compiled schema.
+     */
+    public XMLParserEngine(XMLValidator validator)
+    {
+        this(XMLParserEngine.requireSchema(validator), validator);
+    }
+
+    /**
+     * Create a new parser engine which validates against the given schema
+     * while parsing.
+     *
+     * @param schema A compiled schema or null to parse without validation.
+     */
+    public XMLParserEngine(Schema schema)
+    {
+        this(schema, null);
+    }
+
+    /**
+     * Create a new parser engine.
+     *
+     * @param schema    The compiled schema or null.
+     * @param validator The validator to take the current schema from or null.
+     */
+    private XMLParserEngine(Schema schema, XMLValidator validator)
+    {
+        this.factory = DocumentBuilderFactory.newInstance();
+        this.errorHandler = new XMLStrictErrorHandler();
+        this.builders = new ThreadLocal<>();
+        this.schema = schema;
+        this.validator = validator;
+
+        if (schema != null)
+        {
+            this.factory.setNamespaceAware(true);
+
+            try
+            {
+                // Keep the text as written, like the XMLParser does.
+                this.factory.setFeature(XMLParser.NORMALIZED_VALUE_FEATURE, false);
+            }
+            catch (ParserConfigurationException e)
+            {
+                // Another parser implementation, the values may be normalized.
+            }
+        }
+    }
+
+    /**
+     * Get the schema of the given validator.
+     *
+     * @param validator The validator.
+     *
+     * @return The compiled schema.
+     */
+    private static Schema requireSchema(XMLValidator validator)
+    {
+        if (validator.getSchema() == null)
+        {
+            throw new IllegalArgumentException("The schema of the validator could not be compiled.");
+        }
+
+        return validator.getSchema();
+    }
+
+    /**
+     * Get the schema to validate against in the next parse run.
+     *
+     * @return The schema or null.
+     */
+    private Schema getSchema()
+    {
+        if (this.validator != null && this.validator.getSchema() != null)
+        {
+            return this.validator.getSchema();
+        }
+
+        return this.schema;
+    }
+
+    /**
+     * Get the document builder of the current thread for the current schema.
+     * The builder is created on first use and again once the schema of the
+     * validator has been reloaded.
+     *
+     * @return The document builder.
+     *
+     * @throws ParserConfigurationException
+     */
+    private DocumentBuilder getBuilder() throws ParserConfigurationException
+    {
+        Schema current = this.getSchema();
+        Builder builder = this.builders.get();
+
+        if (builder == null || builder.schema != current)
+        {
+            // The factory itself is not thread safe.
+            synchronized (this.factory)
+            {
+                this.factory.setSchema(current);
+                builder = new Builder(this.factory.newDocumentBuilder(), current);
+            }
+
+            this.builders.set(builder);
+        }
+
+        return builder.builder;
+    }
+
+    /**
+     * Parse the file at the given path.
+     *
+     * @param path The path where an XML file resides.
+     *
+     * @return The result of the parse run.
+     */
+    public XMLParseResult parse(String path)
+    {
+        return this.parse(new File(path));
+    }
+
+    /**
+     * Parse the given path.
+     *
+     * @param path The path of the XML file.
+     *
+     * @return The result of the parse run.
+     */
+    public XMLParseResult parse(Path path)
+    {
+        return this.parse(path.toFile());
+    }
+
+    /**
+     * Parse the given file. A file of at least 8 MB is memory mapped and
+     * parsed straight from the mapping, smaller files are read once.
+     *
+     * @param file The file to parse.
+     *
+     * @return The result of the parse run.
+     */
+    public XMLParseResult parse(File file)
+    {
+        try (InputStream stream = XMLMappedInputStream.map(file))
+        {
+            return this.parse(stream);
+        }
+        catch (IOException e)
+        {
+            return XMLParserEngine.failed(e);
+        }
+    }
+
+    /**
+     * Parse the given InputStream. Gzip and zlib compressed data is
+     * decompressed on the fly.
+     *
+     * @param stream The stream to parse.
+     *
+     * @return The result of the parse run.
+     */
+    public XMLParseResult parse(InputStream stream)
+    {
+        ArrayList<Exception> exceptionList = new ArrayList<>();
+        DocumentBuilder builder = null;
+
+        if (stream == null)
+        {
+            return new XMLParseResult(null, exceptionList);
+        }
+
+        try
+        {
+            builder = this.getBuilder();
+            builder.setErrorHandler(this.errorHandler);
+
+            Document document = builder.parse(XMLCompression.decompress(stream));
+            document.getDocumentElement().normalize();
+
+            return new XMLParseResult(document, exceptionList);
+        }
+        catch (ParserConfigurationException | SAXException | IOException e)
+        {
+            exceptionList.add(e);
+        }
+        finally
+        {
+            if (builder != null)
+            {
+                builder.reset();
+            }
+        }
+
+        return new XMLParseResult(null, exceptionList);
+    }
+
+    /**
+     * Parse all given files with a pool of worker threads. Every worker reuses
+     * its own document builder. The pool is shut down before returning.
+     *
+     * @param paths       The files to parse.
+     * @param parallelism The number of worker threads.
+     *
+     * @return The result for each path, in the order of the given collection.
+     */
+    public LinkedHashMap<Path, XMLParseResult> parseAll(Collection<Path> paths, int parallelism)
+    {
+        return XMLBatch.run(paths, parallelism, this::parse, XMLParserEngine::failed);
+    }
+
+    /**
+     * Create a failed parse result holding the given exception.
+     *
+     * @param e The exception.
+     *
+     * @return The parse result.
+     */
+    private static XMLParseResult failed(Exception e)
+    {
+        ArrayList<Exception> exceptionList = new ArrayList<>();
+        exceptionList.add(e);
+
+        return new XMLParseResult(null, exceptionList);
+    }
+
+    /**
+     * A document builder together with the schema it validates against.
+     */
+    private static final class Builder
+    {
+        private final DocumentBuilder builder;
+        private final Schema schema;
+
+        /**
+         * Create a new entry.
+         *
+         * @param builder The document builder.
+         * @param schema  The schema of the builder or null.
+         */
+        private Builder(DocumentBuilder builder, Schema schema)
+        {
+            this.builder = builder;
+            this.schema = schema;
+        }
+    }
+}
@@ -0,0 +1,444 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML;
+
+import java.util.ArrayList;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * A compiled path to elements, attributes or text below an element, e.g.
+ * "order/items/item/@id". Each step selects the direct child elements with the
+ * given name, "*" selects every child element and "." the element itself. The
+ * last step may be an attribute ("@id") or "text()", which selects the direct
+ * text and CDATA children of the element only. Evaluation only walks
+ * down along the path instead of scanning the whole subtree, a compiled path
+ * can be reused for any number of elements and from any thread.
+ *
+ * @author Neithan
+ */
+public final class XMLPath
+{
+    private static final String WILDCARD = "*";
+    private static final String SELF = ".";
+    private static final String TEXT = "text()";
+    private final String expression;
+    private final String[] steps;
+    private final String attribute;
+    private final boolean text;
+
+    /**
+     * Create a new compiled path.
+     *
+     * @param expression The original expression.
+     * @param steps      The element steps.
+     * @param attribute  The selected attribute or null if the element or its
+     *                   text is selected.
+     * @param text       True if the direct text children are selected.
+     */
+    private XMLPath(String expression, String[] steps, String attribute, boolean text)
+    {
+        this.expression = expression;
+        this.steps = steps;
+        this.attribute = attribute;
+        this.text = text;
+    }
+
+    /**
+     * Compile the given path expression.
+     *
+     * @param expression The path, relative to the element it is evaluated on.
+     *
+     * @return The compiled path.
+     */
+    public static XMLPath compile(String expression)
+    {
+        if (expression == null || expression.isEmpty())
+        {
+            throw new IllegalArgumentException("The path must not be empty.");
+        }
+
+        String[] parts = expression.split("/", -1);
+        ArrayList<String> steps = new ArrayList<>();
+        String attribute = null;
+        boolean text = false;
+
+        for (int i = 0; i < parts.length; i++)
+        {
+            String part = parts[i];
+            boolean last = i == parts.length - 1;
+
+            if (part.isEmpty())
+            {
+                throw new IllegalArgumentException("Absolute paths and descendant steps are not supported: " + expression);
+            }
+
+            if (part.startsWith("@") || part.equals(TEXT))
+            {
+                if (!last)
+                {
+                    throw new IllegalArgumentException("Only the last step may select an attribute or text: " + expression);
+                }
+
+                if (part.startsWith("@"))
+                {
+                    if (part.length() == 1)
+                    {
+                        throw new IllegalArgumentException("Missing attribute name: " + expression);
+                    }
+
+                    attribute = part.substring(1);
+                }
+                else
+                {
+                    text = true;
+                }
+            }
+            else if (!part.equals(SELF))
+            {
+                steps.add(part);
+            }
+        }
+
+        return new XMLPath(expression, steps.toArray(new String[0]), attribute, text);
+    }
+
+    /**
+     * Get the first element matching the path. For attribute paths, this is
+     * the first element having the attribute, for text paths the first
+     * element having a direct text child.
+     *
+     * @param element The element to start from.
+     *
+     * @return The element or null if nothing matches.
+     */
+    public Element getElement(Element element)
+    {
+        return this.find(element, 0);
+    }
+
+    /**
+     * Get all elements matching the path in document order. For attribute
+     * paths, only elements having the attribute are returned, for text paths
+     * only elements having a direct text child.
+     *
+     * @param element The element to start from.
+     *
+     * @return A list of elements.
+     */
+    public ArrayList<Element> getElements(Element element)
+    {
+        ArrayList<Element> elements = new ArrayList<>();
+        this.collect(element, 0, elements);
+
+        return elements;
+    }
+
+    /**
+     * Check if anything matches the path.
+     *
+     * @param element The element to start from.
+     *
+     * @return Returns true if found, otherwise false.
+     */
+    public boolean exists(Element element)
+    {
+        return this.find(element, 0) != null;
+    }
+
+    /**
+     * Get the value of the first match. This is the attribute value for
+     * attribute paths, the direct text children for text paths and the text
+     * content of the element otherwise.
+     *
+     * @param element The element to start from.
+     *
+     * @return The value as a string or null if nothing matches.
+     */
+    public String getString(Element element)
+    {
+        Element match = this.find(element, 0);
+
+        if (match == null)
+        {
+            return null;
+        }
+
+        return this.getValue(match);
+    }
+
+    /**
+     * Get the values of all matches in document order.
+     *
+     * @param element The element to start from.
+     *
+     * @return A list of values as string.
+     */
+    public ArrayList<String> getStrings(Element element)
+    {
+        ArrayList<String> values = new ArrayList<>();
+
+        for (Element match : this.getElements(element))
+        {
+            values.add(this.getValue(match));
+        }
+
+        return values;
+    }
+
+    /**
+     * Get the value of the first match and parse it into an integer.
+     *
+     * @param element The element to start from.
+     *
+     * @return The value as an integer.
+     *
+     * @throws IllegalArgumentException If nothing matches the path.
+     */
+    public int getInt(Element element)
+    {
+        return Integer.parseInt(this.getRequiredString(element));
+    }
+
+    /**
+     * Get the value of the first match and parse it into a long.
+     *
+     * @param element The element to start from.
+     *
+     * @return The value as a long.
+     *
+     * @throws IllegalArgumentException If nothing matches the path.
+     */
+    public long getLong(Element element)
+    {
+        return Long.parseLong(this.getRequiredString(element));
+    }
+
+    /**
+     * Get the value of the first match and parse it into a double.
+     *
+     * @param element The element to start from.
+     *
+     * @return The value as a double.
+     *
+     * @throws IllegalArgumentException If nothing matches the path.
+     */
+    public double getDouble(Element element)
+    {
+        return Double.parseDouble(this.getRequiredString(element));
+    }
+
+    /**
+     * Get the value of the first match and parse it into a boolean.
+     *
+     * @param element The element to start from.
+     *
+     * @return The value as a boolean.
+     *
+     * @throws IllegalArgumentException If nothing matches the path.
+     */
+    public boolean getBoolean(Element element)
+    {
+        return Boolean.parseBoolean(this.getRequiredString(element));
+    }
+
+    /**
+     * Get the value of the first match for the typed getters.
+     *
+     * @param element The element to start from.
+     *
+     * @return The value as a string.
+     *
+     * @throws IllegalArgumentException If nothing matches the path.
+     */
+    private String getRequiredString(Element element)
+    {
+        String value = this.getString(element);
+
+        if (value == null)
+        {
+            throw new IllegalArgumentException("Nothing matches the path: " + this.expression);
+        }
+
+        return value;
+    }
+
+    /**
+     * Get the value of a matching element.
+     *
+     * @param element The matching element.
+     *
+     * @return The attribute value, direct text or text content.
+     */
+    private String getValue(Element element)
+    {
+        if (this.attribute != null)
+        {
+            return element.getAttribute(this.attribute);
+        }
+
+        if (!this.text)
+        {
+            return element.getTextContent();
+        }
+
+        StringBuilder value = new StringBuilder();
+
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling())
+        {
+            if (XMLPath.isText(child))
+            {
+                value.append(child.getNodeValue());
+            }
+        }
+
+        return value.toString();
+    }
+
+    /**
+     * Check if the element is a match of the last step.
+     *
+     * @param element The element reached by the last step.
+     *
+     * @return Returns true if the element matches.
+     */
+    private boolean isMatch(Element element)
+    {
+        if (this.attribute != null)
+        {
+            return element.hasAttribute(this.attribute);
+        }
+
+        if (!this.text)
+        {
+            return true;
+        }
+
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling())
+        {
+            if (XMLPath.isText(child))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Check if the given node is a text or CDATA node.
+     *
+     * @param node The node to check.
+     *
+     * @return Returns true if the node holds text.
+     */
+    private static boolean isText(Node node)
+    {
+        return node.getNodeType() == Node.TEXT_NODE || node.getNodeType() == Node.CDATA_SECTION_NODE;
+    }
+
+    /**
+     * Check if the given node is an element matching the step.
+     *
+     * @param node The node to check.
+     * @param step The step name.
+     *
+     * @return Returns true if the node matches.
+     */
+    private static boolean matches(Node node, String step)
+    {
+        return node.getNodeType() == Node.ELEMENT_NODE
+            && (step.equals(WILDCARD) || step.equals(node.getNodeName()));
+    }
+
+    /**
+     * Find the first match in document order, walking down along the path.
+     *
+     * @param element The current element.
+     * @param step    The index of the next step.
+     *
+     * @return The first match or null.
+     */
+    private Element find(Element element, int step)
+    {
+        if (step == this.steps.length)
+        {
+            return this.isMatch(element) ? element : null;
+        }
+
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling())
+        {
+            if (XMLPath.matches(child, this.steps[step]))
+            {
+                Element match = this.find((Element) child, step + 1);
+
+                if (match != null)
+                {
+                    return match;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Collect every match in document order, walking down along the path.
+     *
+     * @param element  The current element.
+     * @param step     The index of the next step.
+     * @param elements The list to add the matches to.
+     */
+    private void collect(Element element, int step, ArrayList<Element> elements)
+    {
+        if (step == this.steps.length)
+        {
+            if (this.isMatch(element))
+            {
+                elements.add(element);
+            }
+
+            return;
+        }
+
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling())
+        {
+            if (XMLPath.matches(child, this.steps[step]))
+            {
+                this.collect((Element) child, step + 1, elements);
+            }
+        }
+    }
+
+    /**
+     * Get the expression this path has been compiled from.
+     *
+     * @return The path expression.
+     */
+    @Override
+    public String toString()
+    {
+        return this.expression;
+    }
+}
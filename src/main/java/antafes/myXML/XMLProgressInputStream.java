@@ -0,0 +1,117 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+package antafes.myXML;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.LongConsumer;
+
+/**
+ * InputStream which counts the bytes read and reports the total to a
+ * listener after every read.
+ *
+ * @author Neithan
+ */
+class XMLProgressInputStream extends FilterInputStream
+{
+    private final LongConsumer listener;
+    private long count;
+    private long mark;
+
+    /**
+     * Create a new stream reading from the given stream.
+     *
+     * @param stream   The wrapped stream.
+     * @param listener Gets the number of bytes read so far.
+     */
+    XMLProgressInputStream(InputStream stream, LongConsumer listener)
+    {
+        super(stream);
+        this.listener = listener;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        int b = this.in.read();
+
+        if (b >= 0)
+        {
+            this.progress(1);
+        }
+
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        int read = this.in.read(b, off, len);
+
+        if (read > 0)
+        {
+            this.progress(read);
+        }
+
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException
+    {
+        long skipped = this.in.skip(n);
+
+        if (skipped > 0)
+        {
+            this.progress(skipped);
+        }
+
+        return skipped;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit)
+    {
+        this.in.mark(readlimit);
+        this.mark = this.count;
+    }
+
+    @Override
+    public synchronized void reset() throws IOException
+    {
+        this.in.reset();
+        this.count = this.mark;
+    }
+
+    /**
+     * Add to the count and report it.
+     *
+     * @param bytes The number of bytes read.
+     */
+    private void progress(long bytes)
+    {
+        this.count += bytes;
+        this.listener.accept(this.count);
+    }
+}
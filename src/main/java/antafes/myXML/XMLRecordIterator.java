@@ -0,0 +1,322 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+package antafes.myXML;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Iterator over all elements with a given tag name inside of an XML stream.
+ * Only the subtree of the current record is held in memory, every record is
+ * built into its own small document, so the static helpers of the XMLParser
+ * can be used on each of them.
+ *
+ * @author Neithan
+ */
+public class XMLRecordIterator implements Iterator<Element>, Closeable
+{
+    private static final String XMLNS_NAMESPACE_URI = "http://www.w3.org/2000/xmlns/";
+    private final XMLStreamReader reader;
+    private final InputStream stream;
+    private final DocumentBuilder builder;
+    private final String tag;
+    private final ArrayList<Exception> exceptionList;
+    private Element next;
+    private boolean finished;
+
+    /**
+     * Create a new record iterator.
+     *
+     * @param reader        The stream reader to read the records from. If null, the
+     *                      iterator is empty.
+     * @param stream        The underlying stream, closed together with the iterator.
+     * @param builder       The document builder used to create the record documents.
+     * @param tag           The tag name of the records.
+     * @param exceptionList The list to add exceptions thrown while reading to.
+     */
+    XMLRecordIterator(XMLStreamReader reader, InputStream stream, DocumentBuilder builder, String tag, ArrayList<Exception> exceptionList)
+    {
+        this.reader = reader;
+        this.stream = stream;
+        this.builder = builder;
+        this.tag = tag;
+        this.exceptionList = exceptionList;
+        this.finished = reader == null || builder == null;
+    }
+
+    /**
+     * Check if there is another record in the stream.
+     *
+     * @return Returns true if there is another record, otherwise false.
+     */
+    @Override
+    public boolean hasNext()
+    {
+        if (this.next == null && !this.finished)
+        {
+            this.next = this.readNext();
+        }
+
+        return this.next != null;
+    }
+
+    /**
+     * Get the next record.
+     *
+     * @return The element of the next record.
+     */
+    @Override
+    public Element next()
+    {
+        if (!this.hasNext())
+        {
+            throw new NoSuchElementException();
+        }
+
+        Element record = this.next;
+        this.next = null;
+
+        return record;
+    }
+
+    /**
+     * Get a sequential stream of the remaining records. Closing the stream
+     * closes the iterator.
+     *
+     * @return A stream of record elements.
+     */
+    public Stream<Element> stream()
+    {
+        return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL),
+            false
+        ).onClose(this::close);
+    }
+
+    /**
+     * Close the reader and the underlying stream.
+     */
+    @Override
+    public void close()
+    {
+        this.finished = true;
+        this.next = null;
+
+        try
+        {
+            if (this.reader != null)
+            {
+                this.reader.close();
+            }
+        }
+        catch (XMLStreamException e)
+        {
+            this.exceptionList.add(e);
+        }
+
+        try
+        {
+            if (this.stream != null)
+            {
+                this.stream.close();
+            }
+        }
+        catch (IOException e)
+        {
+            this.exceptionList.add(e);
+        }
+    }
+
+    /**
+     * Read forward until the next record starts and build it.
+     *
+     * @return The record element or null if the end of the stream is reached.
+     */
+    private Element readNext()
+    {
+        try
+        {
+            while (this.reader.hasNext())
+            {
+                if (this.reader.next() == XMLStreamConstants.START_ELEMENT && this.isRecord())
+                {
+                    Document document = this.builder.newDocument();
+                    Element record = this.readRecord(document);
+                    document.appendChild(record);
+
+                    return record;
+                }
+            }
+        }
+        catch (XMLStreamException e)
+        {
+            this.exceptionList.add(e);
+        }
+
+        this.close();
+
+        return null;
+    }
+
+    /**
+     * Check if the current start element is a record.
+     *
+     * @return Returns true if the current element has the tag name of the records.
+     */
+    private boolean isRecord()
+    {
+        return this.tag.equals(this.reader.getLocalName()) || this.tag.equals(this.getQualifiedName());
+    }
+
+    /**
+     * Build the subtree of the current start element.
+     *
+     * @param document The document to create the nodes with.
+     *
+     * @return The record element.
+     *
+     * @throws XMLStreamException
+     */
+    private Element readRecord(Document document) throws XMLStreamException
+    {
+        Element record = this.createElement(document);
+        Node current = record;
+        int depth = 1;
+
+        while (depth > 0)
+        {
+            switch (this.reader.next())
+            {
+                case XMLStreamConstants.START_ELEMENT:
+                    Element child = this.createElement(document);
+                    current.appendChild(child);
+                    current = child;
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    current = current.getParentNode();
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    current.appendChild(document.createTextNode(this.reader.getText()));
+                    break;
+                case XMLStreamConstants.CDATA:
+                    current.appendChild(document.createCDATASection(this.reader.getText()));
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    current.appendChild(document.createComment(this.reader.getText()));
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    current.appendChild(document.createProcessingInstruction(this.reader.getPITarget(), this.reader.getPIData()));
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        return record;
+    }
+
+    /**
+     * Create an element for the current start element including its
+     * attributes and namespace declarations.
+     *
+     * @param document The document to create the element with.
+     *
+     * @return The created element.
+     */
+    private Element createElement(Document document)
+    {
+        Element element;
+        String namespace = this.reader.getNamespaceURI();
+
+        if (namespace != null && !namespace.isEmpty())
+        {
+            element = document.createElementNS(namespace, this.getQualifiedName());
+        }
+        else
+        {
+            element = document.createElement(this.reader.getLocalName());
+        }
+
+        for (int i = 0; i < this.reader.getNamespaceCount(); i++)
+        {
+            String prefix = this.reader.getNamespacePrefix(i);
+            String name = prefix == null || prefix.isEmpty() ? "xmlns" : "xmlns:" + prefix;
+            element.setAttributeNS(XMLNS_NAMESPACE_URI, name, this.reader.getNamespaceURI(i));
+        }
+
+        for (int i = 0; i < this.reader.getAttributeCount(); i++)
+        {
+            String attributeNamespace = this.reader.getAttributeNamespace(i);
+            String prefix = this.reader.getAttributePrefix(i);
+            String localName = this.reader.getAttributeLocalName(i);
+
+            if (attributeNamespace != null && !attributeNamespace.isEmpty())
+            {
+                String name = prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+                element.setAttributeNS(attributeNamespace, name, this.reader.getAttributeValue(i));
+            }
+            else
+            {
+                element.setAttribute(localName, this.reader.getAttributeValue(i));
+            }
+        }
+
+        return element;
+    }
+
+    /**
+     * Get the qualified name of the current element.
+     *
+     * @return The name including the prefix, if there is one.
+     */
+    private String getQualifiedName()
+    {
+        String prefix = this.reader.getPrefix();
+
+        if (prefix == null || prefix.isEmpty())
+        {
+            return this.reader.getLocalName();
+        }
+
+        return prefix + ":" + this.reader.getLocalName();
+    }
+}
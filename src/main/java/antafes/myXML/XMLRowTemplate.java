@@ -0,0 +1,278 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML;
+
+import java.util.ArrayList;
+import java.util.function.Function;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Describes the element written for each record by XMLWriter.addRows: its
+ * name, attributes, text and child elements with text. The values are taken
+ * from the record by extractor functions. A null value leaves out the
+ * attribute, text or the text of the child element.
+ *
+ * Each writer creates a prototype element once per template, every row is a
+ * copy of it which only gets its values filled in. The prototype belongs to
+ * the writer, the template keeps no document and can be shared by any number
+ * of writers and threads.
+ *
+ * @param <T> The type of the records.
+ *
+ * @author Neithan
+ */
+public final class XMLRowTemplate<T>
+{
+    private final String name;
+    private final String[] attributeNames;
+    private final ArrayList<Function<? super T, String>> attributeValues;
+    private final Function<? super T, String> value;
+    private final String[] childNames;
+    private final ArrayList<Function<? super T, String>> childValues;
+
+    /**
+     * Create a new template from the builder.
+     *
+     * @param builder The builder.
+     */
+    private XMLRowTemplate(Builder<T> builder)
+    {
+        this.name = builder.name;
+        this.attributeNames = builder.attributeNames.toArray(new String[0]);
+        this.attributeValues = new ArrayList<>(builder.attributeValues);
+        this.value = builder.value;
+        this.childNames = builder.childNames.toArray(new String[0]);
+        this.childValues = new ArrayList<>(builder.childValues);
+    }
+
+    /**
+     * Start building a template for elements with the given name.
+     *
+     * @param <T>  The type of the records.
+     * @param name The element name.
+     *
+     * @return The builder.
+     */
+    public static <T> Builder<T> builder(String name)
+    {
+        return new Builder<>(name);
+    }
+
+    /**
+     * Create a template for records given as string arrays. Each array holds
+     * the attribute values first, followed by the texts of the child
+     * elements, in the order of the given names.
+     *
+     * @param name           The element name.
+     * @param attributeNames The attribute names.
+     * @param childNames     The child element names.
+     *
+     * @return The template.
+     */
+    public static XMLRowTemplate<String[]> ofArrays(String name, String[] attributeNames, String... childNames)
+    {
+        Builder<String[]> builder = new Builder<>(name);
+
+        for (int i = 0; i < attributeNames.length; i++)
+        {
+            int index = i;
+            builder.attribute(attributeNames[i], row -> row[index]);
+        }
+
+        for (int i = 0; i < childNames.length; i++)
+        {
+            int index = attributeNames.length + i;
+            builder.child(childNames[i], row -> row[index]);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Create the element for the given record.
+     *
+     * @param prototype The prototype created by createPrototype.
+     * @param record    The record.
+     *
+     * @return The element, not yet appended to a parent.
+     */
+    Element createRow(Element prototype, T record)
+    {
+        Document document = prototype.getOwnerDocument();
+        Element row = (Element) prototype.cloneNode(true);
+
+        for (int i = 0; i < this.attributeNames.length; i++)
+        {
+            String attributeValue = this.attributeValues.get(i).apply(record);
+
+            if (attributeValue == null)
+            {
+                row.removeAttribute(this.attributeNames[i]);
+            }
+            else
+            {
+                row.setAttribute(this.attributeNames[i], attributeValue);
+            }
+        }
+
+        Node child = row.getFirstChild();
+
+        for (Function<? super T, String> childValue : this.childValues)
+        {
+            String text = childValue.apply(record);
+
+            if (text != null)
+            {
+                child.appendChild(document.createTextNode(text));
+            }
+
+            child = child.getNextSibling();
+        }
+
+        if (this.value != null)
+        {
+            String text = this.value.apply(record);
+
+            if (text != null)
+            {
+                row.insertBefore(document.createTextNode(text), row.getFirstChild());
+            }
+        }
+
+        return row;
+    }
+
+    /**
+     * Create the prototype element for the given document, with empty
+     * attributes and child elements.
+     *
+     * @param document The document.
+     *
+     * @return The prototype.
+     */
+    Element createPrototype(Document document)
+    {
+        Element element = document.createElement(this.name);
+
+        for (String attributeName : this.attributeNames)
+        {
+            element.setAttribute(attributeName, "");
+        }
+
+        for (String childName : this.childNames)
+        {
+            element.appendChild(document.createElement(childName));
+        }
+
+        return element;
+    }
+
+    /**
+     * Collects the parts of a row template.
+     *
+     * @param <T> The type of the records.
+     */
+    public static final class Builder<T>
+    {
+        private final String name;
+        private final ArrayList<String> attributeNames = new ArrayList<>();
+        private final ArrayList<Function<? super T, String>> attributeValues = new ArrayList<>();
+        private Function<? super T, String> value;
+        private final ArrayList<String> childNames = new ArrayList<>();
+        private final ArrayList<Function<? super T, String>> childValues = new ArrayList<>();
+
+        /**
+         * Create a new builder.
+         *
+         * @param name The element name.
+         */
+        private Builder(String name)
+        {
+            this.name = name;
+        }
+
+        /**
+         * Add an attribute.
+         *
+         * @param name  The attribute name.
+         * @param value Extracts the attribute value from a record.
+         *
+         * @return This builder.
+         */
+        public Builder<T> attribute(String name, Function<? super T, String> value)
+        {
+            if (this.attributeNames.contains(name))
+            {
+                throw new IllegalArgumentException("Duplicate attribute " + name);
+            }
+
+            this.attributeNames.add(name);
+            this.attributeValues.add(value);
+
+            return this;
+        }
+
+        /**
+         * Set the text of the element.
+         *
+         * @param value Extracts the text from a record.
+         *
+         * @return This builder.
+         */
+        public Builder<T> value(Function<? super T, String> value)
+        {
+            this.value = value;
+
+            return this;
+        }
+
+        /**
+         * Add a child element with text.
+         *
+         * @param name  The child element name.
+         * @param value Extracts the text from a record.
+         *
+         * @return This builder.
+         */
+        public Builder<T> child(String name, Function<? super T, String> value)
+        {
+            this.childNames.add(name);
+            this.childValues.add(value);
+
+            return this;
+        }
+
+        /**
+         * Create the template.
+         *
+         * @return The template.
+         */
+        public XMLRowTemplate<T> build()
+        {
+            return new XMLRowTemplate<>(this);
+        }
+    }
+}
@@ -0,0 +1,476 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import org.xml.sax.SAXException;
+
+/**
+ * Process wide cache of compiled schemas. Schemas read from a file are keyed by
+ * their canonical path and compiled again once the modification time or the
+ * size of the file differs from the compiled one, schemas read from a stream
+ * by the SHA-256 hash of their content. A compiled schema is thread safe, validators created from it
+ * are cheap. The least recently used schema is dropped once the maximum size
+ * is reached.
+ *
+ * @author Neithan
+ */
+public final class XMLSchemaCache
+{
+    private static final String SCHEMA_NAMESPACE_URI = "http://www.w3.org/2001/XMLSchema";
+    private static final int DEFAULT_MAX_SIZE = 16;
+    private static final LinkedHashMap<String, CompiledSchema> SCHEMAS = new LinkedHashMap<>(16, 0.75f, true);
+    private static int maxSize = DEFAULT_MAX_SIZE;
+
+    /**
+     * The cache is only used through its static methods.
+     */
+    private XMLSchemaCache()
+    {
+    }
+
+    /**
+     * Get the compiled schema of the given file. The schema is compiled if it
+     * is not cached yet or the file has changed since.
+     *
+     * @param file The schema file.
+     *
+     * @return The compiled schema.
+     *
+     * @throws IOException
+     * @throws SAXException
+     */
+    public static Schema getSchema(File file) throws IOException, SAXException
+    {
+        return XMLSchemaCache.compile(file).schema;
+    }
+
+    /**
+     * Get the compiled schema read from the given stream. The stream is read
+     * completely to compute the content hash, the schema is only compiled if
+     * no schema with the same content is cached.
+     *
+     * @param stream The schema stream.
+     *
+     * @return The compiled schema.
+     *
+     * @throws IOException
+     * @throws SAXException
+     */
+    public static Schema getSchema(InputStream stream) throws IOException, SAXException
+    {
+        byte[] content = XMLSchemaCache.read(stream);
+
+        return XMLSchemaCache.compile(XMLSchemaCache.hash(content), content).schema;
+    }
+
+    /**
+     * Get the compiled schema of the given file together with its
+     * fingerprint. The schema is compiled if it is not cached yet or the
+     * modification time or size of the file has changed. Relative includes
+     * and imports are resolved against the file.
+     *
+     * @param file The schema file.
+     *
+     * @return The compiled schema.
+     *
+     * @throws IOException
+     * @throws SAXException
+     */
+    static CompiledSchema compile(File file) throws IOException, SAXException
+    {
+        if (!file.isFile())
+        {
+            throw new FileNotFoundException(file.getPath() + " (No such file)");
+        }
+
+        String key = XMLSchemaCache.getKey(file);
+        CompiledSchema cached = XMLSchemaCache.get(key);
+
+        if (cached != null && cached.isCurrent(file))
+        {
+            return cached;
+        }
+
+        return XMLSchemaCache.put(key, XMLSchemaCache.compileFile(file), cached != null);
+    }
+
+    /**
+     * Read and compile the schema file. The modification time and size are
+     * taken before the content is read, so a change while reading is noticed
+     * by the next lookup.
+     *
+     * @param file The schema file.
+     *
+     * @return The compiled schema.
+     *
+     * @throws IOException
+     * @throws SAXException
+     */
+    private static CompiledSchema compileFile(File file) throws IOException, SAXException
+    {
+        long lastModified = file.lastModified();
+        long length = file.length();
+        byte[] content = Files.readAllBytes(file.toPath());
+        CompiledSchema compiled = XMLSchemaCache.compile(content, file.toURI().toString());
+
+        return new CompiledSchema(compiled.schema, compiled.fingerprint, lastModified, length);
+    }
+
+    /**
+     * Get the compiled schema with the given content together with its
+     * fingerprint.
+     *
+     * @param hash    The SHA-256 hash of the content as a hex string.
+     * @param content The schema content.
+     *
+     * @return The compiled schema.
+     *
+     * @throws SAXException
+     */
+    static CompiledSchema compile(String hash, byte[] content) throws SAXException
+    {
+        String key = "sha256:" + hash;
+        CompiledSchema cached = XMLSchemaCache.get(key);
+
+        if (cached != null)
+        {
+            return cached;
+        }
+
+        return XMLSchemaCache.put(key, XMLSchemaCache.compile(content, null), false);
+    }
+
+    /**
+     * Read the stream completely.
+     *
+     * @param stream The stream to read.
+     *
+     * @return The content.
+     *
+     * @throws IOException
+     */
+    static byte[] read(InputStream stream) throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = stream.read(buf)) >= 0)
+            baos.write(buf, 0, n);
+
+        return baos.toByteArray();
+    }
+
+    /**
+     * Get the cached schema for the given key.
+     *
+     * @param key The cache key.
+     *
+     * @return The compiled schema or null.
+     */
+    private static CompiledSchema get(String key)
+    {
+        synchronized (SCHEMAS)
+        {
+            return SCHEMAS.get(key);
+        }
+    }
+
+    /**
+     * Cache a compiled schema. Compilation is done outside of the lock, so
+     * other schemas can be fetched meanwhile. If the schema has been cached
+     * by another thread meanwhile, that one is kept, unless it is replaced.
+     *
+     * @param key      The cache key.
+     * @param compiled The compiled schema.
+     * @param replace  Whether a cached schema is replaced.
+     *
+     * @return The cached schema.
+     */
+    private static CompiledSchema put(String key, CompiledSchema compiled, boolean replace)
+    {
+        synchronized (SCHEMAS)
+        {
+            CompiledSchema cached = SCHEMAS.get(key);
+
+            if (cached != null && !replace)
+            {
+                return cached;
+            }
+
+            SCHEMAS.put(key, compiled);
+            XMLSchemaCache.evict();
+        }
+
+        return compiled;
+    }
+
+    /**
+     * Compile the schema with the given content. Included and imported
+     * schemas are added to the fingerprint.
+     *
+     * @param content  The schema content.
+     * @param systemId The location to resolve relative includes against, may
+     *                 be null.
+     *
+     * @return The compiled schema.
+     *
+     * @throws SAXException
+     */
+    private static CompiledSchema compile(byte[] content, String systemId) throws SAXException
+    {
+        XMLSchemaResolver resolver = new XMLSchemaResolver(content);
+
+        // The schema factory is not thread safe, so every compilation gets its own.
+        SchemaFactory factory = SchemaFactory.newInstance(SCHEMA_NAMESPACE_URI);
+        factory.setResourceResolver(resolver);
+        Schema schema = factory.newSchema(new StreamSource(new ByteArrayInputStream(content), systemId));
+
+        return new CompiledSchema(schema, resolver.getFingerprint());
+    }
+
+    /**
+     * Compile the schema of the given file again and replace the cached
+     * schema of the file, even if the file seems unchanged. Relative includes
+     * and imports are resolved against the file and read again.
+     *
+     * @param file The schema file.
+     *
+     * @return The compiled schema.
+     *
+     * @throws IOException
+     * @throws SAXException
+     */
+    static CompiledSchema reload(File file) throws IOException, SAXException
+    {
+        return XMLSchemaCache.put(XMLSchemaCache.getKey(file), XMLSchemaCache.compileFile(file), true);
+    }
+
+    /**
+     * Remove the compiled schema of the given file from the cache.
+     *
+     * @param file The schema file.
+     *
+     * @throws IOException
+     */
+    public static void invalidate(File file) throws IOException
+    {
+        synchronized (SCHEMAS)
+        {
+            SCHEMAS.remove(XMLSchemaCache.getKey(file));
+        }
+    }
+
+    /**
+     * Remove every compiled schema from the cache.
+     */
+    public static void invalidateAll()
+    {
+        synchronized (SCHEMAS)
+        {
+            SCHEMAS.clear();
+        }
+    }
+
+    /**
+     * Set the maximum number of cached schemas. Exceeding schemas are removed
+     * immediately, starting with the least recently used.
+     *
+     * @param size The maximum number of schemas, at least 1.
+     */
+    public static void setMaxSize(int size)
+    {
+        if (size < 1)
+        {
+            throw new IllegalArgumentException("The cache size must be at least 1.");
+        }
+
+        synchronized (SCHEMAS)
+        {
+            maxSize = size;
+            XMLSchemaCache.evict();
+        }
+    }
+
+    /**
+     * Get the maximum number of cached schemas.
+     *
+     * @return The maximum size.
+     */
+    public static int getMaxSize()
+    {
+        synchronized (SCHEMAS)
+        {
+            return maxSize;
+        }
+    }
+
+    /**
+     * Get the number of cached schemas.
+     *
+     * @return The current size.
+     */
+    public static int size()
+    {
+        synchronized (SCHEMAS)
+        {
+            return SCHEMAS.size();
+        }
+    }
+
+    /**
+     * Remove the least recently used schemas until the maximum size is met.
+     * Has to be called while holding the lock.
+     */
+    private static void evict()
+    {
+        Iterator<Map.Entry<String, CompiledSchema>> iterator = SCHEMAS.entrySet().iterator();
+
+        while (SCHEMAS.size() > maxSize && iterator.hasNext())
+        {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Get the cache key of a schema file.
+     *
+     * @param file The schema file.
+     *
+     * @return The cache key.
+     *
+     * @throws IOException
+     */
+    private static String getKey(File file) throws IOException
+    {
+        return "file:" + file.getCanonicalPath();
+    }
+
+    /**
+     * Get the SHA-256 hash of the given content as a hex string.
+     *
+     * @param content The content to hash.
+     *
+     * @return The hex encoded hash.
+     */
+    static String hash(byte[] content)
+    {
+        try
+        {
+            return XMLSchemaCache.toHex(MessageDigest.getInstance("SHA-256").digest(content));
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Convert the given bytes into a lower case hex string.
+     *
+     * @param bytes The bytes to convert.
+     *
+     * @return The hex string.
+     */
+    static String toHex(byte[] bytes)
+    {
+        char[] digits = "0123456789abcdef".toCharArray();
+        char[] hex = new char[bytes.length * 2];
+
+        for (int i = 0; i < bytes.length; i++)
+        {
+            hex[i * 2] = digits[(bytes[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = digits[bytes[i] & 0xF];
+        }
+
+        return new String(hex);
+    }
+
+    /**
+     * A compiled schema together with the fingerprint of all schema documents
+     * it has been compiled from.
+     */
+    static final class CompiledSchema
+    {
+        final Schema schema;
+        final String fingerprint;
+        private final long lastModified;
+        private final long length;
+
+        /**
+         * Create a new entry for a schema read from a stream.
+         *
+         * @param schema      The compiled schema.
+         * @param fingerprint The fingerprint of the schema documents.
+         */
+        private CompiledSchema(Schema schema, String fingerprint)
+        {
+            this(schema, fingerprint, -1, -1);
+        }
+
+        /**
+         * Create a new entry for a schema read from a file.
+         *
+         * @param schema       The compiled schema.
+         * @param fingerprint  The fingerprint of the schema documents.
+         * @param lastModified The modification time of the file.
+         * @param length       The size of the file.
+         */
+        private CompiledSchema(Schema schema, String fingerprint, long lastModified, long length)
+        {
+            this.schema = schema;
+            this.fingerprint = fingerprint;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        /**
+         * Check if the schema has been compiled from the file as it is now.
+         *
+         * @param file The schema file.
+         *
+         * @return False if the modification time or the size differs.
+         */
+        private boolean isCurrent(File file)
+        {
+            return this.lastModified == file.lastModified() && this.length == file.length();
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import org.w3c.dom.ls.LSInput;
+import org.w3c.dom.ls.LSResourceResolver;
+
+/**
+ * Resolves the schemas included or imported while a schema is compiled and
+ * computes the fingerprint of all of them. Every resolved schema is read
+ * once, its location and content are added to the SHA-256 hash of the main
+ * schema and the compiler gets the very same bytes. So the fingerprint
+ * changes whenever any schema the compiled one is made of has changed. A
+ * schema without includes and imports has the hash of its content as
+ * fingerprint.
+ *
+ * A resolver is used for a single compilation.
+ *
+ * @author Neithan
+ */
+final class XMLSchemaResolver implements LSResourceResolver
+{
+    private final MessageDigest digest;
+
+    /**
+     * Create a new resolver for the compilation of the given main schema.
+     *
+     * @param content The content of the main schema.
+     */
+    XMLSchemaResolver(byte[] content)
+    {
+        try
+        {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+
+        this.digest.update(content);
+    }
+
+    /**
+     * Get the fingerprint of the main schema and all schemas resolved so far.
+     * Has to be called once the compilation is done, only once.
+     *
+     * @return The hex encoded hash.
+     */
+    String getFingerprint()
+    {
+        return XMLSchemaCache.toHex(this.digest.digest());
+    }
+
+    /**
+     * Read the schema at the given location relative to the base and add it
+     * to the fingerprint. Locations which cannot be read are left to the
+     * default resolution of the compiler, which reports the error.
+     *
+     * @param type         The type of the resource.
+     * @param namespaceURI The namespace of the resource.
+     * @param publicId     The public identifier.
+     * @param systemId     The location.
+     * @param baseURI      The location of the including schema.
+     *
+     * @return The schema or null.
+     */
+    @Override
+    public LSInput resolveResource(String type, String namespaceURI, String publicId, String systemId, String baseURI)
+    {
+        if (systemId == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            URI uri = baseURI == null ? new URI(systemId) : new URI(baseURI).resolve(systemId);
+
+            if (!uri.isAbsolute())
+            {
+                return null;
+            }
+
+            byte[] content;
+
+            try (InputStream stream = uri.toURL().openStream())
+            {
+                content = XMLSchemaCache.read(stream);
+            }
+
+            this.digest.update(uri.toString().getBytes(StandardCharsets.UTF_8));
+            this.digest.update((byte) 0);
+            this.digest.update(content);
+
+            return new Input(publicId, uri.toString(), baseURI, content);
+        }
+        catch (URISyntaxException | IllegalArgumentException | IOException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * A resolved schema handed to the compiler.
+     */
+    private static final class Input implements LSInput
+    {
+        private String publicId;
+        private String systemId;
+        private String baseURI;
+        private InputStream byteStream;
+        private Reader characterStream;
+        private String stringData;
+        private String encoding;
+        private boolean certifiedText;
+
+        /**
+         * Create a new input.
+         *
+         * @param publicId The public identifier.
+         * @param systemId The absolute location.
+         * @param baseURI  The location of the including schema.
+         * @param content  The content.
+         */
+        private Input(String publicId, String systemId, String baseURI, byte[] content)
+        {
+            this.publicId = publicId;
+            this.systemId = systemId;
+            this.baseURI = baseURI;
+            this.byteStream = new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public Reader getCharacterStream()
+        {
+            return this.characterStream;
+        }
+
+        @Override
+        public void setCharacterStream(Reader characterStream)
+        {
+            this.characterStream = characterStream;
+        }
+
+        @Override
+        public InputStream getByteStream()
+        {
+            return this.byteStream;
+        }
+
+        @Override
+        public void setByteStream(InputStream byteStream)
+        {
+            this.byteStream = byteStream;
+        }
+
+        @Override
+        public String getStringData()
+        {
+            return this.stringData;
+        }
+
+        @Override
+        public void setStringData(String stringData)
+        {
+            this.stringData = stringData;
+        }
+
+        @Override
+        public String getSystemId()
+        {
+            return this.systemId;
+        }
+
+        @Override
+        public void setSystemId(String systemId)
+        {
+            this.systemId = systemId;
+        }
+
+        @Override
+        public String getPublicId()
+        {
+            return this.publicId;
+        }
+
+        @Override
+        public void setPublicId(String publicId)
+        {
+            this.publicId = publicId;
+        }
+
+        @Override
+        public String getBaseURI()
+        {
+            return this.baseURI;
+        }
+
+        @Override
+        public void setBaseURI(String baseURI)
+        {
+            this.baseURI = baseURI;
+        }
+
+        @Override
+        public String getEncoding()
+        {
+            return this.encoding;
+        }
+
+        @Override
+        public void setEncoding(String encoding)
+        {
+            this.encoding = encoding;
+        }
+
+        @Override
+        public boolean getCertifiedText()
+        {
+            return this.certifiedText;
+        }
+
+        @Override
+        public void setCertifiedText(boolean certifiedText)
+        {
+            this.certifiedText = certifiedText;
+        }
+    }
+}
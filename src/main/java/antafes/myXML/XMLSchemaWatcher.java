@@ -0,0 +1,170 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+package antafes.myXML;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the directory of a schema file on a daemon thread and runs a reload
+ * whenever the schema file or another file with the same extension has been
+ * changed. Changes following each other shortly, like an editor writing a
+ * file in several steps, result in a single reload.
+ *
+ * @author Neithan
+ */
+class XMLSchemaWatcher implements Runnable
+{
+    private static final long QUIET_PERIOD = 200;
+    private final WatchService watchService;
+    private final String fileName;
+    private final String extension;
+    private final Runnable reload;
+    private final Thread thread;
+
+    /**
+     * Start watching the directory of the given schema file.
+     *
+     * @param schemaFile The schema file.
+     * @param reload     Run after the schema has changed.
+     *
+     * @throws IOException
+     */
+    XMLSchemaWatcher(File schemaFile, Runnable reload) throws IOException
+    {
+        Path file = schemaFile.getAbsoluteFile().toPath();
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+
+        this.fileName = name;
+        this.extension = dot < 0 ? null : name.substring(dot);
+        this.reload = reload;
+        this.watchService = FileSystems.getDefault().newWatchService();
+
+        try
+        {
+            file.getParent().register(
+                this.watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY
+            );
+        }
+        catch (IOException e)
+        {
+            this.watchService.close();
+            throw e;
+        }
+
+        this.thread = new Thread(this, "XMLSchemaWatcher " + name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Stop watching.
+     */
+    void close()
+    {
+        this.thread.interrupt();
+
+        try
+        {
+            this.watchService.close();
+        }
+        catch (IOException e)
+        {
+            // The thread stops anyway after the interrupt.
+        }
+    }
+
+    /**
+     * Wait for changes and reload the schema once no further change has
+     * happened for a short time.
+     */
+    @Override
+    public void run()
+    {
+        try
+        {
+            while (!Thread.currentThread().isInterrupted())
+            {
+                WatchKey key = this.watchService.take();
+                boolean changed = this.isSchemaChanged(key);
+
+                while (changed && (key = this.watchService.poll(QUIET_PERIOD, TimeUnit.MILLISECONDS)) != null)
+                {
+                    this.isSchemaChanged(key);
+                }
+
+                if (changed)
+                {
+                    this.reload.run();
+                }
+            }
+        }
+        catch (InterruptedException | ClosedWatchServiceException e)
+        {
+            // Watching has been stopped.
+        }
+    }
+
+    /**
+     * Check the events of a key for a changed schema file and reset the key.
+     *
+     * @param key The signalled key.
+     *
+     * @return True if a schema file has changed.
+     */
+    private boolean isSchemaChanged(WatchKey key)
+    {
+        boolean changed = false;
+
+        for (WatchEvent<?> event : key.pollEvents())
+        {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+            {
+                changed = true;
+                continue;
+            }
+
+            String name = event.context().toString();
+
+            if (name.equals(this.fileName) || (this.extension != null && name.endsWith(this.extension)))
+            {
+                changed = true;
+            }
+        }
+
+        key.reset();
+
+        return changed;
+    }
+}
@@ -0,0 +1,854 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Serializes a document straight into UTF-8 bytes, without going through a
+ * transformer. The output is byte identical to the output of the built-in
+ * identity transformer of Java 9 and later for the same output profile,
+ * including the exceptions for unpaired surrogates. The indentation follows
+ * that transformer as well. The transformer of Java 8 indents differently,
+ * e.g. it starts no new line after the XML declaration, so there only the
+ * COMPACT and NO_DECLARATION output match. Comments and processing
+ * instructions with unpaired surrogates are rejected, where the transformer
+ * writes a broken character.
+ *
+ * The bytes are collected in a buffer which is reused for every document, so
+ * a serializer must only be used by one thread at a time.
+ *
+ * @author Neithan
+ */
+public class XMLSerializer
+{
+    private static final int BUFFER_SIZE = 16384;
+    private static final int MAX_CHARACTER_LENGTH = 16;
+    private static final byte[] INDENT = XMLSerializer.ascii("    ");
+    private static final byte[] DECLARATION = XMLSerializer.ascii("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>");
+    private static final byte[] CDATA_START = XMLSerializer.ascii("<![CDATA[");
+    private static final byte[] CDATA_END = XMLSerializer.ascii("]]>");
+    private static final byte[] CDATA_SPLIT = XMLSerializer.ascii("]]]]><![CDATA[>");
+    private static final byte[] COMMENT_START = XMLSerializer.ascii("<!--");
+    private static final byte[] COMMENT_END = XMLSerializer.ascii("-->");
+    private static final byte[] PI_START = XMLSerializer.ascii("<?");
+    private static final byte[] PI_END = XMLSerializer.ascii("?>");
+    private static final byte[][] NONE = new byte[128][];
+    private static final byte[][] TEXT = new byte[128][];
+    private static final byte[][] ATTRIBUTE = new byte[128][];
+    private static final ThreadLocal<EnumMap<XMLOutputProfile, XMLSerializer>> SERIALIZERS = new ThreadLocal<EnumMap<XMLOutputProfile, XMLSerializer>>()
+    {
+        @Override
+        protected EnumMap<XMLOutputProfile, XMLSerializer> initialValue()
+        {
+            return new EnumMap<>(XMLOutputProfile.class);
+        }
+    };
+    private final boolean indent;
+    private final boolean declaration;
+    private final byte[] buffer;
+    private int position;
+    private OutputStream stream;
+    private Node pendingText;
+    private int children;
+    private boolean previousText;
+    private boolean startNewLine;
+
+    static
+    {
+        for (char c = 0; c < 128; c++)
+        {
+            String text = XMLCharacterEscaper.getReplacement(c, false);
+            String attribute = XMLCharacterEscaper.getReplacement(c, true);
+            TEXT[c] = text == null ? null : XMLSerializer.ascii(text);
+            ATTRIBUTE[c] = attribute == null ? null : XMLSerializer.ascii(attribute);
+        }
+    }
+
+    /**
+     * Create a new serializer for the given output profile.
+     *
+     * @param profile The output profile.
+     */
+    public XMLSerializer(XMLOutputProfile profile)
+    {
+        this.indent = profile == XMLOutputProfile.INDENTED;
+        this.declaration = profile != XMLOutputProfile.NO_DECLARATION;
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * Get the serializer of the current thread for the given profile.
+     *
+     * @param profile The output profile.
+     *
+     * @return The serializer.
+     */
+    static XMLSerializer get(XMLOutputProfile profile)
+    {
+        EnumMap<XMLOutputProfile, XMLSerializer> serializers = SERIALIZERS.get();
+        XMLSerializer serializer = serializers.get(profile);
+
+        if (serializer == null)
+        {
+            serializer = new XMLSerializer(profile);
+            serializers.put(profile, serializer);
+        }
+
+        return serializer;
+    }
+
+    /**
+     * Serialize the given document into the stream. The stream is flushed,
+     * but not closed.
+     *
+     * @param document The document to serialize.
+     * @param stream   The stream to write to.
+     *
+     * @throws IOException
+     */
+    public void serialize(Document document, OutputStream stream) throws IOException
+    {
+        this.stream = stream;
+        this.position = 0;
+        this.pendingText = null;
+        this.children = 0;
+        this.previousText = false;
+        this.startNewLine = false;
+
+        try
+        {
+            if (this.declaration)
+            {
+                this.write(DECLARATION);
+            }
+
+            // The nodes around the root element share the line after the
+            // declaration.
+            this.newLine(0);
+
+            for (Node child = document.getFirstChild(); child != null; child = child.getNextSibling())
+            {
+                if (child.getNodeType() != Node.DOCUMENT_TYPE_NODE)
+                {
+                    this.writeNode(child, 0);
+                }
+            }
+
+            this.newLine(-1);
+            this.flush();
+        }
+        finally
+        {
+            this.stream = null;
+            this.pendingText = null;
+        }
+    }
+
+    /**
+     * Serialize the given node into the stream, as if it was nested in the
+     * given depth of a document. Nothing is written before the node, the
+     * stream is flushed, but not closed.
+     *
+     * @param node   The node to serialize.
+     * @param depth  The depth used for the indentation of nested nodes.
+     * @param stream The stream to write to.
+     *
+     * @throws IOException
+     */
+    void serialize(Node node, int depth, OutputStream stream) throws IOException
+    {
+        this.stream = stream;
+        this.position = 0;
+        this.pendingText = null;
+        this.children = 0;
+        this.previousText = false;
+        this.startNewLine = false;
+
+        try
+        {
+            this.writeNode(node, depth);
+            this.flush();
+        }
+        finally
+        {
+            this.stream = null;
+            this.pendingText = null;
+        }
+    }
+
+    /**
+     * Write a node and all of its children. Document types and entity
+     * references are skipped, like the transformer does.
+     *
+     * @param node  The node.
+     * @param depth The depth of the node.
+     *
+     * @throws IOException
+     */
+    private void writeNode(Node node, int depth) throws IOException
+    {
+        switch (node.getNodeType())
+        {
+            case Node.ELEMENT_NODE:
+                this.writeElement(node, depth, false);
+                break;
+            case Node.TEXT_NODE:
+                this.writeString(node.getNodeValue(), TEXT);
+                break;
+            case Node.CDATA_SECTION_NODE:
+                this.writeCData(node.getNodeValue());
+                break;
+            case Node.COMMENT_NODE:
+                this.writeComment(node.getNodeValue());
+                break;
+            case Node.PROCESSING_INSTRUCTION_NODE:
+                this.writeProcessingInstruction(node.getNodeName(), node.getNodeValue());
+                break;
+            case Node.DOCUMENT_TYPE_NODE:
+            case Node.ENTITY_REFERENCE_NODE:
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported node type " + node.getNodeType());
+        }
+    }
+
+    /**
+     * Write an element with its attributes and children.
+     *
+     * The indentation follows the rules of the identity transformer: Text is
+     * kept in the line of the start tag as long as it is the first child,
+     * otherwise it starts a new line without its leading line breaks. CDATA
+     * sections only start a new line after a text, which was moved onto a new
+     * line. The end tag is moved onto a new line if the element has more than
+     * one child or did not end with text. Elements with xml:space="preserve"
+     * are not indented at all.
+     *
+     * @param element  The element.
+     * @param depth    The depth of the element.
+     * @param preserve Whether the whitespace of the parent is preserved.
+     *
+     * @throws IOException
+     */
+    private void writeElement(Node element, int depth, boolean preserve) throws IOException
+    {
+        if (this.indent && !preserve && depth > 0 && this.startNewLine)
+        {
+            this.indent(depth);
+        }
+
+        this.startNewLine = true;
+        this.writeByte('<');
+        this.writeString(element.getNodeName(), NONE);
+
+        NamedNodeMap attributes = element.getAttributes();
+
+        for (int i = 0; i < attributes.getLength(); i++)
+        {
+            Node attribute = attributes.item(i);
+            this.writeByte(' ');
+            this.writeString(attribute.getNodeName(), NONE);
+            this.writeByte('=');
+            this.writeByte('"');
+            this.writeString(attribute.getNodeValue(), ATTRIBUTE);
+            this.writeByte('"');
+
+            if ("xml:space".equals(attribute.getNodeName()))
+            {
+                if ("preserve".equals(attribute.getNodeValue()))
+                {
+                    preserve = true;
+                }
+                else if ("default".equals(attribute.getNodeValue()))
+                {
+                    preserve = false;
+                }
+            }
+        }
+
+        boolean format = this.indent && !preserve;
+        int parentChildren = this.children;
+        boolean open = true;
+        this.children = 0;
+        this.previousText = false;
+
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling())
+        {
+            short type = child.getNodeType();
+
+            if (type == Node.TEXT_NODE || type == Node.CDATA_SECTION_NODE)
+            {
+                String value = child.getNodeValue();
+
+                if (type == Node.CDATA_SECTION_NODE && format)
+                {
+                    this.flushText(depth + 1, true);
+                }
+
+                if (value.isEmpty())
+                {
+                    continue;
+                }
+
+                if (open)
+                {
+                    this.writeByte('>');
+                    open = false;
+                }
+
+                if (type == Node.CDATA_SECTION_NODE)
+                {
+                    if (format && this.children > 1)
+                    {
+                        this.indent(depth + 1);
+                    }
+
+                    this.writeCData(value);
+                    this.previousText = true;
+                }
+                else if (format)
+                {
+                    if (this.pendingText == null)
+                    {
+                        this.pendingText = child;
+                    }
+                }
+                else
+                {
+                    this.writeString(value, TEXT);
+                    this.previousText = true;
+                }
+
+                continue;
+            }
+
+            if (type != Node.ELEMENT_NODE && type != Node.COMMENT_NODE && type != Node.PROCESSING_INSTRUCTION_NODE)
+            {
+                continue;
+            }
+
+            if (format)
+            {
+                this.children++;
+                this.flushText(depth + 1, false);
+            }
+
+            if (open)
+            {
+                this.writeByte('>');
+                open = false;
+            }
+
+            if (type == Node.ELEMENT_NODE)
+            {
+                this.writeElement(child, depth + 1, preserve);
+                continue;
+            }
+
+            if (format)
+            {
+                this.indent(depth + 1);
+            }
+
+            if (type == Node.COMMENT_NODE)
+            {
+                this.writeComment(child.getNodeValue());
+            }
+            else
+            {
+                this.writeProcessingInstruction(child.getNodeName(), child.getNodeValue());
+            }
+
+            this.startNewLine = true;
+        }
+
+        if (format)
+        {
+            this.flushText(depth + 1, false);
+        }
+
+        if (open)
+        {
+            this.writeByte('/');
+            this.writeByte('>');
+        }
+        else
+        {
+            if (format && (this.children > 1 || !this.previousText))
+            {
+                this.indent(depth);
+            }
+
+            this.writeByte('<');
+            this.writeByte('/');
+            this.writeString(element.getNodeName(), NONE);
+            this.writeByte('>');
+        }
+
+        this.children = parentChildren;
+        this.previousText = false;
+    }
+
+    /**
+     * Write the pending run of text nodes. If the text has to start a new
+     * line, its leading line breaks are dropped.
+     *
+     * @param depth  The depth of the text.
+     * @param isText Whether the text is followed by a CDATA section.
+     *
+     * @throws IOException
+     */
+    private void flushText(int depth, boolean isText) throws IOException
+    {
+        if (this.pendingText == null)
+        {
+            return;
+        }
+
+        if (!isText)
+        {
+            this.children++;
+        }
+
+        boolean skipLineBreaks = false;
+
+        if (this.children > 1)
+        {
+            this.indent(depth);
+            skipLineBreaks = true;
+        }
+
+        for (Node text = this.pendingText; text != null && text.getNodeType() == Node.TEXT_NODE; text = text.getNextSibling())
+        {
+            String value = text.getNodeValue();
+            int start = 0;
+
+            if (skipLineBreaks)
+            {
+                while (start < value.length() && value.charAt(start) == '\n')
+                {
+                    start++;
+                }
+
+                if (start == value.length())
+                {
+                    continue;
+                }
+
+                skipLineBreaks = false;
+            }
+
+            this.writeString(start == 0 ? value : value.substring(start), TEXT);
+            this.previousText = true;
+        }
+
+        this.pendingText = null;
+    }
+
+    /**
+     * Write a CDATA section. An end marker in the content splits the section.
+     * Line breaks and characters outside of the basic multilingual plane do not
+     * open a section, control characters are written as references. Unpaired
+     * surrogates are rejected, except for a high surrogate at the end, which
+     * is dropped.
+     *
+     * @param value The content.
+     *
+     * @throws IOException
+     */
+    private void writeCData(String value) throws IOException
+    {
+        boolean open = !XMLSerializer.isCDataEscape(value.charAt(0));
+
+        if (open)
+        {
+            this.write(CDATA_START);
+        }
+
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+
+            if (c == '\n')
+            {
+                this.writeByte(c);
+            }
+            else if (XMLSerializer.isCDataEscape(c))
+            {
+                if (Character.isHighSurrogate(c) && i + 1 == value.length())
+                {
+                    // The transformer drops a high surrogate at the end.
+                    break;
+                }
+                else if (Character.isHighSurrogate(c))
+                {
+                    this.writeString(value.substring(i, i + 2), NONE);
+                    i++;
+                }
+                else if (Character.isSurrogate(c))
+                {
+                    this.writeSurrogate(value, i, NONE);
+                }
+                else
+                {
+                    this.writeString(String.valueOf(c), TEXT);
+                }
+            }
+            else if (c == ']' && value.startsWith("]]>", i))
+            {
+                this.write(CDATA_SPLIT);
+                i += 2;
+            }
+            else
+            {
+                if (!open)
+                {
+                    this.write(CDATA_START);
+                    open = true;
+                }
+
+                if (c < 0x80)
+                {
+                    this.writeByte(c);
+                }
+                else
+                {
+                    this.writeString(String.valueOf(c), NONE);
+                }
+            }
+        }
+
+        if (open)
+        {
+            this.write(CDATA_END);
+        }
+    }
+
+    /**
+     * Check if the character can not be written inside of a CDATA section.
+     *
+     * @param c The character.
+     *
+     * @return Returns true for surrogates and control characters.
+     */
+    private static boolean isCDataEscape(char c)
+    {
+        return Character.isSurrogate(c) || (c < 0x20 && c != '\t' && c != '\n' && c != '\r');
+    }
+
+    /**
+     * Write a comment. Double dashes are separated by a space, as is a
+     * trailing dash.
+     *
+     * @param value The comment.
+     *
+     * @throws IOException
+     */
+    private void writeComment(String value) throws IOException
+    {
+        this.write(COMMENT_START);
+        this.writeString(value.replace("--", "- -").replace("--", "- -"), NONE);
+
+        if (value.endsWith("-"))
+        {
+            this.writeByte(' ');
+        }
+
+        this.write(COMMENT_END);
+    }
+
+    /**
+     * Write a processing instruction. An end marker in the data is separated
+     * by a space.
+     *
+     * @param target The target.
+     * @param data   The data.
+     *
+     * @throws IOException
+     */
+    private void writeProcessingInstruction(String target, String data) throws IOException
+    {
+        this.write(PI_START);
+        this.writeString(target, NONE);
+
+        if (!data.isEmpty() && !Character.isSpaceChar(data.charAt(0)))
+        {
+            this.writeByte(' ');
+        }
+
+        int end = data.indexOf("?>");
+        this.writeString(end < 0 ? data : data.substring(0, end) + "? >" + data.substring(end + 2), NONE);
+        this.write(PI_END);
+    }
+
+    /**
+     * Start a new line, if one was started before, and indent it to the given
+     * depth.
+     *
+     * @param depth The depth.
+     *
+     * @throws IOException
+     */
+    private void indent(int depth) throws IOException
+    {
+        if (this.startNewLine)
+        {
+            this.writeByte('\n');
+        }
+
+        for (int i = 0; i < depth; i++)
+        {
+            this.write(INDENT);
+        }
+    }
+
+    /**
+     * Start a new line with the indentation of the given depth, if indenting.
+     *
+     * @param depth The depth, -1 for a line break only.
+     *
+     * @throws IOException
+     */
+    private void newLine(int depth) throws IOException
+    {
+        if (!this.indent)
+        {
+            return;
+        }
+
+        this.writeByte('\n');
+
+        for (int i = 0; i < depth; i++)
+        {
+            this.write(INDENT);
+        }
+    }
+
+    /**
+     * Encode the string into UTF-8, replacing the ASCII characters found in
+     * the table. Characters outside of the basic multilingual plane are
+     * written as character references in text and attributes, so are the
+     * control characters up to U+009F in text. Unpaired surrogates are
+     * handled by writeSurrogate.
+     *
+     * @param value        The string.
+     * @param replacements The replacement table.
+     *
+     * @throws IOException
+     */
+    private void writeString(String value, byte[][] replacements) throws IOException
+    {
+        byte[] buf = this.buffer;
+        int length = value.length();
+
+        for (int i = 0; i < length; i++)
+        {
+            if (this.position > buf.length - MAX_CHARACTER_LENGTH)
+            {
+                this.drain();
+            }
+
+            char c = value.charAt(i);
+
+            if (c < 0x80)
+            {
+                byte[] replacement = replacements[c];
+
+                if (replacement == null)
+                {
+                    buf[this.position++] = (byte) c;
+                }
+                else
+                {
+                    System.arraycopy(replacement, 0, buf, this.position, replacement.length);
+                    this.position += replacement.length;
+                }
+            }
+            else if (c <= 0x9F && replacements == TEXT)
+            {
+                // Control characters in text are written as references.
+                this.writeReference(c);
+            }
+            else if (c < 0x800)
+            {
+                buf[this.position++] = (byte) (0xC0 | (c >> 6));
+                buf[this.position++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1)))
+            {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+
+                if (replacements == NONE)
+                {
+                    buf[this.position++] = (byte) (0xF0 | (codePoint >> 18));
+                    buf[this.position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    buf[this.position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    buf[this.position++] = (byte) (0x80 | (codePoint & 0x3F));
+                }
+                else
+                {
+                    this.writeReference(codePoint);
+                }
+            }
+            else if (Character.isSurrogate(c))
+            {
+                this.writeSurrogate(value, i, replacements);
+            }
+            else
+            {
+                buf[this.position++] = (byte) (0xE0 | (c >> 12));
+                buf[this.position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[this.position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * Write an unpaired surrogate like the transformer: In text and attribute
+     * values a low surrogate is written as a reference and a high surrogate
+     * at the end is dropped, a high surrogate followed by another character
+     * is rejected. Everywhere else unpaired surrogates are rejected.
+     *
+     * @param value        The string.
+     * @param index        The index of the surrogate.
+     * @param replacements The replacement table.
+     *
+     * @throws IOException If the surrogate cannot be written.
+     */
+    private void writeSurrogate(String value, int index, byte[][] replacements) throws IOException
+    {
+        char c = value.charAt(index);
+        boolean last = index + 1 == value.length();
+
+        if (replacements != NONE && Character.isLowSurrogate(c))
+        {
+            this.writeReference(c);
+        }
+        else if (replacements == NONE || !last)
+        {
+            throw new IOException(String.format("Invalid UTF-16 surrogate detected: %x %s", (int) c, last ? "?" : String.format("%x ?", (int) value.charAt(index + 1))));
+        }
+    }
+
+    /**
+     * Write a decimal character reference.
+     *
+     * @param codePoint The code point.
+     */
+    private void writeReference(int codePoint)
+    {
+        this.buffer[this.position++] = '&';
+        this.buffer[this.position++] = '#';
+
+        String digits = Integer.toString(codePoint);
+
+        for (int i = 0; i < digits.length(); i++)
+        {
+            this.buffer[this.position++] = (byte) digits.charAt(i);
+        }
+
+        this.buffer[this.position++] = ';';
+    }
+
+    /**
+     * Write raw bytes.
+     *
+     * @param bytes The bytes.
+     *
+     * @throws IOException
+     */
+    private void write(byte[] bytes) throws IOException
+    {
+        if (this.position + bytes.length > this.buffer.length)
+        {
+            this.drain();
+        }
+
+        if (bytes.length > this.buffer.length)
+        {
+            this.stream.write(bytes);
+            return;
+        }
+
+        System.arraycopy(bytes, 0, this.buffer, this.position, bytes.length);
+        this.position += bytes.length;
+    }
+
+    /**
+     * Write a single ASCII character.
+     *
+     * @param c The character.
+     *
+     * @throws IOException
+     */
+    private void writeByte(char c) throws IOException
+    {
+        if (this.position == this.buffer.length)
+        {
+            this.drain();
+        }
+
+        this.buffer[this.position++] = (byte) c;
+    }
+
+    /**
+     * Write the buffered bytes to the stream.
+     *
+     * @throws IOException
+     */
+    private void drain() throws IOException
+    {
+        this.stream.write(this.buffer, 0, this.position);
+        this.position = 0;
+    }
+
+    /**
+     * Write the buffered bytes to the stream and flush it.
+     *
+     * @throws IOException
+     */
+    private void flush() throws IOException
+    {
+        this.drain();
+        this.stream.flush();
+    }
+
+    /**
+     * Get the ASCII bytes of the given string.
+     *
+     * @param value The string.
+     *
+     * @return The bytes.
+     */
+    private static byte[] ascii(String value)
+    {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,599 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+
+/**
+ * Writes XML straight to a stream while the elements are added, without
+ * building a document first. Only the names of the currently open elements
+ * are kept, so documents of any size can be written in constant memory. The
+ * output has the same XML declaration and indentation as the XMLWriter.
+ *
+ * @author Neithan
+ */
+public class XMLStreamingWriter implements Closeable
+{
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final String INDENT = "    ";
+    private final OutputStream stream;
+    private final Writer writer;
+    private final ArrayList<String> openElements;
+    private final ArrayList<Boolean> elementChildren;
+    private boolean startTagOpen;
+    private boolean closed;
+    private ArrayList<Exception> exceptionList;
+
+    /**
+     * Create a new streaming writer for the file at the given path.
+     *
+     * @param rootElement The name of the root element.
+     * @param path        The path to write to.
+     *
+     * @throws FileNotFoundException
+     */
+    public XMLStreamingWriter(String rootElement, String path) throws FileNotFoundException
+    {
+        this(rootElement, new File(path));
+    }
+
+    /**
+     * Create a new streaming writer for the given file. Missing parent
+     * directories are created.
+     *
+     * @param rootElement The name of the root element.
+     * @param file        The file to write to.
+     *
+     * @throws FileNotFoundException
+     */
+    public XMLStreamingWriter(String rootElement, File file) throws FileNotFoundException
+    {
+        this(rootElement, XMLStreamingWriter.openFile(file));
+    }
+
+    /**
+     * Create a new streaming writer for the given file, which is compressed
+     * with the given compression. Missing parent directories are created.
+     *
+     * @param rootElement The name of the root element.
+     * @param file        The file to write to.
+     * @param compression The compression of the output.
+     *
+     * @throws IOException
+     */
+    public XMLStreamingWriter(String rootElement, File file, XMLCompression compression) throws IOException
+    {
+        this(rootElement, XMLStreamingWriter.openFile(file), DEFAULT_BUFFER_SIZE, compression);
+    }
+
+    /**
+     * Create a new streaming writer for the given stream.
+     *
+     * @param rootElement The name of the root element.
+     * @param stream      The stream to write to.
+     */
+    public XMLStreamingWriter(String rootElement, OutputStream stream)
+    {
+        this(rootElement, stream, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a new streaming writer for the given stream. At most the given
+     * number of characters are buffered before they are written to the
+     * stream.
+     *
+     * @param rootElement The name of the root element.
+     * @param stream      The stream to write to.
+     * @param bufferSize  The size of the buffer.
+     */
+    public XMLStreamingWriter(String rootElement, OutputStream stream, int bufferSize)
+    {
+        this(rootElement, stream, stream, bufferSize);
+    }
+
+    /**
+     * Create a new streaming writer for the given stream, which is compressed
+     * with the given compression at the default level. At most the given
+     * number of characters are buffered before they are compressed. Closing
+     * the writer finishes the compressed data and closes the stream.
+     *
+     * @param rootElement The name of the root element.
+     * @param stream      The stream to write to.
+     * @param bufferSize  The size of the buffer.
+     * @param compression The compression of the output.
+     *
+     * @throws IOException
+     */
+    public XMLStreamingWriter(String rootElement, OutputStream stream, int bufferSize, XMLCompression compression) throws IOException
+    {
+        this(rootElement, stream, XMLStreamingWriter.compress(stream, compression), bufferSize);
+    }
+
+    /**
+     * Create a new streaming writer which writes to the target, which itself
+     * writes to the stream.
+     *
+     * @param rootElement The name of the root element.
+     * @param stream      The stream which is closed last.
+     * @param target      The stream the characters are written to.
+     * @param bufferSize  The size of the buffer.
+     */
+    private XMLStreamingWriter(String rootElement, OutputStream stream, OutputStream target, int bufferSize)
+    {
+        this.stream = stream;
+        this.writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), bufferSize);
+        this.openElements = new ArrayList<>();
+        this.elementChildren = new ArrayList<>();
+        this.exceptionList = new ArrayList<>();
+
+        try
+        {
+            this.writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>");
+        }
+        catch (IOException e)
+        {
+            this.exceptionList.add(e);
+        }
+
+        this.startElement(rootElement);
+    }
+
+    /**
+     * Wrap the stream to compress everything written to it. The stream is
+     * closed if the compression cannot be started.
+     *
+     * @param stream      The stream to compress into.
+     * @param compression The compression to use.
+     *
+     * @return The compressing stream.
+     *
+     * @throws IOException
+     */
+    private static OutputStream compress(OutputStream stream, XMLCompression compression) throws IOException
+    {
+        if (compression == XMLCompression.NONE)
+        {
+            return stream;
+        }
+
+        try
+        {
+            return compression.compress(stream, Deflater.DEFAULT_COMPRESSION, XMLCompression.DEFAULT_BUFFER_SIZE);
+        }
+        catch (IOException e)
+        {
+            stream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Open the given file, creating the parent directories if needed.
+     *
+     * @param file The file to open.
+     *
+     * @return The stream of the file.
+     *
+     * @throws FileNotFoundException
+     */
+    private static OutputStream openFile(File file) throws FileNotFoundException
+    {
+        File path = file.getAbsoluteFile().getParentFile();
+
+        if (path != null)
+        {
+            path.mkdirs();
+        }
+
+        return new FileOutputStream(file);
+    }
+
+    /**
+     * Get the exception list
+     *
+     * @return ArrayList
+     */
+    public ArrayList<Exception> getExceptionList()
+    {
+        return this.exceptionList;
+    }
+
+    /**
+     * Get the last thrown exception
+     *
+     * @return Exception
+     */
+    public Exception getLastException()
+    {
+        return this.exceptionList.get(this.exceptionList.size() - 1);
+    }
+
+    /**
+     * Print all thrown exceptions into the console
+     */
+    public void printExceptions()
+    {
+        if (this.getExceptionList().size() > 0)
+        {
+            System.out.println("Exception in XMLStreamingWriter thrown.");
+            for (int i = 0; i < this.getExceptionList().size(); i++)
+            {
+                Exception ex = this.getExceptionList().get(i);
+                System.out.println(ex.getClass());
+
+                for (StackTraceElement stackTrace : ex.getStackTrace())
+                {
+                    System.out.println(stackTrace);
+                }
+
+                System.out.println(ex.getMessage());
+                System.out.println("");
+            }
+        }
+    }
+
+    /**
+     * Add attributes to the root element. This is only possible before the
+     * first child has been added.
+     *
+     * @param attributes
+     */
+    public void addRootNodeAttributes(HashMap<String, String> attributes)
+    {
+        if (this.openElements.size() != 1)
+        {
+            throw new IllegalStateException("Root attributes have to be added before any child.");
+        }
+
+        this.addAttributes(attributes);
+    }
+
+    /**
+     * Add an attribute to the element started last. This is only possible as
+     * long as no content has been added to it.
+     *
+     * @param name
+     * @param value
+     */
+    public void addAttribute(String name, String value)
+    {
+        if (!this.startTagOpen)
+        {
+            throw new IllegalStateException("Attributes have to be added before the content of the element.");
+        }
+
+        try
+        {
+            this.writer.write(' ');
+            this.writer.write(name);
+            this.writer.write("=\"");
+            XMLCharacterEscaper.writeAttribute(this.writer, value);
+            this.writer.write('"');
+        }
+        catch (IOException e)
+        {
+            this.exceptionList.add(e);
+        }
+    }
+
+    /**
+     * Add the attributes to the element started last, ordered by name like
+     * the XMLWriter does.
+     *
+     * @param attributes
+     */
+    private void addAttributes(Map<String, String> attributes)
+    {
+        if (attributes == null)
+        {
+            return;
+        }
+
+        Map<String, String> ordered = attributes.size() > 1 ? new TreeMap<>(attributes) : attributes;
+
+        for (Map.Entry<String, String> entry : ordered.entrySet())
+        {
+            this.addAttribute(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Start a new element inside of the current one
+     *
+     * @param name
+     */
+    public void startElement(String name)
+    {
+        this.startElement(name, null);
+    }
+
+    /**
+     * Start a new element with attributes inside of the current one
+     *
+     * @param name
+     * @param attributes
+     */
+    public void startElement(String name, HashMap<String, String> attributes)
+    {
+        if (this.closed)
+        {
+            throw new IllegalStateException("The writer has been closed.");
+        }
+
+        try
+        {
+            this.closeStartTag();
+
+            if (!this.elementChildren.isEmpty())
+            {
+                this.elementChildren.set(this.elementChildren.size() - 1, true);
+            }
+
+            this.writeIndent(this.openElements.size());
+            this.writer.write('<');
+            this.writer.write(name);
+        }
+        catch (IOException e)
+        {
+            this.exceptionList.add(e);
+        }
+
+        this.openElements.add(name);
+        this.elementChildren.add(false);
+        this.startTagOpen = true;
+        this.addAttributes(attributes);
+    }
+
+    /**
+     * Add text to the current element
+     *
+     * @param value
+     */
+    public void addText(String value)
+    {
+        if (this.openElements.isEmpty())
+        {
+            throw new IllegalStateException("There is no open element.");
+        }
+
+        if (value == null || value.isEmpty())
+        {
+            return;
+        }
+
+        try
+        {
+            this.closeStartTag();
+
+            // Text following child elements is put on its own line.
+            if (this.elementChildren.get(this.elementChildren.size() - 1))
+            {
+                this.writeIndent(this.openElements.size());
+            }
+
+            XMLCharacterEscaper.writeText(this.writer, value);
+        }
+        catch (IOException e)
+        {
+            this.exceptionList.add(e);
+        }
+    }
+
+    /**
+     * End the current element
+     */
+    public void endElement()
+    {
+        if (this.openElements.size() <= 1)
+        {
+            throw new IllegalStateException("The root element is ended by closing the writer.");
+        }
+
+        this.end();
+    }
+
+    /**
+     * Write the end tag of the current element.
+     */
+    private void end()
+    {
+        String name = this.openElements.remove(this.openElements.size() - 1);
+        boolean children = this.elementChildren.remove(this.elementChildren.size() - 1);
+
+        try
+        {
+            if (this.startTagOpen)
+            {
+                this.writer.write("/>");
+                this.startTagOpen = false;
+                return;
+            }
+
+            if (children)
+            {
+                this.writeIndent(this.openElements.size());
+            }
+
+            this.writer.write("</");
+            this.writer.write(name);
+            this.writer.write('>');
+        }
+        catch (IOException e)
+        {
+            this.exceptionList.add(e);
+        }
+    }
+
+    /**
+     * Add a complete child element with a name, a value and attributes to
+     * the current element
+     *
+     * @param name
+     * @param value
+     * @param attributes
+     */
+    public void addChild(String name, String value, HashMap<String, String> attributes)
+    {
+        this.startElement(name, attributes);
+
+        if (value != null)
+        {
+            this.addText(value);
+        }
+
+        this.end();
+    }
+
+    /**
+     * Add a complete child element with a name and attributes to the current
+     * element
+     *
+     * @param name
+     * @param attributes
+     */
+    public void addChild(String name, HashMap<String, String> attributes)
+    {
+        this.addChild(name, null, attributes);
+    }
+
+    /**
+     * Add a complete child element with a name and a value to the current
+     * element
+     *
+     * @param name
+     * @param value
+     */
+    public void addChild(String name, String value)
+    {
+        this.addChild(name, value, null);
+    }
+
+    /**
+     * Add an empty child element with a name to the current element
+     *
+     * @param name
+     */
+    public void addChild(String name)
+    {
+        this.addChild(name, null, null);
+    }
+
+    /**
+     * Write the buffered output to the stream.
+     */
+    public void flush()
+    {
+        try
+        {
+            this.writer.flush();
+        }
+        catch (IOException e)
+        {
+            this.exceptionList.add(e);
+        }
+    }
+
+    /**
+     * End all open elements including the root element and close the stream.
+     */
+    @Override
+    public void close()
+    {
+        if (this.closed)
+        {
+            return;
+        }
+
+        while (!this.openElements.isEmpty())
+        {
+            this.end();
+        }
+
+        this.closed = true;
+
+        try
+        {
+            this.writer.write('\n');
+            this.writer.close();
+        }
+        catch (IOException e)
+        {
+            this.exceptionList.add(e);
+        }
+
+        try
+        {
+            this.stream.close();
+        }
+        catch (IOException e)
+        {
+            this.exceptionList.add(e);
+        }
+    }
+
+    /**
+     * Finish the start tag of the current element, if it is still open.
+     *
+     * @throws IOException
+     */
+    private void closeStartTag() throws IOException
+    {
+        if (this.startTagOpen)
+        {
+            this.writer.write('>');
+            this.startTagOpen = false;
+        }
+    }
+
+    /**
+     * Start a new line with the indentation of the given depth.
+     *
+     * @param depth
+     *
+     * @throws IOException
+     */
+    private void writeIndent(int depth) throws IOException
+    {
+        this.writer.write('\n');
+
+        for (int i = 0; i < depth; i++)
+        {
+            this.writer.write(INDENT);
+        }
+    }
+}
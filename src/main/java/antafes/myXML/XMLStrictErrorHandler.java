@@ -0,0 +1,73 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+package antafes.myXML;
+
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Error handler which aborts on every error, the same way a validator without
+ * an error handler does. A DocumentBuilder would otherwise only print
+ * validation errors and carry on.
+ *
+ * @author Neithan
+ */
+class XMLStrictErrorHandler implements ErrorHandler
+{
+    /**
+     * Warnings are ignored.
+     *
+     * @param exception
+     */
+    @Override
+    public void warning(SAXParseException exception)
+    {
+    }
+
+    /**
+     * Abort on validation errors.
+     *
+     * @param exception
+     *
+     * @throws SAXException
+     */
+    @Override
+    public void error(SAXParseException exception) throws SAXException
+    {
+        throw exception;
+    }
+
+    /**
+     * Abort on fatal errors.
+     *
+     * @param exception
+     *
+     * @throws SAXException
+     */
+    @Override
+    public void fatalError(SAXParseException exception) throws SAXException
+    {
+        throw exception;
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.UserDataHandler;
+import org.w3c.dom.events.Event;
+import org.w3c.dom.events.EventListener;
+import org.w3c.dom.events.EventTarget;
+
+/**
+ * Index from tag name to all elements with that name in document order. The
+ * index is attached to the document as user data and used by the static
+ * lookup helpers of the XMLParser. It reflects the document as it was parsed,
+ * so it listens for the DOM mutation events and removes itself on the first
+ * change of the document. All lookups after that search the document the
+ * usual way. Renaming an element with Document.renameNode raises no event,
+ * so every indexed element gets a user data handler, which removes the index
+ * when the element is renamed. Documents without mutation events get no
+ * index.
+ *
+ * @author Neithan
+ */
+final class XMLTagIndex implements EventListener
+{
+    private static final String USER_DATA_KEY = "antafes.myXML.tagIndex";
+    private static final String RENAME_KEY = "antafes.myXML.tagIndex.rename";
+    private static final UserDataHandler RENAME_HANDLER = new RenameHandler();
+    private static final String MUTATION_EVENT = "DOMSubtreeModified";
+    private final Document document;
+    private final HashMap<String, Entry> entries;
+    private final IdentityHashMap<Node, int[]> ranges;
+
+    /**
+     * Create a new empty index.
+     *
+     * @param document The indexed document.
+     */
+    private XMLTagIndex(Document document)
+    {
+        this.document = document;
+        this.entries = new HashMap<>();
+        this.ranges = new IdentityHashMap<>();
+    }
+
+    /**
+     * Build the index for the given document and attach it, if changes of
+     * the document can be noticed.
+     *
+     * @param document The parsed document.
+     */
+    static void build(Document document)
+    {
+        if (!(document instanceof EventTarget))
+        {
+            return;
+        }
+
+        XMLTagIndex index = new XMLTagIndex(document);
+        Node root = document.getDocumentElement();
+        Node node = root;
+        int position = 0;
+
+        while (node != null)
+        {
+            if (node.getNodeType() == Node.ELEMENT_NODE)
+            {
+                index.ranges.put(node, new int[] {position, position});
+                node.setUserData(RENAME_KEY, Boolean.TRUE, RENAME_HANDLER);
+                index.add((Element) node, position);
+                position++;
+            }
+
+            Node child = node.getFirstChild();
+
+            if (child != null)
+            {
+                node = child;
+                continue;
+            }
+
+            // Leave all finished subtrees and go on with the next sibling.
+            while (node != null)
+            {
+                if (node.getNodeType() == Node.ELEMENT_NODE)
+                {
+                    index.ranges.get(node)[1] = position - 1;
+                }
+
+                if (node == root)
+                {
+                    node = null;
+                }
+                else if (node.getNextSibling() != null)
+                {
+                    node = node.getNextSibling();
+                    break;
+                }
+                else
+                {
+                    node = node.getParentNode();
+                }
+            }
+        }
+
+        document.setUserData(USER_DATA_KEY, index, null);
+        ((EventTarget) document).addEventListener(MUTATION_EVENT, index, true);
+    }
+
+    /**
+     * The document has been changed, so the index is removed.
+     *
+     * @param event The mutation event.
+     */
+    @Override
+    public void handleEvent(Event event)
+    {
+        this.remove();
+    }
+
+    /**
+     * Detach the index from the document and stop listening for changes.
+     */
+    void remove()
+    {
+        ((EventTarget) this.document).removeEventListener(MUTATION_EVENT, this, true);
+
+        if (this.document.getUserData(USER_DATA_KEY) == this)
+        {
+            this.document.setUserData(USER_DATA_KEY, null, null);
+        }
+    }
+
+    /**
+     * Get the index to use for lookups below the given element.
+     *
+     * @param element The parent element of the lookup.
+     *
+     * @return The index or null if the document has no index or the element
+     *         is not part of it.
+     */
+    static XMLTagIndex get(Element element)
+    {
+        Document document = element.getOwnerDocument();
+
+        if (document == null)
+        {
+            return null;
+        }
+
+        Object index = document.getUserData(USER_DATA_KEY);
+
+        if (index instanceof XMLTagIndex && ((XMLTagIndex) index).ranges.containsKey(element))
+        {
+            return (XMLTagIndex) index;
+        }
+
+        return null;
+    }
+
+    /**
+     * Add an element to the entry of its tag name.
+     *
+     * @param element  The element.
+     * @param position The position of the element in document order.
+     */
+    private void add(Element element, int position)
+    {
+        Entry entry = this.entries.get(element.getTagName());
+
+        if (entry == null)
+        {
+            entry = new Entry();
+            this.entries.put(element.getTagName(), entry);
+        }
+
+        entry.add(element, position);
+    }
+
+    /**
+     * Get the first element with the given tag name below the given element.
+     * The element has to be part of the index. If the found element has been
+     * renamed without the user data handler being called, the index is
+     * removed and the document is searched.
+     *
+     * @param tag     The tag to look for.
+     * @param element The parent element.
+     *
+     * @return The first element in document order or null if there is none.
+     */
+    Element getFirst(String tag, Element element)
+    {
+        Element found = this.find(tag, element);
+
+        if (found != null && !found.getTagName().equals(tag))
+        {
+            this.remove();
+
+            return (Element) element.getElementsByTagName(tag).item(0);
+        }
+
+        return found;
+    }
+
+    /**
+     * Look up the first element with the given tag name below the given
+     * element in the index.
+     *
+     * @param tag     The tag to look for.
+     * @param element The parent element.
+     *
+     * @return The first element in document order or null if there is none.
+     */
+    private Element find(String tag, Element element)
+    {
+        Entry entry = this.entries.get(tag);
+
+        if (entry == null)
+        {
+            return null;
+        }
+
+        int[] range = this.ranges.get(element);
+        int found = Arrays.binarySearch(entry.positions, 0, entry.size, range[0] + 1);
+
+        if (found < 0)
+        {
+            found = -found - 1;
+        }
+
+        if (found < entry.size && entry.positions[found] <= range[1])
+        {
+            return entry.elements[found];
+        }
+
+        return null;
+    }
+
+    /**
+     * Removes the index of the document when an indexed element is renamed.
+     * The handler keeps no reference to the index, so the elements do not keep
+     * a removed index alive.
+     */
+    private static final class RenameHandler implements UserDataHandler
+    {
+        @Override
+        public void handle(short operation, String key, Object data, Node src, Node dst)
+        {
+            if (operation != UserDataHandler.NODE_RENAMED || src == null || src.getOwnerDocument() == null)
+            {
+                return;
+            }
+
+            Object index = src.getOwnerDocument().getUserData(USER_DATA_KEY);
+
+            if (index instanceof XMLTagIndex)
+            {
+                ((XMLTagIndex) index).remove();
+            }
+        }
+    }
+
+    /**
+     * All elements of one tag name and their positions in document order.
+     */
+    private static final class Entry
+    {
+        private Element[] elements = new Element[4];
+        private int[] positions = new int[4];
+        private int size;
+
+        /**
+         * Append an element.
+         *
+         * @param element  The element.
+         * @param position The position of the element in document order.
+         */
+        private void add(Element element, int position)
+        {
+            if (this.size == this.elements.length)
+            {
+                this.elements = Arrays.copyOf(this.elements, this.size * 2);
+                this.positions = Arrays.copyOf(this.positions, this.size * 2);
+            }
+
+            this.elements[this.size] = element;
+            this.positions[this.size] = position;
+            this.size++;
+        }
+    }
+}
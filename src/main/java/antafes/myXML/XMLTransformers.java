@@ -0,0 +1,96 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML;
+
+import java.util.EnumMap;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+
+/**
+ * Hands out preconfigured identity transformers. The transformer factory is
+ * looked up only once, every thread gets its own transformer per output
+ * profile, which is reused for all following documents.
+ *
+ * @author Neithan
+ */
+final class XMLTransformers
+{
+    private static final TransformerFactory FACTORY = TransformerFactory.newInstance();
+    private static final ThreadLocal<EnumMap<XMLOutputProfile, Transformer>> TRANSFORMERS = new ThreadLocal<EnumMap<XMLOutputProfile, Transformer>>()
+    {
+        @Override
+        protected EnumMap<XMLOutputProfile, Transformer> initialValue()
+        {
+            return new EnumMap<>(XMLOutputProfile.class);
+        }
+    };
+
+    /**
+     * The transformers are only used through the static methods.
+     */
+    private XMLTransformers()
+    {
+    }
+
+    /**
+     * Get the transformer of the current thread for the given profile.
+     *
+     * @param profile The output profile.
+     *
+     * @return The configured transformer.
+     *
+     * @throws TransformerConfigurationException
+     */
+    static Transformer get(XMLOutputProfile profile) throws TransformerConfigurationException
+    {
+        EnumMap<XMLOutputProfile, Transformer> transformers = TRANSFORMERS.get();
+        Transformer transformer = transformers.get(profile);
+
+        if (transformer == null)
+        {
+            // The factory itself is not thread safe.
+            synchronized (FACTORY)
+            {
+                transformer = FACTORY.newTransformer();
+            }
+
+            profile.configure(transformer);
+            transformers.put(profile, transformer);
+        }
+
+        return transformer;
+    }
+
+    /**
+     * Drop the transformer of the current thread for the given profile, e.g.
+     * after a failed transformation left it in an unknown state.
+     *
+     * @param profile The output profile.
+     */
+    static void discard(XMLOutputProfile profile)
+    {
+        TRANSFORMERS.get().remove(profile);
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+package antafes.myXML;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers documents which have been validated successfully, so an unchanged
+ * document does not have to be validated again. A document is identified by
+ * the SHA-256 hash of its content together with the fingerprint of the schema
+ * it was validated against. The hash is computed from the same bytes the
+ * validator reads, so a document changed meanwhile is never cached with the
+ * hash of other content. Only valid documents are cached, the least recently
+ * used one is dropped once the maximum size is reached.
+ *
+ * The cache can be stored in a file and is loaded from it when created. It
+ * can be shared between validators and threads.
+ *
+ * @author Neithan
+ */
+public class XMLValidationCache
+{
+    private static final int BUFFER_SIZE = 65536;
+    private static final int KEY_LENGTH = 128;
+    private final LinkedHashMap<String, Boolean> documents = new LinkedHashMap<>(16, 0.75f, true);
+    private final int maxSize;
+    private final File file;
+
+    /**
+     * Create a new cache kept in memory only.
+     *
+     * @param maxSize The maximum number of cached documents, at least 1.
+     */
+    public XMLValidationCache(int maxSize)
+    {
+        if (maxSize < 1)
+        {
+            throw new IllegalArgumentException("The cache size must be at least 1.");
+        }
+
+        this.maxSize = maxSize;
+        this.file = null;
+    }
+
+    /**
+     * Create a new cache which can be saved to the given file. If the file
+     * exists, the cached documents are loaded from it.
+     *
+     * @param maxSize The maximum number of cached documents, at least 1.
+     * @param file    The file to load from and save to.
+     *
+     * @throws IOException
+     */
+    public XMLValidationCache(int maxSize, File file) throws IOException
+    {
+        if (maxSize < 1)
+        {
+            throw new IllegalArgumentException("The cache size must be at least 1.");
+        }
+
+        this.maxSize = maxSize;
+        this.file = file;
+
+        if (file.isFile())
+        {
+            this.load();
+        }
+    }
+
+    /**
+     * Get the maximum number of cached documents.
+     *
+     * @return The maximum size.
+     */
+    public int getMaxSize()
+    {
+        return this.maxSize;
+    }
+
+    /**
+     * Get the number of cached documents.
+     *
+     * @return The current size.
+     */
+    public synchronized int size()
+    {
+        return this.documents.size();
+    }
+
+    /**
+     * Remove every document from the cache.
+     */
+    public synchronized void clear()
+    {
+        this.documents.clear();
+    }
+
+    /**
+     * Store the cached documents in the file given on creation. The file is
+     * replaced atomically, the least recently used documents come first.
+     *
+     * @throws IOException
+     */
+    public void save() throws IOException
+    {
+        if (this.file == null)
+        {
+            throw new IllegalStateException("The cache has no file to save to.");
+        }
+
+        String[] keys;
+
+        synchronized (this)
+        {
+            keys = this.documents.keySet().toArray(new String[0]);
+        }
+
+        File directory = this.file.getAbsoluteFile().getParentFile();
+        directory.mkdirs();
+        File temp = File.createTempFile("." + this.file.getName() + ".", ".tmp", directory);
+
+        try
+        {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.US_ASCII))
+            {
+                for (String key : keys)
+                {
+                    writer.write(key);
+                    writer.newLine();
+                }
+            }
+
+            XMLWriter.move(temp.toPath(), this.file.toPath());
+        }
+        finally
+        {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /**
+     * Check if the document has been validated successfully against the
+     * schema before.
+     *
+     * @param key The cache key of the document and schema.
+     *
+     * @return True if the document is known to be valid.
+     */
+    synchronized boolean contains(String key)
+    {
+        return this.documents.get(key) != null;
+    }
+
+    /**
+     * Remember a successfully validated document.
+     *
+     * @param key The cache key of the document and schema.
+     */
+    synchronized void add(String key)
+    {
+        this.documents.put(key, Boolean.TRUE);
+        this.evict();
+    }
+
+    /**
+     * Create the digest to hash the content of a document with.
+     *
+     * @return A new SHA-256 digest.
+     */
+    static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Read the rest of the stream into the digest.
+     *
+     * @param digest The digest.
+     * @param stream The stream.
+     *
+     * @throws IOException
+     */
+    static void update(MessageDigest digest, InputStream stream) throws IOException
+    {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int n;
+
+        while ((n = stream.read(buffer)) >= 0)
+        {
+            digest.update(buffer, 0, n);
+        }
+    }
+
+    /**
+     * Get the cache key of a document validated against the schema with the
+     * given fingerprint. The digest is reset.
+     *
+     * @param digest            The digest of the document content.
+     * @param schemaFingerprint The fingerprint of the schema.
+     *
+     * @return The cache key.
+     */
+    static String getKey(MessageDigest digest, String schemaFingerprint)
+    {
+        return XMLSchemaCache.toHex(digest.digest()) + schemaFingerprint;
+    }
+
+    /**
+     * Load the cached documents from the file. Malformed lines are skipped.
+     *
+     * @throws IOException
+     */
+    private void load() throws IOException
+    {
+        try (BufferedReader reader = Files.newBufferedReader(this.file.toPath(), StandardCharsets.US_ASCII))
+        {
+            String line;
+
+            while ((line = reader.readLine()) != null)
+            {
+                if (line.length() == KEY_LENGTH)
+                {
+                    this.add(line);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove the least recently used documents until the maximum size is met.
+     * Has to be called while holding the lock.
+     */
+    private void evict()
+    {
+        Iterator<Map.Entry<String, Boolean>> iterator = this.documents.entrySet().iterator();
+
+        while (this.documents.size() > this.maxSize && iterator.hasNext())
+        {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+package antafes.myXML;
+
+import java.util.ArrayList;
+
+/**
+ * The outcome of validating a single document with XMLValidator.validateAll.
+ * Holds whether the document is valid and the exceptions thrown while
+ * validating it.
+ *
+ * @author Neithan
+ */
+public class XMLValidationResult
+{
+    private final boolean valid;
+    private final ArrayList<Exception> exceptionList;
+
+    /**
+     * Create a new validation result.
+     *
+     * @param valid         Whether the document is valid.
+     * @param exceptionList The exceptions thrown while validating.
+     */
+    XMLValidationResult(boolean valid, ArrayList<Exception> exceptionList)
+    {
+        this.valid = valid;
+        this.exceptionList = exceptionList;
+    }
+
+    /**
+     * Check if the document is valid.
+     *
+     * @return Returns true if valid, otherwise false.
+     */
+    public boolean isValid()
+    {
+        return this.valid;
+    }
+
+    /**
+     * Get the list of exceptions thrown during validation. Validation errors
+     * are SAXParseExceptions holding the line and column.
+     *
+     * @return An ArrayList of Exception objects.
+     */
+    public ArrayList<Exception> getExceptionList()
+    {
+        return this.exceptionList;
+    }
+
+    /**
+     * Get the last thrown exception.
+     *
+     * @return The last exception as an object.
+     */
+    public Exception getLastException()
+    {
+        return this.exceptionList.get(this.exceptionList.size() - 1);
+    }
+}
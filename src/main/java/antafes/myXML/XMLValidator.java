@@ -22,18 +22,33 @@
 
 package antafes.myXML;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.function.LongConsumer;
 import javax.xml.transform.Source;
+import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
 import javax.xml.validation.Validator;
+import org.w3c.dom.Node;
+import org.xml.sax.ErrorHandler;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
 
 /**
  *
@@ -41,11 +56,16 @@ import org.xml.sax.SAXException;
  */
 public class XMLValidator
 {
-    private static final String SCHEMA_NAMESPACE_URI = "http://www.w3.org/2001/XMLSchema";
-    private SchemaFactory factory;
-    private Validator validator;
-    private Schema schema;
+    private static final int CACHE_BUFFER_LIMIT = 8 << 20;
+    private volatile SchemaState state;
+    private final File schemaFile;
+    private XMLSchemaWatcher watcher;
+    private volatile Exception reloadException;
     private ArrayList<Exception> exceptionList;
+    private int maxErrors = 1;
+    private ErrorHandler errorHandler;
+    private LongConsumer progressListener;
+    private XMLValidationCache validationCache;
 
     /**
      * Create a new XMLValidator.
@@ -60,7 +80,8 @@ public class XMLValidator
     }
 
     /**
-     * Create a new XMLValidator.
+     * Create a new XMLValidator. The compiled schema is taken from the
+     * XMLSchemaCache, if the file has been compiled before.
      *
      * @param schemaFile The schema to use for validation.
      *
@@ -68,30 +89,76 @@ public class XMLValidator
      */
     public XMLValidator(File schemaFile) throws FileNotFoundException
     {
-        this(new FileInputStream(schemaFile));
+        this.exceptionList = new ArrayList<>();
+        this.schemaFile = schemaFile;
+
+        try
+        {
+            this.setSchema(XMLSchemaCache.compile(schemaFile));
+        }
+        catch (FileNotFoundException e)
+        {
+            throw e;
+        }
+        catch (SAXException | IOException e)
+        {
+            this.exceptionList.add(e);
+        }
     }
 
     /**
-     * Create a new XMLValidator.
+     * Create a new XMLValidator. The compiled schema is taken from the
+     * XMLSchemaCache, if a schema with the same content has been compiled
+     * before.
      *
      * @param schemaFile The schema to use for validation.
      */
     public XMLValidator(InputStream schemaFile)
     {
         this.exceptionList = new ArrayList<>();
-        this.factory = SchemaFactory.newInstance(SCHEMA_NAMESPACE_URI);
+        this.schemaFile = null;
+
+        if (schemaFile == null)
+        {
+            this.exceptionList.add(new SAXException("No schema given."));
+
+            return;
+        }
 
         try
         {
-            this.schema = this.factory.newSchema(new StreamSource(schemaFile));
-            this.validator = this.schema.newValidator();
+            byte[] content = XMLSchemaCache.read(schemaFile);
+            this.setSchema(XMLSchemaCache.compile(XMLSchemaCache.hash(content), content));
         }
-        catch (SAXException e)
+        catch (SAXException | IOException e)
         {
             this.exceptionList.add(e);
         }
     }
 
+    /**
+     * Set the compiled schema and create a validator for it.
+     *
+     * @param compiled The compiled schema and its fingerprint.
+     */
+    private void setSchema(XMLSchemaCache.CompiledSchema compiled)
+    {
+        this.state = new SchemaState(compiled.schema, compiled.fingerprint);
+    }
+
+    /**
+     * Get the compiled schema. This will return null, if the schema could not
+     * be compiled.
+     *
+     * @return The compiled schema.
+     */
+    public Schema getSchema()
+    {
+        SchemaState current = this.state;
+
+        return current == null ? null : current.schema;
+    }
+
     /**
      * Get the list of exceptions thrown during validation.
      *
@@ -136,6 +203,193 @@ public class XMLValidator
         }
     }
 
+    /**
+     * Get the number of errors after which a validation is aborted.
+     *
+     * @return The number of errors, 0 for no limit.
+     */
+    public int getMaxErrors()
+    {
+        return this.maxErrors;
+    }
+
+    /**
+     * Set the number of errors after which a validation is aborted. With the
+     * default of 1 the validation fails fast on the first error, a larger
+     * number collects as many errors in one pass, 0 collects all of them.
+     * Errors reported at the same position, like the datatype and the type
+     * error of an invalid value, count as one. Every collected error is added
+     * to the exception list as a SAXParseException with its line and column.
+     * Fatal errors, like malformed XML, always abort the validation.
+     *
+     * @param maxErrors The number of errors, 0 for no limit.
+     */
+    public void setMaxErrors(int maxErrors)
+    {
+        if (maxErrors < 0)
+        {
+            throw new IllegalArgumentException("Invalid maximum number of errors: " + maxErrors);
+        }
+
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Get the error handler every warning and error is passed to.
+     *
+     * @return The error handler or null.
+     */
+    public ErrorHandler getErrorHandler()
+    {
+        return this.errorHandler;
+    }
+
+    /**
+     * Set an error handler every warning and error is passed to, before it is
+     * collected. Throwing an exception from the handler aborts the
+     * validation.
+     *
+     * @param errorHandler The error handler or null.
+     */
+    public void setErrorHandler(ErrorHandler errorHandler)
+    {
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Get the listener for the progress of a validation.
+     *
+     * @return The listener or null.
+     */
+    public LongConsumer getProgressListener()
+    {
+        return this.progressListener;
+    }
+
+    /**
+     * Set a listener which gets the number of bytes read so far while
+     * validating.
+     *
+     * @param progressListener The listener or null.
+     */
+    public void setProgressListener(LongConsumer progressListener)
+    {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Compile the schema file again and use it for the following validations.
+     * Validations already running finish with the previous schema. If the
+     * schema cannot be compiled, the previous one is kept and the exception
+     * is available from getReloadException.
+     *
+     * @return Returns true if the new schema is used, otherwise false.
+     */
+    public boolean reloadSchema()
+    {
+        if (this.schemaFile == null)
+        {
+            throw new IllegalStateException("Only a schema read from a file can be reloaded.");
+        }
+
+        try
+        {
+            this.setSchema(XMLSchemaCache.reload(this.schemaFile));
+            this.reloadException = null;
+
+            return true;
+        }
+        catch (SAXException | IOException e)
+        {
+            this.reloadException = e;
+
+            return false;
+        }
+    }
+
+    /**
+     * Get the exception thrown by the last failed reload of the schema.
+     *
+     * @return The exception or null if the last reload succeeded.
+     */
+    public Exception getReloadException()
+    {
+        return this.reloadException;
+    }
+
+    /**
+     * Watch the directory of the schema file and reload the schema in the
+     * background, whenever the schema file or another schema file in the
+     * same directory, e.g. an included one, has changed. Validations never
+     * wait for the reload, they use the previous schema until the new one
+     * has been compiled.
+     *
+     * @throws IOException
+     */
+    public synchronized void startWatching() throws IOException
+    {
+        if (this.schemaFile == null)
+        {
+            throw new IllegalStateException("Only a schema read from a file can be watched.");
+        }
+
+        if (this.watcher == null)
+        {
+            this.watcher = new XMLSchemaWatcher(this.schemaFile, this::reloadSchema);
+        }
+    }
+
+    /**
+     * Stop watching the schema file.
+     */
+    public synchronized void stopWatching()
+    {
+        if (this.watcher != null)
+        {
+            this.watcher.close();
+            this.watcher = null;
+        }
+    }
+
+    /**
+     * Check if the schema file is watched.
+     *
+     * @return Returns true if watched, otherwise false.
+     */
+    public synchronized boolean isWatching()
+    {
+        return this.watcher != null;
+    }
+
+    /**
+     * Get the cache of successfully validated documents.
+     *
+     * @return The cache or null.
+     */
+    public XMLValidationCache getValidationCache()
+    {
+        return this.validationCache;
+    }
+
+    /**
+     * Set a cache of successfully validated documents. Documents are hashed
+     * before they are validated, a document with the same content which has
+     * been valid against the same schema before is not validated again.
+     * Files and streams up to 8 MB are read into memory once for both. Larger
+     * files are hashed first and read again for the validation, larger
+     * streams are always validated and only hashed on the way. The cached
+     * hash is always the one of the validated bytes. The fingerprint of the
+     * schema covers the schema file and every included or imported schema,
+     * so once the schema has been reloaded after a change of any of them, no
+     * earlier result is used.
+     *
+     * @param validationCache The cache or null.
+     */
+    public void setValidationCache(XMLValidationCache validationCache)
+    {
+        this.validationCache = validationCache;
+    }
+
     /**
      * Validate the XML file at the given path.
      *
@@ -157,11 +411,19 @@ public class XMLValidator
      */
     public boolean validate(File xmlFile)
     {
-        try
+        SchemaState current = this.state;
+
+        if (current == null)
         {
-            return this.validate(new FileInputStream(xmlFile));
+            this.exceptionList.add(new IllegalStateException("No compiled schema to validate against."));
+            return false;
         }
-        catch (FileNotFoundException e)
+
+        try (FileChannel channel = FileChannel.open(xmlFile.toPath(), StandardOpenOption.READ))
+        {
+            return this.validate(current, channel, this.exceptionList, this.progressListener);
+        }
+        catch (IOException e)
         {
             this.exceptionList.add(e);
             return false;
@@ -169,7 +431,8 @@ public class XMLValidator
     }
 
     /**
-     * Validate the given InputStream of an XML file.
+     * Validate the given InputStream of an XML file. The validation is aborted
+     * once the maximum number of errors has been reached.
      *
      * @param stream InputStream of the XML file.
      *
@@ -177,25 +440,366 @@ public class XMLValidator
      */
     public boolean validate(InputStream stream)
     {
-        if (stream != null)
+        if (stream == null)
+        {
+            return false;
+        }
+
+        SchemaState current = this.state;
+
+        if (current == null)
+        {
+            this.exceptionList.add(new IllegalStateException("No compiled schema to validate against."));
+            return false;
+        }
+
+        try
+        {
+            return this.validate(current, stream, this.exceptionList, this.progressListener);
+        }
+        catch (IOException e)
+        {
+            this.exceptionList.add(e);
+            return false;
+        }
+    }
+
+    /**
+     * Validate a document or an element built in memory, e.g. by the
+     * XMLWriter, without serializing and parsing it again. Errors are
+     * reported like for streams, the line and column are unknown though.
+     *
+     * @param node The document or element.
+     *
+     * @return Returns true on success, otherwise false.
+     */
+    public boolean validate(Node node)
+    {
+        return this.validate(node, this.exceptionList);
+    }
+
+    /**
+     * Validate a document or an element built in memory with the validator
+     * of the current thread, adding the errors to the given list. This may be
+     * called from any thread, as long as the node is not changed meanwhile.
+     *
+     * @param node       The document or element.
+     * @param exceptions The list to add the errors and exceptions to.
+     *
+     * @return Returns true on success, otherwise false.
+     */
+    boolean validate(Node node, ArrayList<Exception> exceptions)
+    {
+        if (node == null)
+        {
+            return false;
+        }
+
+        SchemaState current = this.state;
+
+        if (current == null)
         {
-            try
+            exceptions.add(new IllegalStateException("No compiled schema to validate against."));
+            return false;
+        }
+
+        return this.validate(current.getValidator(), new DOMSource(node), exceptions);
+    }
+
+    /**
+     * Validate the file, using the validation cache if there is one. Files up
+     * to the size limit of the cache are read once, see the stream variant.
+     * Larger files are hashed first, to skip the validation of a cached
+     * file. Otherwise they are read again from the same channel for the
+     * validation and the key is computed once more, from the validated bytes.
+     *
+     * @param current    The schema to validate against.
+     * @param channel    The channel of the file.
+     * @param exceptions The list to add the errors and exceptions to.
+     * @param progress   The progress listener or null.
+     *
+     * @return Returns true on success, otherwise false.
+     *
+     * @throws IOException
+     */
+    private boolean validate(SchemaState current, FileChannel channel, ArrayList<Exception> exceptions, LongConsumer progress) throws IOException
+    {
+        XMLValidationCache cache = this.validationCache;
+        String fingerprint = current.fingerprint;
+
+        if (cache != null && fingerprint != null && channel.size() >= CACHE_BUFFER_LIMIT)
+        {
+            MessageDigest digest = XMLValidationCache.newDigest();
+            XMLValidationCache.update(digest, Channels.newInputStream(channel));
+
+            if (cache.contains(XMLValidationCache.getKey(digest, fingerprint)))
             {
-                Source source = new StreamSource(stream);
+                return true;
+            }
+
+            channel.position(0);
+        }
 
-                this.validator.validate(source);
+        return this.validate(current, Channels.newInputStream(channel), exceptions, progress);
+    }
+
+    /**
+     * Validate the stream, using the validation cache if there is one. Up to
+     * the size limit of the cache, the content is read into memory and
+     * hashed, the validation is skipped if the content is cached, otherwise
+     * it reads from memory. Larger content is hashed while it is validated,
+     * so it is added to the cache if it is valid, but always validated.
+     *
+     * @param current    The schema to validate against.
+     * @param stream     The stream to validate.
+     * @param exceptions The list to add the errors and exceptions to.
+     * @param progress   The progress listener or null.
+     *
+     * @return Returns true on success, otherwise false.
+     *
+     * @throws IOException
+     */
+    private boolean validate(SchemaState current, InputStream stream, ArrayList<Exception> exceptions, LongConsumer progress) throws IOException
+    {
+        XMLValidationCache cache = this.validationCache;
+        Validator validator = current.getValidator();
+        String fingerprint = current.fingerprint;
+
+        if (progress != null)
+        {
+            stream = new XMLProgressInputStream(stream, progress);
+        }
+
+        if (cache == null || fingerprint == null)
+        {
+            return this.validate(validator, new StreamSource(stream), exceptions);
+        }
+
+        MessageDigest digest = XMLValidationCache.newDigest();
+        byte[] head = XMLValidator.read(stream, CACHE_BUFFER_LIMIT);
+
+        if (head.length < CACHE_BUFFER_LIMIT)
+        {
+            digest.update(head);
+            String key = XMLValidationCache.getKey(digest, fingerprint);
+
+            if (cache.contains(key))
+            {
                 return true;
             }
-            catch(SAXException | IOException | NullPointerException e)
+
+            boolean valid = this.validate(validator, new StreamSource(new ByteArrayInputStream(head)), exceptions);
+
+            if (valid)
             {
-                this.exceptionList.add(e);
-                return false;
+                cache.add(key);
             }
+
+            return valid;
         }
-        else
+
+        DigestInputStream digested = new DigestInputStream(new SequenceInputStream(new ByteArrayInputStream(head), stream), digest);
+
+        // The parser closes the stream at its end, the rest of it is hashed
+        // afterwards.
+        boolean valid = this.validate(validator, new StreamSource(new FilterInputStream(digested)
         {
+            @Override
+            public void close()
+            {
+            }
+        }), exceptions);
+
+        if (valid)
+        {
+            XMLValidationCache.update(digest, digested);
+            cache.add(XMLValidationCache.getKey(digest, fingerprint));
+        }
+
+        return valid;
+    }
+
+    /**
+     * Read the stream up to the given number of bytes.
+     *
+     * @param stream The stream.
+     * @param limit  The maximum number of bytes.
+     *
+     * @return The bytes read, less than the limit only at the end of the
+     *         stream.
+     *
+     * @throws IOException
+     */
+    private static byte[] read(InputStream stream, int limit) throws IOException
+    {
+        byte[] buffer = new byte[8192];
+        int length = 0;
+        int n;
+
+        while (length < limit && (n = stream.read(buffer, length, Math.min(buffer.length, limit) - length)) >= 0)
+        {
+            length += n;
+
+            if (length == buffer.length && length < limit)
+            {
+                buffer = Arrays.copyOf(buffer, (int) Math.min((long) buffer.length * 2, limit));
+            }
+        }
+
+        return length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * Validate all given files in parallel against the schema. The compiled
+     * schema is shared, every worker thread gets its own validator. A schema
+     * reloaded meanwhile is used for the files not started yet. The
+     * maximum number of errors and the error handler apply to each file, so
+     * the error handler has to be thread safe. The progress listener is not
+     * used and the exception list of the validator is not involved.
+     *
+     * @param paths       The files to validate.
+     * @param parallelism The number of worker threads.
+     *
+     * @return The result for each path, in the order of the given collection.
+     */
+    public LinkedHashMap<Path, XMLValidationResult> validateAll(Collection<Path> paths, int parallelism)
+    {
+        if (parallelism < 1)
+        {
+            throw new IllegalArgumentException("The parallelism must be at least 1.");
+        }
+
+        LinkedHashMap<Path, XMLValidationResult> results = new LinkedHashMap<>();
+
+        if (this.state == null)
+        {
+            for (Path path : paths)
+            {
+                results.put(path, XMLValidator.failed(new IllegalStateException("No compiled schema to validate against.")));
+            }
+
+            return results;
+        }
+
+        return XMLBatch.run(paths, parallelism, this::validate, XMLValidator::failed);
+    }
+
+    /**
+     * Validate a single file of a batch with the validator of the current
+     * thread for the current schema.
+     *
+     * @param path The file to validate.
+     *
+     * @return The validation result.
+     */
+    private XMLValidationResult validate(Path path)
+    {
+        SchemaState current = this.state;
+        ArrayList<Exception> exceptions = new ArrayList<>();
+        boolean valid;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            valid = this.validate(current, channel, exceptions, null);
+        }
+        catch (IOException e)
+        {
+            exceptions.add(e);
+            valid = false;
+        }
+
+        return new XMLValidationResult(valid && exceptions.isEmpty(), exceptions);
+    }
+
+    /**
+     * Validate the source with the given validator. The validation is aborted
+     * once the maximum number of errors has been reached.
+     *
+     * @param validator  The validator to use.
+     * @param source     The source to validate.
+     * @param exceptions The list to add the errors and exceptions to.
+     *
+     * @return Returns true on success, otherwise false.
+     */
+    private boolean validate(Validator validator, Source source, ArrayList<Exception> exceptions)
+    {
+        XMLErrorCollector collector = new XMLErrorCollector(this.maxErrors, this.errorHandler);
+        validator.setErrorHandler(collector);
+
+        try
+        {
+            validator.validate(source);
+            exceptions.addAll(collector.getErrors());
+
+            return collector.getErrors().isEmpty();
+        }
+        catch(SAXException | IOException e)
+        {
+            ArrayList<SAXParseException> errors = collector.getErrors();
+            exceptions.addAll(errors);
+
+            if (errors.isEmpty() || errors.get(errors.size() - 1) != e)
+            {
+                exceptions.add(e);
+            }
+
             return false;
         }
+        finally
+        {
+            validator.setErrorHandler(null);
+        }
+    }
+
+    /**
+     * Create a failed validation result holding the given exception.
+     *
+     * @param e The exception.
+     *
+     * @return The validation result.
+     */
+    private static XMLValidationResult failed(Exception e)
+    {
+        ArrayList<Exception> exceptionList = new ArrayList<>();
+        exceptionList.add(e);
+
+        return new XMLValidationResult(false, exceptionList);
+    }
+
+    /**
+     * A compiled schema together with the validators created from it and the
+     * fingerprint of the schema documents. A validator is not thread safe, so
+     * every thread gets its own. Replaced as a whole when the schema is
+     * reloaded.
+     */
+    private static final class SchemaState
+    {
+        private final Schema schema;
+        private final ThreadLocal<Validator> validators;
+        private final String fingerprint;
+
+        /**
+         * Create a new state for the given schema.
+         *
+         * @param schema      The compiled schema.
+         * @param fingerprint The fingerprint of the schema documents.
+         */
+        SchemaState(Schema schema, String fingerprint)
+        {
+            this.schema = schema;
+            this.validators = ThreadLocal.withInitial(schema::newValidator);
+            this.fingerprint = fingerprint;
+        }
+
+        /**
+         * Get the validator of the current thread.
+         *
+         * @return The validator.
+         */
+        Validator getValidator()
+        {
+            return this.validators.get();
+        }
     }
 
     //@TODO method for showing the last exception in a separate window
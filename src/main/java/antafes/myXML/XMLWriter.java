@@ -22,34 +22,52 @@
 
 package antafes.myXML;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.StringWriter;
-import java.io.UnsupportedEncodingException;
-import java.net.MalformedURLException;
+import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLEncoder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Result;
 import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 
 /**
  *
@@ -57,11 +75,59 @@ import org.w3c.dom.Element;
  */
 public class XMLWriter
 {
+    /**
+     * The maximum number of requests writeToURLAsync sends at the same time
+     * if no executor is given. Further requests wait in a queue.
+     */
+    public static final int MAX_DELIVERY_THREADS = 8;
+    private static final int FILE_BUFFER_SIZE = 65536;
+    private static final int CHUNK_SIZE = 65536;
+    private static final byte[] APPEND_INDENT = "    ".getBytes(StandardCharsets.US_ASCII);
+    private static final long DELIVERY_KEEP_ALIVE = 60;
+    private static final ThreadPoolExecutor DELIVERY_EXECUTOR = XMLWriter.createDeliveryExecutor();
     private DocumentBuilderFactory factory;
     private DocumentBuilder builder;
     private Document document;
     private Element root;
     private ArrayList<Exception> exceptionList;
+    private boolean directSerialization = false;
+    private boolean atomicWrite = false;
+    private boolean syncOnWrite = false;
+    private XMLDeliveryMode deliveryMode = XMLDeliveryMode.FORM;
+    private XMLCompression compression = XMLCompression.NONE;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private int compressionBufferSize = XMLCompression.DEFAULT_BUFFER_SIZE;
+    private XMLValidator validator;
+    private HashMap<XMLRowTemplate<?>, Element> rowPrototypes;
+
+    /**
+     * Create the executor sending the requests of writeToURLAsync, if no
+     * executor is given. Sending blocks on the network, so the requests get
+     * up to MAX_DELIVERY_THREADS daemon threads of their own, which end after
+     * a minute without requests.
+     *
+     * @return The executor.
+     */
+    private static ThreadPoolExecutor createDeliveryExecutor()
+    {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            MAX_DELIVERY_THREADS,
+            MAX_DELIVERY_THREADS,
+            DELIVERY_KEEP_ALIVE,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "XMLWriter delivery " + count.incrementAndGet());
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        );
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+    }
 
     /**
      * Create a new XMLWriter
@@ -82,6 +148,7 @@ public class XMLWriter
     private void prepare(String rootElement)
     {
         this.exceptionList = new ArrayList<>();
+        this.rowPrototypes = new HashMap<>();
         this.factory = DocumentBuilderFactory.newInstance();
         try
         {
@@ -277,6 +344,69 @@ public class XMLWriter
         return this.addChild(this.root, name, null, null);
     }
 
+    /**
+     * Add an element for each record to the parent, as described by the
+     * template.
+     *
+     * @param <T>
+     * @param parent
+     * @param template
+     * @param records
+     *
+     * @return The number of added elements
+     */
+    public <T> int addRows(Element parent, XMLRowTemplate<T> template, Iterable<? extends T> records)
+    {
+        Element prototype = this.rowPrototypes.computeIfAbsent(template, key -> key.createPrototype(this.document));
+        int count = 0;
+
+        for (T record : records)
+        {
+            parent.appendChild(template.createRow(prototype, record));
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Add an element for each record to the root element, as described by the
+     * template.
+     *
+     * @param <T>
+     * @param template
+     * @param records
+     *
+     * @return The number of added elements
+     */
+    public <T> int addRows(XMLRowTemplate<T> template, Iterable<? extends T> records)
+    {
+        return this.addRows(this.root, template, records);
+    }
+
+    /**
+     * Whether the document is serialized directly into UTF-8 bytes instead of
+     * going through a transformer.
+     *
+     * @return
+     */
+    public boolean isDirectSerialization()
+    {
+        return this.directSerialization;
+    }
+
+    /**
+     * Serialize the document directly into UTF-8 bytes instead of going
+     * through a transformer, when writing to a file or an OutputStream. The
+     * output stays byte identical.
+     *
+     * @param directSerialization
+     */
+    public void setDirectSerialization(boolean directSerialization)
+    {
+        this.directSerialization = directSerialization;
+    }
+
     /**
      * Generate the xml and write it to the given path
      *
@@ -288,63 +418,492 @@ public class XMLWriter
     }
 
     /**
-     * Generate the xml and write it to the given file
+     * Get the validator the document is checked with before writing.
+     *
+     * @return
+     */
+    public XMLValidator getValidator()
+    {
+        return this.validator;
+    }
+
+    /**
+     * Set a validator the document is checked with before it is written,
+     * appended or sent. The document itself is validated, it is not
+     * serialized and parsed again for that. If it is invalid, nothing is
+     * written and the validation errors are added to the exception list, or
+     * complete the future of an asynchronous delivery. The exception list of
+     * the validator is not involved, so one validator can be shared by
+     * writers on several threads. Set null to write without validating.
+     *
+     * @param validator
+     */
+    public void setValidator(XMLValidator validator)
+    {
+        this.validator = validator;
+    }
+
+    /**
+     * Get the way documents are sent to urls.
+     *
+     * @return
+     */
+    public XMLDeliveryMode getDeliveryMode()
+    {
+        return this.deliveryMode;
+    }
+
+    /**
+     * Set the way documents are sent to urls. The streaming modes send the
+     * document in chunks while it is serialized, instead of building the
+     * whole request in memory first.
+     *
+     * @param deliveryMode
+     */
+    public void setDeliveryMode(XMLDeliveryMode deliveryMode)
+    {
+        this.deliveryMode = deliveryMode;
+    }
+
+    /**
+     * Get the compression used for file, OutputStream and url output.
+     *
+     * @return
+     */
+    public XMLCompression getCompression()
+    {
+        return this.compression;
+    }
+
+    /**
+     * Compress the output written to files, OutputStreams and urls. Requests
+     * to an url send the compressed body with a Content-Encoding header, in
+     * every delivery mode. Writing to an OutputStreamWriter is not affected.
+     *
+     * @param compression
+     */
+    public void setCompression(XMLCompression compression)
+    {
+        this.compression = compression;
+    }
+
+    /**
+     * Get the compression level.
+     *
+     * @return
+     */
+    public int getCompressionLevel()
+    {
+        return this.compressionLevel;
+    }
+
+    /**
+     * Set the compression level from 0 to 9, -1 selects the default level.
+     *
+     * @param compressionLevel
+     */
+    public void setCompressionLevel(int compressionLevel)
+    {
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION)
+        {
+            throw new IllegalArgumentException("Invalid compression level " + compressionLevel);
+        }
+
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Get the buffer size of the compressor.
+     *
+     * @return
+     */
+    public int getCompressionBufferSize()
+    {
+        return this.compressionBufferSize;
+    }
+
+    /**
+     * Set the buffer size of the compressor.
+     *
+     * @param compressionBufferSize
+     */
+    public void setCompressionBufferSize(int compressionBufferSize)
+    {
+        if (compressionBufferSize <= 0)
+        {
+            throw new IllegalArgumentException("Invalid buffer size " + compressionBufferSize);
+        }
+
+        this.compressionBufferSize = compressionBufferSize;
+    }
+
+    /**
+     * Whether files are written to a temporary file first, which is then
+     * renamed to the target.
+     *
+     * @return
+     */
+    public boolean isAtomicWrite()
+    {
+        return this.atomicWrite;
+    }
+
+    /**
+     * Write files to a temporary file in the same directory first and rename
+     * it to the target afterwards. Readers never see a partially written
+     * file, and a failed write leaves the previous file untouched. On POSIX
+     * file systems the permissions, group and owner of a replaced file are
+     * kept, the owner only if the writing user is allowed to set it.
+     *
+     * @param atomicWrite
+     */
+    public void setAtomicWrite(boolean atomicWrite)
+    {
+        this.atomicWrite = atomicWrite;
+    }
+
+    /**
+     * Whether written files are synced to the storage device.
+     *
+     * @return
+     */
+    public boolean isSyncOnWrite()
+    {
+        return this.syncOnWrite;
+    }
+
+    /**
+     * Sync written files to the storage device before returning, so they
+     * survive a crash. With an atomic write the directory is synced after the
+     * rename as well.
+     *
+     * @param syncOnWrite
+     */
+    public void setSyncOnWrite(boolean syncOnWrite)
+    {
+        this.syncOnWrite = syncOnWrite;
+    }
+
+    /**
+     * Generate the xml and write it to the given file. The output is buffered
+     * and the file is closed afterwards.
      *
      * @param file
      */
     public void write(File file)
     {
+        if (this.validateDocument(this.exceptionList))
+        {
+            this.writeDocument(file);
+        }
+    }
+
+    /**
+     * Write the indented xml to the given file, atomically if enabled.
+     *
+     * @param file
+     */
+    private void writeDocument(File file)
+    {
+        File directory = file.getAbsoluteFile().getParentFile();
+
+        if (!directory.exists())
+        {
+            directory.mkdirs();
+        }
+
+        File target = file;
+
         try
         {
-            if (!file.exists())
+            if (this.atomicWrite)
             {
-                try
+                target = File.createTempFile("." + file.getName() + ".", ".tmp", directory);
+            }
+
+            if (!this.writeFile(target))
+            {
+                if (this.atomicWrite)
                 {
-                    File path = new File(file.getParent());
-                    path.mkdirs();
-                    file.createNewFile();
+                    Files.deleteIfExists(target.toPath());
                 }
-                catch (IOException ex)
+
+                return;
+            }
+
+            if (this.atomicWrite)
+            {
+                // Copied after writing, the previous file may be read-only.
+                XMLWriter.copyAttributes(file.toPath(), target.toPath());
+                XMLWriter.move(target.toPath(), file.toPath());
+
+                if (this.syncOnWrite)
                 {
-                    this.exceptionList.add(ex);
+                    XMLWriter.syncDirectory(directory.toPath());
                 }
             }
+        }
+        catch (IOException ex)
+        {
+            this.exceptionList.add(ex);
 
-            FileOutputStream fos = new FileOutputStream(file);
-            OutputStreamWriter osw = new OutputStreamWriter(fos, "UTF-8");
-            this.write(osw);
+            if (target != file)
+            {
+                target.delete();
+            }
         }
-        catch (FileNotFoundException | UnsupportedEncodingException e)
+    }
+
+    /**
+     * Write the indented xml through a large buffer into the file.
+     *
+     * @param file
+     *
+     * @return False if the serialization failed
+     *
+     * @throws IOException
+     */
+    private boolean writeFile(File file) throws IOException
+    {
+        int exceptions = this.exceptionList.size();
+
+        try (FileOutputStream fos = new FileOutputStream(file))
         {
-            this.exceptionList.add(e);
+            BufferedOutputStream stream = new BufferedOutputStream(fos, FILE_BUFFER_SIZE);
+            this.writeStream(stream, XMLOutputProfile.INDENTED);
+
+            if (this.exceptionList.size() > exceptions)
+            {
+                return false;
+            }
+
+            stream.flush();
+
+            if (this.syncOnWrite)
+            {
+                fos.getChannel().force(true);
+            }
         }
+
+        return true;
     }
 
     /**
-     * Write the created XML to a ByteArrayOutputStream.
+     * Copy the permissions, group and owner of the source to the target on
+     * POSIX file systems. Nothing is done if the source does not exist. Only
+     * privileged users may hand a file to another owner or to a group they
+     * are not a member of, those changes are skipped otherwise and the
+     * target keeps the writing user like any new file.
      *
-     * @return
+     * @param source
+     * @param target
+     *
+     * @throws IOException
      */
-    public ByteArrayOutputStream writeToOutputStream()
+    static void copyAttributes(Path source, Path target) throws IOException
     {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        PosixFileAttributeView sourceView = Files.getFileAttributeView(source, PosixFileAttributeView.class);
+        PosixFileAttributeView targetView = Files.getFileAttributeView(target, PosixFileAttributeView.class);
+
+        if (sourceView == null || targetView == null)
+        {
+            return;
+        }
+
+        PosixFileAttributes attributes;
 
         try
         {
-            TransformerFactory transFactory = TransformerFactory.newInstance();
-            Transformer transformer = transFactory.newTransformer();
-            DOMSource source = new DOMSource(this.document);
-            StreamResult result = new StreamResult(baos);
-            transformer.transform(source, result);
+            attributes = sourceView.readAttributes();
         }
-        catch (TransformerConfigurationException ex)
+        catch (NoSuchFileException ex)
         {
-            this.exceptionList.add(ex);
+            return;
         }
-        catch (TransformerException ex)
+
+        PosixFileAttributes current = targetView.readAttributes();
+        targetView.setPermissions(attributes.permissions());
+
+        if (!attributes.group().equals(current.group()))
+        {
+            try
+            {
+                targetView.setGroup(attributes.group());
+            }
+            catch (IOException ex)
+            {
+                // Not allowed for this user.
+            }
+        }
+
+        if (!attributes.owner().equals(current.owner()))
+        {
+            try
+            {
+                targetView.setOwner(attributes.owner());
+            }
+            catch (IOException ex)
+            {
+                // Not allowed for this user.
+            }
+        }
+    }
+
+    /**
+     * Rename the source to the target, atomically if the file system supports
+     * it.
+     *
+     * @param source
+     * @param target
+     *
+     * @throws IOException
+     */
+    static void move(Path source, Path target) throws IOException
+    {
+        try
+        {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (AtomicMoveNotSupportedException ex)
+        {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Sync the directory entry of a renamed file. Not every platform allows
+     * opening a directory, in which case nothing is done.
+     *
+     * @param directory
+     */
+    static void syncDirectory(Path directory)
+    {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ))
+        {
+            channel.force(true);
+        }
+        catch (IOException ex)
+        {
+            // The rename itself has already succeeded.
+        }
+    }
+
+    /**
+     * Append the children of the root element to the root element of an
+     * existing file, see append(File).
+     *
+     * @param path
+     */
+    public void append(String path)
+    {
+        this.append(new File(path));
+    }
+
+    /**
+     * Append the children of the root element to the root element of an
+     * existing file, indented like written by write(File). Only the end of
+     * the file is read and rewritten, so the cost does not depend on the size
+     * of the file. The file has to end with the root element, which has to be
+     * named like the one of this writer. The attributes of the root element
+     * are not written and the children are kept in this writer.
+     *
+     * The file has to be UTF-8 encoded and is locked while appending, also
+     * against other processes. Compressed files cannot be appended to, so no
+     * compression may be set.
+     *
+     * A journal is kept next to the file while appending, which rolls back an
+     * append interrupted by a crash on the next append or by recoverAppend.
+     * Until then the file may not be well-formed. The roll back depends on
+     * the journal being on the disk before the file is changed, so the
+     * journal and the file are always forced to the disk, independent of
+     * sync on write. If the file does not exist or is empty, the whole
+     * document is written while the file is locked, so of concurrent appends
+     * to a new file only the first one writes the document.
+     *
+     * @param file
+     */
+    public void append(File file)
+    {
+        if (!this.validateDocument(this.exceptionList))
+        {
+            return;
+        }
+
+        if (this.compression != XMLCompression.NONE)
+        {
+            this.exceptionList.add(new IOException("Compressed files cannot be appended to."));
+
+            return;
+        }
+
+        File directory = file.getAbsoluteFile().getParentFile();
+
+        if (!directory.exists())
+        {
+            directory.mkdirs();
+        }
+
+        try
+        {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            XMLSerializer serializer = XMLSerializer.get(XMLOutputProfile.INDENTED);
+
+            for (Node child = this.root.getFirstChild(); child != null; child = child.getNextSibling())
+            {
+                content.write(APPEND_INDENT);
+                serializer.serialize(child, 1, content);
+                content.write('\n');
+            }
+
+            ByteArrayOutputStream document = new ByteArrayOutputStream();
+            this.serialize(document, XMLOutputProfile.INDENTED);
+
+            new XMLFileAppender(file).append(this.root.getNodeName(), content.toByteArray(), document.toByteArray());
+        }
+        catch (IOException | TransformerException | IllegalArgumentException ex)
         {
             this.exceptionList.add(ex);
         }
+    }
+
+    /**
+     * Roll back an append to the given file which has been interrupted by a
+     * crash, e.g. before reading the file. This is done by every append as
+     * well.
+     *
+     * @param file
+     *
+     * @return True if an append has been rolled back.
+     *
+     * @throws IOException
+     */
+    public static boolean recoverAppend(File file) throws IOException
+    {
+        return new XMLFileAppender(file).recover();
+    }
+
+    /**
+     * Write the created XML to a ByteArrayOutputStream.
+     *
+     * @return
+     */
+    public ByteArrayOutputStream writeToOutputStream()
+    {
+        return this.writeToOutputStream(XMLOutputProfile.COMPACT);
+    }
+
+    /**
+     * Write the created XML to a ByteArrayOutputStream using the given output
+     * profile.
+     *
+     * @param profile
+     *
+     * @return
+     */
+    public ByteArrayOutputStream writeToOutputStream(XMLOutputProfile profile)
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        this.write(baos, profile);
 
         return baos;
     }
@@ -356,29 +915,121 @@ public class XMLWriter
      */
     public void write(OutputStreamWriter writer)
     {
+        this.write(writer, XMLOutputProfile.INDENTED);
+    }
+
+    /**
+     * Generate the xml and write it to the given OutputStream using the given
+     * output profile
+     *
+     * @param writer
+     * @param profile
+     */
+    public void write(OutputStreamWriter writer, XMLOutputProfile profile)
+    {
+        if (!this.validateDocument(this.exceptionList))
+        {
+            return;
+        }
+
         try
         {
-            TransformerFactory transFactory = TransformerFactory.newInstance();
-            Transformer transformer = transFactory.newTransformer();
-            DOMSource source = new DOMSource(this.document);
-            StreamResult result = new StreamResult(writer);
-            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "no");
-            transformer.setOutputProperty(OutputKeys.METHOD, "xml");
-            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
-            transformer.transform(source, result);
+            this.transform(new StreamResult(writer), profile);
         }
-        catch (TransformerConfigurationException ex)
+        catch (TransformerException ex)
         {
             this.exceptionList.add(ex);
         }
-        catch (TransformerException ex)
+    }
+
+    /**
+     * Generate the xml and write it to the given OutputStream using the given
+     * output profile. The output is compressed if a compression is set, the
+     * stream is left open.
+     *
+     * @param stream
+     * @param profile
+     */
+    public void write(OutputStream stream, XMLOutputProfile profile)
+    {
+        if (this.validateDocument(this.exceptionList))
+        {
+            this.writeStream(stream, profile);
+        }
+    }
+
+    /**
+     * Write the xml into the stream, compressed if a compression is set.
+     *
+     * @param stream
+     * @param profile
+     */
+    private void writeStream(OutputStream stream, XMLOutputProfile profile)
+    {
+        try
+        {
+            if (this.compression == XMLCompression.NONE)
+            {
+                this.serialize(stream, profile);
+                return;
+            }
+
+            try (OutputStream compressed = this.compression.compress(stream, this.compressionLevel, this.compressionBufferSize))
+            {
+                this.serialize(compressed, profile);
+            }
+        }
+        catch (IOException | TransformerException ex)
         {
             this.exceptionList.add(ex);
         }
     }
 
+    /**
+     * Serialize the document into the given stream, either directly or with a
+     * transformer.
+     *
+     * @param stream
+     * @param profile
+     *
+     * @throws IOException
+     * @throws TransformerException
+     */
+    private void serialize(OutputStream stream, XMLOutputProfile profile) throws IOException, TransformerException
+    {
+        if (this.directSerialization)
+        {
+            XMLSerializer.get(profile).serialize(this.document, stream);
+            return;
+        }
+
+        this.transform(new StreamResult(stream), profile);
+    }
+
+    /**
+     * Serialize the document into the given result. The transformer of the
+     * current thread for the profile is reused.
+     *
+     * @param result
+     * @param profile
+     *
+     * @throws TransformerException
+     */
+    private void transform(Result result, XMLOutputProfile profile) throws TransformerException
+    {
+        Transformer transformer = XMLTransformers.get(profile);
+
+        try
+        {
+            transformer.transform(new DOMSource(this.document), result);
+        }
+        catch (TransformerException | RuntimeException ex)
+        {
+            XMLTransformers.discard(profile);
+            throw ex;
+        }
+    }
+
     /**
      * Generate the xml and write it to an url.
      *
@@ -429,82 +1080,223 @@ public class XMLWriter
      */
     public InputStream writeToURL(String urlString, String charset, HashMap<String, Object> additionalParams)
     {
+        if (!this.validateDocument(this.exceptionList))
+        {
+            return null;
+        }
+
         try
         {
-            URL url = new URL(urlString);
-            URLConnection connection = url.openConnection();
-            connection.setUseCaches(false);
-            connection.setDoOutput(true);
-            connection.setRequestProperty("accept-charset", charset);
-            connection.setRequestProperty("content-type", "application/x-www-form-urlencoded");
-            String query = "";
+            return this.post(urlString, charset, additionalParams);
+        }
+        catch (Exception ex)
+        {
+            this.exceptionList.add(ex);
+        }
+
+        return null;
+    }
+
+    /**
+     * Generate the xml and write it to an url in the background. The future
+     * fails with the thrown exception instead of adding it to the exception
+     * list. The document must not be changed until the future is done. The
+     * request is sent by one of at most MAX_DELIVERY_THREADS threads of the
+     * XMLWriter, not by the common pool.
+     *
+     * @param urlString
+     *
+     * @return
+     */
+    public CompletableFuture<InputStream> writeToURLAsync(String urlString)
+    {
+        return this.writeToURLAsync(urlString, "UTF-8", null, DELIVERY_EXECUTOR);
+    }
 
-            if (additionalParams != null)
+    /**
+     * Generate the xml and write it to an url with the given additional
+     * parameters in the background.
+     *
+     * @param urlString
+     * @param additionalParams
+     *
+     * @return
+     *
+     * @see #writeToURLAsync(java.lang.String)
+     */
+    public CompletableFuture<InputStream> writeToURLAsync(String urlString, HashMap<String, Object> additionalParams)
+    {
+        return this.writeToURLAsync(urlString, "UTF-8", additionalParams, DELIVERY_EXECUTOR);
+    }
+
+    /**
+     * Generate the xml and write it to an url with the given additional
+     * parameters using the given charset. The request is sent by the given
+     * executor.
+     *
+     * @param urlString
+     * @param charset
+     * @param additionalParams
+     * @param executor
+     *
+     * @return
+     *
+     * @see #writeToURLAsync(java.lang.String)
+     */
+    public CompletableFuture<InputStream> writeToURLAsync(String urlString, String charset, HashMap<String, Object> additionalParams, Executor executor)
+    {
+        return CompletableFuture.supplyAsync(() -> {
+            ArrayList<Exception> exceptions = new ArrayList<>();
+
+            if (!this.validateDocument(exceptions))
             {
-                for (Map.Entry<String, Object> entry : additionalParams.entrySet()) {
-                    String key = entry.getKey();
-                    Object value = entry.getValue();
-                    query += String.format("%s=%s&", URLEncoder.encode(key, charset), URLEncoder.encode(value.toString(), charset));
-                }
-            }
+                CompletionException failure = new CompletionException(exceptions.get(0));
 
-            TransformerFactory transFactory = TransformerFactory.newInstance();
-            Transformer transformer = transFactory.newTransformer();
-            DOMSource source = new DOMSource(this.document);
-            StringWriter sw = new StringWriter();
-            StreamResult result = new StreamResult(sw);
-            transformer.transform(source, result);
+                for (int i = 1; i < exceptions.size(); i++)
+                {
+                    failure.addSuppressed(exceptions.get(i));
+                }
 
-            query += String.format("%s=%s", URLEncoder.encode("message", charset), URLEncoder.encode(sw.toString(), charset));
+                throw failure;
+            }
 
-            OutputStreamWriter writer = null;
-            InputStream response;
             try
             {
-                writer = new OutputStreamWriter(connection.getOutputStream(), charset);
-                writer.write(query); // Write POST query string (if any needed).
+                return this.post(urlString, charset, additionalParams);
             }
-            finally
+            catch (IOException | TransformerException ex)
             {
-                if (writer != null)
-                {
-                    try
-                    {
-                        writer.close();
-                    }
-                    catch (IOException ex)
-                    {
-                        this.exceptionList.add(ex);
-                    }
-                }
+                throw new CompletionException(ex);
             }
+        }, executor);
+    }
 
-            response = connection.getInputStream();
+    /**
+     * Validate the document with the validator, if one is set. The validator
+     * of the current thread is used, the exception list of the validator is
+     * not involved.
+     *
+     * @param exceptions The list to add the validation errors to.
+     *
+     * @return False if the document is invalid
+     */
+    private boolean validateDocument(ArrayList<Exception> exceptions)
+    {
+        return this.validator == null || this.validator.validate(this.document, exceptions);
+    }
+
+    /**
+     * Send the xml to the url in the current delivery mode and return the
+     * response. Connections are kept alive, they are reused once the
+     * response has been read completely and closed.
+     *
+     * @param urlString
+     * @param charset
+     * @param additionalParams
+     *
+     * @return
+     *
+     * @throws IOException
+     * @throws TransformerException
+     */
+    private InputStream post(String urlString, String charset, HashMap<String, Object> additionalParams) throws IOException, TransformerException
+    {
+        StringBuilder query = new StringBuilder();
 
-            return response;
+        if (additionalParams != null)
+        {
+            for (Map.Entry<String, Object> entry : additionalParams.entrySet()) {
+                query.append(URLEncoder.encode(entry.getKey(), charset))
+                    .append('=')
+                    .append(URLEncoder.encode(entry.getValue().toString(), charset))
+                    .append('&');
+            }
         }
-        catch (TransformerConfigurationException ex)
+
+        if (this.deliveryMode == XMLDeliveryMode.RAW && query.length() > 0)
         {
-            this.exceptionList.add(ex);
+            query.setLength(query.length() - 1);
+            urlString += (urlString.indexOf('?') < 0 ? "?" : "&") + query;
         }
-        catch (TransformerException ex)
+
+        URL url = new URL(urlString);
+        URLConnection connection = url.openConnection();
+        connection.setUseCaches(false);
+        connection.setDoOutput(true);
+        connection.setRequestProperty("accept-charset", charset);
+        connection.setRequestProperty("content-type", this.deliveryMode.getContentType());
+
+        if (this.compression != XMLCompression.NONE)
         {
-            this.exceptionList.add(ex);
+            connection.setRequestProperty("content-encoding", this.compression.getContentEncoding());
         }
-        catch (MalformedURLException ex)
+
+        if (this.deliveryMode != XMLDeliveryMode.FORM && connection instanceof HttpURLConnection)
         {
-            this.exceptionList.add(ex);
+            ((HttpURLConnection) connection).setChunkedStreamingMode(CHUNK_SIZE);
         }
-        catch (IOException ex)
+
+        try
         {
-            this.exceptionList.add(ex);
+            this.send(connection, query, charset);
+
+            return connection.getInputStream();
         }
-        catch (Exception ex)
+        catch (IOException | TransformerException | RuntimeException ex)
         {
-            this.exceptionList.add(ex);
+            if (connection instanceof HttpURLConnection)
+            {
+                ((HttpURLConnection) connection).disconnect();
+            }
+
+            throw ex;
         }
+    }
 
-        return null;
+    /**
+     * Write the request body in the current delivery mode.
+     *
+     * @param connection
+     * @param query      The url encoded additional parameters, each followed
+     *                   by an ampersand.
+     * @param charset
+     *
+     * @throws IOException
+     * @throws TransformerException
+     */
+    private void send(URLConnection connection, StringBuilder query, String charset) throws IOException, TransformerException
+    {
+        try (OutputStream output = connection.getOutputStream();
+            OutputStream compressed = this.compression.compress(output, this.compressionLevel, this.compressionBufferSize))
+        {
+            switch (this.deliveryMode)
+            {
+                case FORM:
+                    StringWriter sw = new StringWriter();
+                    this.transform(new StreamResult(sw), XMLOutputProfile.COMPACT);
+                    query.append("message=").append(URLEncoder.encode(sw.toString(), charset));
+
+                    try (OutputStreamWriter writer = new OutputStreamWriter(compressed, charset))
+                    {
+                        writer.write(query.toString()); // Write POST query string (if any needed).
+                    }
+                    break;
+                case STREAMING_FORM:
+                    try (OutputStream body = new BufferedOutputStream(compressed, CHUNK_SIZE);
+                        XMLFormEncodingWriter writer = new XMLFormEncodingWriter(body, Charset.forName(charset)))
+                    {
+                        body.write(query.append("message=").toString().getBytes(StandardCharsets.US_ASCII));
+                        this.transform(new StreamResult(writer), XMLOutputProfile.COMPACT);
+                    }
+                    break;
+                case RAW:
+                    try (OutputStream stream = new BufferedOutputStream(compressed, CHUNK_SIZE))
+                    {
+                        this.serialize(stream, XMLOutputProfile.COMPACT);
+                    }
+                    break;
+            }
+        }
     }
 
     /**
@@ -513,17 +1305,11 @@ public class XMLWriter
      * @param xml
      *
      * @return
+     *
+     * @see XMLEscaper#escapeAttribute(java.lang.String)
      */
     public static String prepareXML(String xml)
     {
-        String preparedXML;
-
-        preparedXML = xml.replace("&", "&#x26;");
-        preparedXML = preparedXML.replace("<", "&#x3C;");
-        preparedXML = preparedXML.replace(">", "&#x3E;");
-        preparedXML = preparedXML.replace("\"", "&#x22;");
-        preparedXML = preparedXML.replace("'", "&#x27;");
-
-        return preparedXML;
+        return XMLEscaper.escapeAttribute(xml);
     }
 }
\ No newline at end of file
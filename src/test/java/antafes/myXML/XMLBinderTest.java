@@ -0,0 +1,298 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+
+package antafes.myXML;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ *
+ * @author Neithan
+ */
+public class XMLBinderTest
+{
+    enum Color
+    {
+        RED, GREEN
+    }
+
+    static class Primitives
+    {
+        boolean flag;
+        byte tiny;
+        short small;
+        char letter;
+        int number;
+        long big;
+        float ratio;
+        double amount;
+        String text;
+        Color color;
+        static int ignoredStatic = 1;
+        transient int ignoredTransient;
+    }
+
+    static class Wrappers
+    {
+        Boolean flag;
+        Byte tiny;
+        Short small;
+        Character letter;
+        Integer number;
+        Long big;
+        Float ratio;
+        Double amount;
+        String text = "default";
+        Color color;
+    }
+
+    static class NoDefault
+    {
+        int number;
+
+        NoDefault(int number)
+        {
+            this.number = number;
+        }
+    }
+
+    /**
+     * Write the objects with the binder, serialize the document, parse it
+     * again and read the objects back.
+     *
+     * @param <T>     The bound class.
+     * @param binder  The binder.
+     * @param objects The objects.
+     *
+     * @return The objects read back.
+     *
+     * @throws Exception
+     */
+    private static <T> ArrayList<T> roundTrip(XMLBinder<T> binder, Iterable<? extends T> objects) throws Exception
+    {
+        XMLWriter writer = new XMLWriter("objects");
+        Element parent = writer.addChild("list");
+        binder.writeAll(writer, parent, objects);
+
+        Element root = XMLBinderTest.parse(writer.writeToOutputStream().toString("UTF-8"));
+
+        return binder.readAll((Element) root.getElementsByTagName("list").item(0));
+    }
+
+    /**
+     * Parse the given xml.
+     *
+     * @param xml The xml.
+     *
+     * @return The root element.
+     *
+     * @throws Exception
+     */
+    private static Element parse(String xml) throws Exception
+    {
+        return DocumentBuilderFactory.newInstance()
+            .newDocumentBuilder()
+            .parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)))
+            .getDocumentElement();
+    }
+
+    @Test
+    public void testBinderIsCached()
+    {
+        XMLBinder<Primitives> binder = XMLBinder.of(Primitives.class);
+
+        assertSame(binder, XMLBinder.of(Primitives.class));
+        assertSame(Primitives.class, binder.getType());
+        assertEquals("primitives", binder.getName());
+    }
+
+    @Test
+    public void testPrimitivesRoundTrip() throws Exception
+    {
+        Primitives first = new Primitives();
+        first.flag = true;
+        first.tiny = Byte.MIN_VALUE;
+        first.small = Short.MAX_VALUE;
+        first.letter = 'ä';
+        first.number = Integer.MIN_VALUE;
+        first.big = Long.MAX_VALUE;
+        first.ratio = 1.5f;
+        first.amount = -0.125;
+        first.text = "a < b & \"c\"";
+        first.color = Color.GREEN;
+        first.ignoredTransient = 5;
+
+        Primitives second = new Primitives();
+        second.letter = ' ';
+
+        ArrayList<Primitives> read = XMLBinderTest.roundTrip(XMLBinder.of(Primitives.class), Arrays.asList(first, second));
+        Primitives copy = read.get(0);
+
+        assertEquals(2, read.size());
+        assertTrue(copy.flag);
+        assertEquals(Byte.MIN_VALUE, copy.tiny);
+        assertEquals(Short.MAX_VALUE, copy.small);
+        assertEquals('ä', copy.letter);
+        assertEquals(Integer.MIN_VALUE, copy.number);
+        assertEquals(Long.MAX_VALUE, copy.big);
+        assertEquals(1.5f, copy.ratio, 0);
+        assertEquals(-0.125, copy.amount, 0);
+        assertEquals("a < b & \"c\"", copy.text);
+        assertSame(Color.GREEN, copy.color);
+        assertEquals(0, copy.ignoredTransient);
+
+        copy = read.get(1);
+        assertFalse(copy.flag);
+        assertEquals(' ', copy.letter);
+        assertNull(copy.text);
+        assertNull(copy.color);
+    }
+
+    @Test
+    public void testWrappersRoundTrip() throws Exception
+    {
+        Wrappers first = new Wrappers();
+        first.flag = Boolean.FALSE;
+        first.tiny = (byte) 7;
+        first.small = (short) -300;
+        first.letter = 'x';
+        first.number = 42;
+        first.big = -1L;
+        first.ratio = 0.25f;
+        first.amount = 1e300;
+        first.text = "";
+        first.color = Color.RED;
+
+        Wrappers copy = XMLBinderTest.roundTrip(XMLBinder.of(Wrappers.class), Arrays.asList(first)).get(0);
+
+        assertEquals(Boolean.FALSE, copy.flag);
+        assertEquals(Byte.valueOf((byte) 7), copy.tiny);
+        assertEquals(Short.valueOf((short) -300), copy.small);
+        assertEquals(Character.valueOf('x'), copy.letter);
+        assertEquals(Integer.valueOf(42), copy.number);
+        assertEquals(Long.valueOf(-1L), copy.big);
+        assertEquals(Float.valueOf(0.25f), copy.ratio);
+        assertEquals(Double.valueOf(1e300), copy.amount);
+        assertEquals("", copy.text);
+        assertSame(Color.RED, copy.color);
+    }
+
+    @Test
+    public void testWrapperNulls() throws Exception
+    {
+        Wrappers empty = new Wrappers();
+        empty.text = null;
+
+        XMLWriter writer = new XMLWriter("objects");
+        Element element = XMLBinder.of(Wrappers.class).write(writer, writer.addChild("list"), empty);
+
+        assertNull(element.getFirstChild());
+
+        Wrappers copy = XMLBinderTest.roundTrip(XMLBinder.of(Wrappers.class), Arrays.asList(empty)).get(0);
+
+        assertNull(copy.flag);
+        assertNull(copy.tiny);
+        assertNull(copy.small);
+        assertNull(copy.letter);
+        assertNull(copy.number);
+        assertNull(copy.big);
+        assertNull(copy.ratio);
+        assertNull(copy.amount);
+        assertNull(copy.color);
+        // A missing element keeps the value of the constructor.
+        assertEquals("default", copy.text);
+    }
+
+    @Test
+    public void testTrimmedValues() throws Exception
+    {
+        Primitives copy = XMLBinder.of(Primitives.class).read(XMLBinderTest.parse("<primitives>"
+            + "<flag> true </flag><tiny> 1 </tiny><small> 2 </small><letter> x </letter>"
+            + "<number> 3 </number><big> 4 </big><ratio> 5.5 </ratio><amount> 6.5 </amount>"
+            + "<color> RED </color>"
+            + "</primitives>"));
+
+        assertTrue(copy.flag);
+        assertEquals(1, copy.tiny);
+        assertEquals(2, copy.small);
+        assertEquals('x', copy.letter);
+        assertEquals(3, copy.number);
+        assertEquals(4L, copy.big);
+        assertEquals(5.5f, copy.ratio, 0);
+        assertEquals(6.5, copy.amount, 0);
+        assertSame(Color.RED, copy.color);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCharacter() throws Exception
+    {
+        XMLBinder.of(Primitives.class).read(XMLBinderTest.parse("<primitives><letter> xy </letter></primitives>"));
+    }
+
+    @Test(expected = XMLNumberFormatException.class)
+    public void testByteOutOfRange() throws Exception
+    {
+        XMLBinder.of(Primitives.class).read(XMLBinderTest.parse("<primitives><tiny>128</tiny></primitives>"));
+    }
+
+    @Test
+    public void testMissingConstructor() throws Exception
+    {
+        XMLBinder<NoDefault> binder = XMLBinder.of(NoDefault.class);
+        XMLWriter writer = new XMLWriter("objects");
+        Element element = binder.write(writer, writer.addChild("list"), new NoDefault(3));
+
+        assertEquals("noDefault", element.getNodeName());
+        assertEquals("3", element.getTextContent());
+
+        try
+        {
+            binder.read(element);
+            fail("Missing exception");
+        }
+        catch (UnsupportedOperationException ex)
+        {
+            assertTrue(ex.getMessage().contains(NoDefault.class.getName()));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedType()
+    {
+        XMLBinder.of(Thread.class);
+    }
+}
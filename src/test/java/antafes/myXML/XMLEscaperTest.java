@@ -0,0 +1,91 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+
+package antafes.myXML;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ *
+ * @author Neithan
+ */
+public class XMLEscaperTest
+{
+    private static final String VALUE = "a&b<c>d\"e'f\t\n\r\u0001ä😀";
+
+    @Test
+    public void testEscapeText()
+    {
+        assertEquals("a&#x26;b&#x3C;c&#x3E;d\"e'f\t\n\r\u0001ä😀", XMLEscaper.escapeText(VALUE));
+    }
+
+    @Test
+    public void testEscapeAttribute()
+    {
+        assertEquals("a&#x26;b&#x3C;c&#x3E;d&#x22;e&#x27;f\t\n\r\u0001ä😀", XMLEscaper.escapeAttribute(VALUE));
+    }
+
+    @Test
+    public void testUnchangedValue()
+    {
+        String value = "plain \"text\" ä";
+
+        assertSame(value, XMLEscaper.escapeText(value));
+        assertSame(value, XMLEscaper.unescape(value));
+    }
+
+    @Test
+    public void testAppend() throws IOException
+    {
+        StringWriter writer = new StringWriter();
+        XMLEscaper.escapeAttribute(VALUE, writer);
+        assertEquals(XMLEscaper.escapeAttribute(VALUE), writer.toString());
+
+        StringBuilder builder = new StringBuilder();
+        XMLEscaper.unescape(writer.toString(), builder);
+        assertEquals(VALUE, builder.toString());
+    }
+
+    @Test
+    public void testRoundTrip()
+    {
+        assertEquals(VALUE, XMLEscaper.unescape(XMLEscaper.escapeAttribute(VALUE)));
+        assertEquals(VALUE, XMLEscaper.unescape(XMLEscaper.escapeText(VALUE)));
+    }
+
+    @Test
+    public void testEscapedReference()
+    {
+        String value = "&#x3C;";
+
+        assertEquals("&#x26;#x3C;", XMLEscaper.escapeText(value));
+        assertEquals(value, XMLEscaper.unescape(XMLEscaper.escapeText(value)));
+        assertEquals(value, XMLParser.parsePrepareXML(XMLWriter.prepareXML(value)));
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author Neithan
+ */
+public class XMLFileAppenderTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Write a journal like an append does before it changes the file.
+     *
+     * @param file   The file.
+     * @param offset The offset of the original end.
+     * @param tail   The original end.
+     * @param valid  Whether the checksum is correct.
+     *
+     * @throws IOException
+     */
+    private static void writeJournal(File file, long offset, byte[] tail, boolean valid) throws IOException
+    {
+        ByteBuffer data = ByteBuffer.allocate(12 + tail.length + 8);
+        data.putLong(offset);
+        data.putInt(tail.length);
+        data.put(tail);
+
+        CRC32 checksum = new CRC32();
+        checksum.update(data.array(), 0, data.position());
+        data.putLong(checksum.getValue() + (valid ? 0 : 1));
+
+        Files.write(new File(file.getPath() + XMLFileAppender.JOURNAL_SUFFIX).toPath(), data.array());
+    }
+
+    @Test
+    public void testAppendLikeWrite() throws IOException
+    {
+        File appended = this.folder.newFile("appended.xml");
+        File written = this.folder.newFile("written.xml");
+
+        XMLWriterTest.createList("1", "2").write(appended);
+        XMLWriter writer = XMLWriterTest.createList("3", "4");
+        writer.append(appended);
+        XMLWriterTest.createList("1", "2", "3", "4").write(written);
+
+        assertTrue(writer.getExceptionList().isEmpty());
+        assertArrayEquals(Files.readAllBytes(written.toPath()), Files.readAllBytes(appended.toPath()));
+    }
+
+    @Test
+    public void testAppendToMissingFile() throws IOException
+    {
+        File file = new File(this.folder.getRoot(), "new.xml");
+        File written = this.folder.newFile("written.xml");
+
+        XMLWriterTest.createList("1").append(file);
+        XMLWriterTest.createList("1").write(written);
+
+        assertArrayEquals(Files.readAllBytes(written.toPath()), Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void testRecover() throws IOException
+    {
+        File file = this.folder.newFile("list.xml");
+        XMLWriterTest.createList("1", "2").write(file);
+        byte[] original = Files.readAllBytes(file.toPath());
+        int offset = new String(original, StandardCharsets.UTF_8).lastIndexOf("</list>");
+
+        // Crash in the middle of an append: the journal has been written, the
+        // file ends with a partly written element.
+        XMLFileAppenderTest.writeJournal(file, offset, Arrays.copyOfRange(original, offset, original.length), true);
+        byte[] broken = Arrays.copyOf(original, offset + 8);
+        System.arraycopy("    <ite".getBytes(StandardCharsets.US_ASCII), 0, broken, offset, 8);
+        Files.write(file.toPath(), broken);
+
+        assertTrue(XMLWriter.recoverAppend(file));
+        assertArrayEquals(original, Files.readAllBytes(file.toPath()));
+        assertFalse(new File(file.getPath() + XMLFileAppender.JOURNAL_SUFFIX).exists());
+        assertFalse(XMLWriter.recoverAppend(file));
+    }
+
+    @Test
+    public void testRecoverOnAppend() throws IOException
+    {
+        File file = this.folder.newFile("list.xml");
+        File written = this.folder.newFile("written.xml");
+        XMLWriterTest.createList("1").write(file);
+        byte[] original = Files.readAllBytes(file.toPath());
+        int offset = new String(original, StandardCharsets.UTF_8).lastIndexOf("</list>");
+
+        XMLFileAppenderTest.writeJournal(file, offset, Arrays.copyOfRange(original, offset, original.length), true);
+        Files.write(file.toPath(), Arrays.copyOf(original, offset + 3));
+
+        XMLWriter writer = XMLWriterTest.createList("2");
+        writer.append(file);
+        XMLWriterTest.createList("1", "2").write(written);
+
+        assertTrue(writer.getExceptionList().isEmpty());
+        assertArrayEquals(Files.readAllBytes(written.toPath()), Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void testIncompleteJournalIsDropped() throws IOException
+    {
+        File file = this.folder.newFile("list.xml");
+        XMLWriterTest.createList("1").write(file);
+        byte[] original = Files.readAllBytes(file.toPath());
+
+        XMLFileAppenderTest.writeJournal(file, 3, new byte[] {'x'}, false);
+
+        assertFalse(XMLWriter.recoverAppend(file));
+        assertArrayEquals(original, Files.readAllBytes(file.toPath()));
+        assertFalse(new File(file.getPath() + XMLFileAppender.JOURNAL_SUFFIX).exists());
+    }
+
+    @Test
+    public void testConcurrentAppends() throws Exception
+    {
+        File file = this.folder.newFile("list.xml");
+        XMLWriterTest.createList().write(file);
+
+        XMLFileAppenderTest.appendConcurrently(file, 200);
+    }
+
+    @Test
+    public void testConcurrentAppendsToMissingFile() throws Exception
+    {
+        for (int round = 0; round < 50; round++)
+        {
+            XMLFileAppenderTest.appendConcurrently(new File(this.folder.getRoot(), "new/list" + round + ".xml"), 8);
+        }
+    }
+
+    @Test
+    public void testAppendToEmptyFile() throws IOException
+    {
+        File file = this.folder.newFile("empty.xml");
+        File written = this.folder.newFile("written.xml");
+
+        XMLWriter writer = XMLWriterTest.createList("1");
+        writer.append(file);
+        XMLWriterTest.createList("1").write(written);
+
+        assertTrue(writer.getExceptionList().isEmpty());
+        assertArrayEquals(Files.readAllBytes(written.toPath()), Files.readAllBytes(file.toPath()));
+    }
+
+    /**
+     * Append one item per writer from eight threads and check that the file
+     * holds all of them.
+     *
+     * @param file  The file.
+     * @param count The number of items.
+     *
+     * @throws Exception
+     */
+    private static void appendConcurrently(File file, int count) throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        ArrayList<Future<Boolean>> results = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+
+        try
+        {
+            for (int i = 0; i < count; i++)
+            {
+                String item = String.valueOf(i);
+
+                results.add(executor.submit(() -> {
+                    XMLWriter writer = XMLWriterTest.createList(item);
+                    start.await();
+                    writer.append(file);
+
+                    return writer.getExceptionList().isEmpty();
+                }));
+            }
+
+            start.countDown();
+
+            for (Future<Boolean> result : results)
+            {
+                assertTrue(result.get());
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        XMLParser parser = new XMLParser(XMLValidatorTest.stream(XMLValidatorTest.SCHEMA));
+
+        assertTrue(file.getName(), parser.parse(file));
+        assertEquals(file.getName(), count, parser.getRootElement().getElementsByTagName("item").getLength());
+    }
+
+    @Test
+    public void testCompressionIsRejected() throws IOException
+    {
+        File file = new File(this.folder.getRoot(), "list.xml.gz");
+        XMLWriter compressed = XMLWriterTest.createList("1");
+        compressed.setCompression(XMLCompression.GZIP);
+        compressed.append(file);
+
+        assertFalse(file.exists());
+        assertEquals(1, compressed.getExceptionList().size());
+
+        compressed.write(file);
+        byte[] original = Files.readAllBytes(file.toPath());
+        XMLWriter writer = XMLWriterTest.createList("2");
+        writer.append(file);
+
+        assertEquals(1, writer.getExceptionList().size());
+        assertArrayEquals(original, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void testOtherEncodingIsRejected() throws IOException
+    {
+        File file = this.folder.newFile("list.xml");
+        byte[] original = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n<list>\n</list>\n".getBytes(StandardCharsets.ISO_8859_1);
+        Files.write(file.toPath(), original);
+
+        XMLWriter writer = XMLWriterTest.createList("ä");
+        writer.append(file);
+
+        assertEquals(1, writer.getExceptionList().size());
+        assertArrayEquals(original, Files.readAllBytes(file.toPath()));
+
+        Files.write(file.toPath(), "<?xml version='1.0' encoding='utf-8'?><list/>".getBytes(StandardCharsets.UTF_8));
+        writer.append(file);
+
+        assertEquals(1, writer.getExceptionList().size());
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+
+package antafes.myXML;
+
+import java.util.Random;
+import java.util.function.ObjIntConsumer;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ *
+ * @author Neithan
+ */
+public class XMLNumberParserTest
+{
+    /**
+     * Check that the value parses to exactly the same double as with
+     * Double.parseDouble, including the sign of zero.
+     *
+     * @param value The value.
+     */
+    private static void assertSameDouble(String value)
+    {
+        double expected = Double.parseDouble(value.trim());
+        double actual = XMLNumberParser.parseDouble(value, 0);
+
+        assertEquals(value, Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual));
+    }
+
+    /**
+     * Check that parsing the value fails with the given index.
+     *
+     * @param value  The value.
+     * @param parser The parse method to call.
+     */
+    private static void assertInvalid(String value, ObjIntConsumer<String> parser)
+    {
+        try
+        {
+            parser.accept(value, 7);
+            fail("Missing exception for \"" + value + "\"");
+        }
+        catch (XMLNumberFormatException e)
+        {
+            assertEquals(7, e.getIndex());
+        }
+    }
+
+    @Test
+    public void testDoubleFastPath()
+    {
+        String[] values = {
+            "0", "1", "-1", "+1", "12.5", "-0.125", ".5", "5.", "007", "0.1", "0.2", "0.3",
+            "123456789012345", "1234567890.12345", "0.000000000000000000001", "9.99999999999999",
+            "1e22", "1e-22", "123456789012345e7", "1.5E+3", "-2.5e-3", " \t42.0\r\n",
+        };
+
+        for (String value : values)
+        {
+            XMLNumberParserTest.assertSameDouble(value);
+        }
+    }
+
+    @Test
+    public void testDoubleSlowPath()
+    {
+        String[] values = {
+            // More than 15 significant digits.
+            "1234567890123456", "0.1234567890123456789", "9007199254740993",
+            "123456789012345678901234567890", "1.00000000000000011102230246251565404236316680908203125",
+            // Exponents beyond 22.
+            "1e23", "1e-23", "123e21", "1e308", "1.7976931348623157e308", "1e309", "4.9e-324",
+            "1e-400", "0e99999", "1e99999",
+            // Leading zeros in the fraction push the exponent below -22.
+            "0.00000000000000000000001234",
+        };
+
+        for (String value : values)
+        {
+            XMLNumberParserTest.assertSameDouble(value);
+        }
+    }
+
+    @Test
+    public void testNegativeZero()
+    {
+        for (String value : new String[] {"-0", "-0.0", "-0e5", "-.0", "-0e-400", "-0000.000"})
+        {
+            XMLNumberParserTest.assertSameDouble(value);
+            assertEquals(value, Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits(XMLNumberParser.parseDouble(value, 0)));
+        }
+
+        XMLNumberParserTest.assertSameDouble("0");
+        XMLNumberParserTest.assertSameDouble("+0.0");
+    }
+
+    @Test
+    public void testDoubleSpecialValues()
+    {
+        for (String value : new String[] {"NaN", "Infinity", "-Infinity"})
+        {
+            XMLNumberParserTest.assertSameDouble(value);
+        }
+    }
+
+    @Test
+    public void testRandomDoubles()
+    {
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100000; i++)
+        {
+            long mantissa = random.nextLong() % 10000000000000000L;
+            int exponent = random.nextInt(60) - 30;
+
+            XMLNumberParserTest.assertSameDouble(mantissa + "e" + exponent);
+            XMLNumberParserTest.assertSameDouble(Double.toString(Double.longBitsToDouble(random.nextLong())));
+        }
+    }
+
+    @Test
+    public void testInvalidDoubles()
+    {
+        for (String value : new String[] {"", " ", "-", ".", "e5", "1e", "1e+", "1.2.3", "1,5", "abc", "1 2"})
+        {
+            XMLNumberParserTest.assertInvalid(value, XMLNumberParser::parseDouble);
+        }
+    }
+
+    @Test
+    public void testLongs()
+    {
+        String[] values = {"0", "-0", "+7", " 42 ", "\n-42\t", "9223372036854775807", "-9223372036854775808", "000123"};
+
+        for (String value : values)
+        {
+            assertEquals(value, Long.parseLong(value.trim()), XMLNumberParser.parseLong(value, 0));
+        }
+
+        for (String value : new String[] {"", "-", "+", "9223372036854775808", "-9223372036854775809", "99999999999999999999", "1.0", "1e3", "0x10", "1 2"})
+        {
+            XMLNumberParserTest.assertInvalid(value, XMLNumberParser::parseLong);
+        }
+    }
+
+    @Test
+    public void testInts()
+    {
+        assertEquals(Integer.MAX_VALUE, XMLNumberParser.parseInt("2147483647", 0));
+        assertEquals(Integer.MIN_VALUE, XMLNumberParser.parseInt(" -2147483648 ", 0));
+
+        for (String value : new String[] {"2147483648", "-2147483649", "a"})
+        {
+            XMLNumberParserTest.assertInvalid(value, XMLNumberParser::parseInt);
+        }
+    }
+}
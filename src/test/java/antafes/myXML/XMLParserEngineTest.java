@@ -0,0 +1,263 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+
+package antafes.myXML;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+import javax.xml.XMLConstants;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.SchemaFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xml.sax.SAXException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author Neithan
+ */
+public class XMLParserEngineTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Write the files of a batch: valid lists, one list with an item which is
+     * no number, one file which is not well-formed and one missing file.
+     *
+     * @param folder The folder to write to.
+     * @param count  The number of valid lists.
+     *
+     * @return The paths in order.
+     *
+     * @throws IOException
+     */
+    static ArrayList<Path> writeBatch(TemporaryFolder folder, int count) throws IOException
+    {
+        ArrayList<Path> paths = new ArrayList<>();
+
+        for (int i = 0; i < count; i++)
+        {
+            paths.add(XMLParserEngineTest.write(folder, "list" + i + ".xml", "<list><item>" + i + "</item></list>"));
+        }
+
+        paths.add(XMLParserEngineTest.write(folder, "invalid.xml", "<list><item>a</item></list>"));
+        paths.add(XMLParserEngineTest.write(folder, "broken.xml", "<list><item>"));
+        paths.add(folder.getRoot().toPath().resolve("missing.xml"));
+
+        return paths;
+    }
+
+    /**
+     * Write a file into the temporary folder.
+     *
+     * @param folder  The folder to write to.
+     * @param name    The file name.
+     * @param content The content.
+     *
+     * @return The path of the file.
+     *
+     * @throws IOException
+     */
+    static Path write(TemporaryFolder folder, String name, String content) throws IOException
+    {
+        return Files.write(folder.getRoot().toPath().resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testParseStream() throws IOException
+    {
+        XMLParserEngine engine = new XMLParserEngine();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes))
+        {
+            gzip.write("<list><item>2</item></list>".getBytes(StandardCharsets.UTF_8));
+        }
+
+        XMLParseResult plain = engine.parse(XMLValidatorTest.stream("<list><item>1</item></list>"));
+        XMLParseResult compressed = engine.parse(new ByteArrayInputStream(bytes.toByteArray()));
+        XMLParseResult missing = engine.parse((InputStream) null);
+
+        assertTrue(plain.isSuccessful());
+        assertEquals("list", plain.getRootElement().getTagName());
+        assertEquals("1", plain.getRootElement().getTextContent());
+        assertTrue(plain.getExceptionList().isEmpty());
+        assertEquals("2", compressed.getRootElement().getTextContent());
+        assertFalse(missing.isSuccessful());
+        assertNull(missing.getRootElement());
+        assertTrue(missing.getExceptionList().isEmpty());
+    }
+
+    @Test
+    public void testParseFiles() throws IOException
+    {
+        XMLParserEngine engine = new XMLParserEngine();
+        Path path = XMLParserEngineTest.write(this.folder, "list.xml", "<list><item>1</item></list>");
+        Path missing = this.folder.getRoot().toPath().resolve("missing.xml");
+
+        assertEquals("1", engine.parse(path).getRootElement().getTextContent());
+        assertEquals("1", engine.parse(path.toFile()).getRootElement().getTextContent());
+        assertEquals("1", engine.parse(path.toString()).getRootElement().getTextContent());
+        assertTrue(engine.parse(missing).getLastException() instanceof IOException);
+    }
+
+    @Test
+    public void testBuilderIsResetAfterFailure()
+    {
+        XMLParserEngine engine = new XMLParserEngine();
+
+        XMLParseResult broken = engine.parse(XMLValidatorTest.stream("<list><item>"));
+        XMLParseResult valid = engine.parse(XMLValidatorTest.stream("<list><item>1</item></list>"));
+
+        assertFalse(broken.isSuccessful());
+        assertTrue(broken.getLastException() instanceof SAXException);
+        assertTrue(valid.isSuccessful());
+        assertTrue(valid.getExceptionList().isEmpty());
+        assertNotSame(broken.getExceptionList(), valid.getExceptionList());
+    }
+
+    @Test
+    public void testSchema() throws SAXException
+    {
+        XMLParserEngine engine = new XMLParserEngine(SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI)
+            .newSchema(new StreamSource(XMLValidatorTest.stream(XMLValidatorTest.SCHEMA))));
+
+        XMLParseResult valid = engine.parse(XMLValidatorTest.stream("<list><item> 1 </item></list>"));
+        XMLParseResult invalid = engine.parse(XMLValidatorTest.stream("<list><item>a</item></list>"));
+
+        assertTrue(valid.isSuccessful());
+        // The text is kept as written, like the XMLParser does.
+        assertEquals(" 1 ", valid.getRootElement().getTextContent());
+        assertFalse(invalid.isSuccessful());
+        assertTrue(invalid.getLastException() instanceof SAXException);
+        assertTrue(engine.parse(XMLValidatorTest.stream("<list><item>2</item></list>")).isSuccessful());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValidatorWithoutSchema()
+    {
+        new XMLParserEngine(new XMLValidator((InputStream) null));
+    }
+
+    @Test
+    public void testSharedBetweenThreads() throws Exception
+    {
+        XMLParserEngine engine = new XMLParserEngine(new XMLValidator(XMLValidatorTest.stream(XMLValidatorTest.SCHEMA)));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        ArrayList<Future<Boolean>> results = new ArrayList<>();
+
+        try
+        {
+            for (int i = 0; i < 400; i++)
+            {
+                int number = i;
+
+                results.add(executor.submit(() -> {
+                    boolean valid = number % 3 != 0;
+                    String item = valid ? String.valueOf(number) : "x" + number;
+                    XMLParseResult result = engine.parse(XMLValidatorTest.stream("<list><item>" + item + "</item></list>"));
+
+                    return valid
+                        ? result.isSuccessful() && item.equals(result.getRootElement().getTextContent())
+                        : !result.isSuccessful() && result.getExceptionList().size() == 1
+                            && result.getLastException().getMessage().contains(item);
+                }));
+            }
+
+            for (Future<Boolean> result : results)
+            {
+                assertTrue(result.get());
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testParseAll() throws IOException
+    {
+        ArrayList<Path> paths = XMLParserEngineTest.writeBatch(this.folder, 20);
+        LinkedHashMap<Path, XMLParseResult> results = new XMLParserEngine().parseAll(paths, 4);
+
+        assertEquals(paths, new ArrayList<>(results.keySet()));
+
+        for (int i = 0; i < 20; i++)
+        {
+            XMLParseResult result = results.get(paths.get(i));
+            assertTrue(result.isSuccessful());
+            assertEquals(String.valueOf(i), result.getDocument().getDocumentElement().getTextContent());
+        }
+
+        assertTrue(results.get(paths.get(20)).isSuccessful());
+        assertFalse(results.get(paths.get(21)).isSuccessful());
+        assertNull(results.get(paths.get(21)).getDocument());
+        assertTrue(results.get(paths.get(22)).getLastException() instanceof IOException);
+    }
+
+    @Test
+    public void testParseAllValidating() throws IOException
+    {
+        ArrayList<Path> paths = XMLParserEngineTest.writeBatch(this.folder, 20);
+        XMLValidator validator = new XMLValidator(XMLValidatorTest.stream(XMLValidatorTest.SCHEMA));
+        LinkedHashMap<Path, XMLParseResult> results = new XMLParserEngine(validator).parseAll(paths, 4);
+
+        for (int i = 0; i < 20; i++)
+        {
+            assertTrue(results.get(paths.get(i)).isSuccessful());
+        }
+
+        assertFalse(results.get(paths.get(20)).isSuccessful());
+        assertNotNull(results.get(paths.get(20)).getLastException());
+        assertFalse(results.get(paths.get(21)).isSuccessful());
+        assertFalse(results.get(paths.get(22)).isSuccessful());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidParallelism()
+    {
+        new XMLParserEngine().parseAll(new ArrayList<>(), 0);
+    }
+}
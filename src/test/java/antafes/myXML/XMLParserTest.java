@@ -0,0 +1,349 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.zip.GZIPOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ *
+ * @author Neithan
+ */
+public class XMLParserTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Write a list with the given number of items.
+     *
+     * @param name  The file name.
+     * @param items The number of items.
+     *
+     * @return The file.
+     *
+     * @throws IOException
+     */
+    private File writeList(String name, int items) throws IOException
+    {
+        File file = this.folder.newFile(name);
+
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))
+        {
+            writer.write("<list>\n");
+
+            for (int i = 0; i < items; i++)
+            {
+                writer.write("<item>" + i + "</item>\n");
+            }
+
+            writer.write("</list>\n");
+        }
+
+        return file;
+    }
+
+    @Test
+    public void testParseSmallFileWithoutMapping() throws IOException
+    {
+        File file = this.writeList("small.xml", 100);
+        XMLParser parser = new XMLParser(XMLValidatorTest.stream(XMLValidatorTest.SCHEMA));
+
+        assertTrue(parser.parse(file));
+        assertEquals(100, parser.getRootElement().getElementsByTagName("item").getLength());
+
+        Path maps = Paths.get("/proc/self/maps");
+        assumeTrue(Files.isReadable(maps));
+        String mapped = new String(Files.readAllBytes(maps), StandardCharsets.UTF_8);
+        assertFalse(mapped.contains(file.getCanonicalPath()));
+    }
+
+    @Test
+    public void testParseMappedFile() throws IOException
+    {
+        File file = this.writeList("large.xml", 500000);
+        XMLParser parser = new XMLParser(XMLValidatorTest.stream(XMLValidatorTest.SCHEMA));
+
+        assertTrue(file.length() >= 8 << 20);
+        assertTrue(parser.parse(file));
+        assertEquals(500000, parser.getRootElement().getElementsByTagName("item").getLength());
+    }
+
+    @Test
+    public void testParseInvalidFile() throws IOException
+    {
+        File file = this.folder.newFile("invalid.xml");
+        Files.write(file.toPath(), "<list><item>a</item></list>".getBytes(StandardCharsets.UTF_8));
+        XMLParser parser = new XMLParser(XMLValidatorTest.stream(XMLValidatorTest.SCHEMA));
+
+        assertFalse(parser.parse(file));
+        assertFalse(parser.getExceptionList().isEmpty() && parser.getValidator().getExceptionList().isEmpty());
+    }
+
+    /**
+     * Create a parser validating against the test schema.
+     *
+     * @param singlePass True to validate while parsing.
+     *
+     * @return The parser.
+     */
+    private static XMLParser createValidatingParser(boolean singlePass)
+    {
+        XMLParser parser = new XMLParser(XMLValidatorTest.stream(XMLValidatorTest.SCHEMA));
+        parser.setSinglePassValidation(singlePass);
+
+        return parser;
+    }
+
+    /**
+     * Compress the given content with gzip.
+     *
+     * @param content The content.
+     *
+     * @return The compressed bytes.
+     *
+     * @throws IOException
+     */
+    private static byte[] gzip(String content) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (GZIPOutputStream stream = new GZIPOutputStream(bytes))
+        {
+            stream.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void testSinglePassValidation()
+    {
+        XMLParser parser = XMLParserTest.createValidatingParser(true);
+
+        assertTrue(parser.isSinglePassValidation());
+        assertTrue(parser.parse(XMLValidatorTest.stream("<list><item>1</item><item>2</item></list>")));
+        assertEquals(2, parser.getRootElement().getElementsByTagName("item").getLength());
+
+        assertFalse(parser.parse(XMLValidatorTest.stream("<list><item>a</item></list>")));
+        assertEquals(1, parser.getValidator().getExceptionList().size());
+        assertTrue(parser.getExceptionList().isEmpty());
+
+        assertFalse(parser.parse(XMLValidatorTest.stream("<list><item>")));
+        assertEquals(2, parser.getValidator().getExceptionList().size());
+    }
+
+    @Test
+    public void testSinglePassMatchesTwoPasses() throws IOException
+    {
+        String[] inputs = {
+            "<list/>",
+            "<list><item>1</item></list>",
+            "<list>\n  <item> 2 </item>\n</list>",
+            "<list><item>a</item></list>",
+            "<list><other/></list>",
+            "<other/>",
+            "<list><item>",
+            "",
+        };
+
+        for (String input : inputs)
+        {
+            XMLParser singlePass = XMLParserTest.createValidatingParser(true);
+            XMLParser twoPasses = XMLParserTest.createValidatingParser(false);
+            boolean expected = twoPasses.parse(XMLValidatorTest.stream(input));
+
+            assertEquals(input, expected, singlePass.parse(XMLValidatorTest.stream(input)));
+            assertEquals(input, expected, singlePass.parse(new ByteArrayInputStream(XMLParserTest.gzip(input))));
+
+            if (expected)
+            {
+                Element root = singlePass.getRootElement();
+                Element expectedRoot = twoPasses.getRootElement();
+
+                assertEquals(input, expectedRoot.getChildNodes().getLength(), root.getChildNodes().getLength());
+
+                for (int i = 0; i < root.getChildNodes().getLength(); i++)
+                {
+                    assertEquals(input, expectedRoot.getChildNodes().item(i).getNodeName(), root.getChildNodes().item(i).getNodeName());
+                    assertEquals(input, expectedRoot.getChildNodes().item(i).getTextContent(), root.getChildNodes().item(i).getTextContent());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSinglePassValidationOfFiles() throws IOException
+    {
+        File small = this.writeList("small.xml", 100);
+        File large = this.writeList("large.xml", 500000);
+        File invalid = this.folder.newFile("invalid.xml");
+        Files.write(invalid.toPath(), "<list><item>a</item></list>".getBytes(StandardCharsets.UTF_8));
+        XMLParser parser = XMLParserTest.createValidatingParser(true);
+        parser.setTagIndex(true);
+
+        assertTrue(parser.parse(small));
+        assertEquals(100, parser.getRootElement().getElementsByTagName("item").getLength());
+        assertEquals("0", XMLParser.getTagValue("item", parser.getRootElement()));
+        assertTrue(parser.parse(large));
+        assertEquals(500000, parser.getRootElement().getElementsByTagName("item").getLength());
+        assertEquals(0, XMLParser.getTagValueInt("item", parser.getRootElement()));
+        assertFalse(parser.parse(invalid));
+        assertEquals(1, parser.getValidator().getExceptionList().size());
+    }
+
+    @Test
+    public void testSinglePassValidationWithoutSchema()
+    {
+        XMLParser parser = new XMLParser((InputStream) null);
+        parser.setSinglePassValidation(true);
+
+        assertFalse(parser.parse(XMLValidatorTest.stream("<list/>")));
+        assertFalse(parser.getValidator().getExceptionList().isEmpty());
+    }
+
+    /**
+     * Parse the given XML with the tag index enabled.
+     *
+     * @param xml The XML.
+     *
+     * @return The parser.
+     */
+    private static XMLParser parseIndexed(String xml)
+    {
+        XMLParser parser = new XMLParser();
+        parser.setTagIndex(true);
+
+        assertTrue(parser.parse(XMLValidatorTest.stream(xml)));
+
+        return parser;
+    }
+
+    @Test
+    public void testTagIndexLookups()
+    {
+        XMLParser parser = XMLParserTest.parseIndexed("<root><a><b>1</b></a><c><b>2</b></c></root>");
+        Element root = parser.getRootElement();
+        Element c = XMLParser.getTagElement("c", root);
+
+        assertEquals("1", XMLParser.getTagValue("b", root));
+        assertEquals("2", XMLParser.getTagValue("b", c));
+        assertNull(XMLParser.getTagElement("a", c));
+        assertFalse(XMLParser.tagExists("d", root));
+    }
+
+    @Test
+    public void testTagIndexAfterAppend()
+    {
+        XMLParser parser = XMLParserTest.parseIndexed("<root><a/></root>");
+        Document document = parser.getDocument();
+        Element root = parser.getRootElement();
+
+        assertFalse(XMLParser.tagExists("b", root));
+
+        Element b = document.createElement("b");
+        XMLParser.getTagElement("a", root).appendChild(b);
+
+        assertSame(b, XMLParser.getTagElement("b", root));
+    }
+
+    @Test
+    public void testTagIndexAfterRemove()
+    {
+        XMLParser parser = XMLParserTest.parseIndexed("<root><a><b>1</b></a><b>2</b></root>");
+        Element root = parser.getRootElement();
+        Element a = XMLParser.getTagElement("a", root);
+
+        assertEquals("1", XMLParser.getTagValue("b", root));
+
+        root.removeChild(a);
+
+        assertEquals("2", XMLParser.getTagValue("b", root));
+    }
+
+    @Test
+    public void testTagIndexAfterRename()
+    {
+        XMLParser parser = XMLParserTest.parseIndexed("<root><a>1</a><a>2</a></root>");
+        Document document = parser.getDocument();
+        Element root = parser.getRootElement();
+
+        document.renameNode(XMLParser.getTagElement("a", root), null, "b");
+
+        assertEquals("2", XMLParser.getTagValue("a", root));
+        assertEquals("1", XMLParser.getTagValue("b", root));
+    }
+
+    @Test
+    public void testTagIndexAfterRenameNewNameFirst()
+    {
+        XMLParser parser = XMLParserTest.parseIndexed("<root><a>1</a><c><a>2</a></c></root>");
+        Document document = parser.getDocument();
+        Element root = parser.getRootElement();
+
+        document.renameNode(XMLParser.getTagElement("a", root), null, "b");
+
+        assertTrue(XMLParser.tagExists("b", root));
+        assertEquals("1", XMLParser.getTagValue("b", root));
+        assertEquals("2", XMLParser.getTagValue("a", root));
+    }
+
+    @Test
+    public void testParseAllValidating() throws IOException
+    {
+        ArrayList<Path> paths = XMLParserEngineTest.writeBatch(this.folder, 3);
+        XMLValidator validator = new XMLValidator(XMLValidatorTest.stream(XMLValidatorTest.SCHEMA));
+
+        LinkedHashMap<Path, XMLParseResult> plain = XMLParser.parseAll(paths, 2);
+        LinkedHashMap<Path, XMLParseResult> validated = XMLParser.parseAll(paths, 2, validator);
+
+        assertTrue(plain.get(paths.get(3)).isSuccessful());
+        assertFalse(validated.get(paths.get(3)).isSuccessful());
+        assertTrue(validated.get(paths.get(0)).isSuccessful());
+        assertFalse(validated.get(paths.get(4)).isSuccessful());
+    }
+}
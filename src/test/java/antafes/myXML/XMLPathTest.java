@@ -0,0 +1,181 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+
+package antafes.myXML;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ *
+ * @author Neithan
+ */
+public class XMLPathTest
+{
+    private static final String XML = "<order id=\"7\">"
+        + "<items>"
+        + "<item id=\"1\">first<sub>inner</sub> item</item>"
+        + "<item id=\"2\"><![CDATA[second]]></item>"
+        + "<item><sub>only child</sub></item>"
+        + "</items>"
+        + "<count>3</count>"
+        + "<price>2.5</price>"
+        + "<paid>true</paid>"
+        + "</order>";
+
+    /**
+     * Parse the test document.
+     *
+     * @return The root element.
+     *
+     * @throws Exception
+     */
+    private static Element parse() throws Exception
+    {
+        return DocumentBuilderFactory.newInstance()
+            .newDocumentBuilder()
+            .parse(new ByteArrayInputStream(XML.getBytes(StandardCharsets.UTF_8)))
+            .getDocumentElement();
+    }
+
+    @Test
+    public void testElements() throws Exception
+    {
+        Element root = XMLPathTest.parse();
+
+        assertEquals(3, XMLPath.compile("items/item").getElements(root).size());
+        assertEquals(2, XMLPath.compile("items/*/sub").getElements(root).size());
+        assertEquals("first", XMLPath.compile("items/item/sub").getElement(root).getPreviousSibling().getNodeValue());
+        assertTrue(XMLPath.compile("./count").exists(root));
+        assertFalse(XMLPath.compile("items/missing").exists(root));
+    }
+
+    @Test
+    public void testAttributes() throws Exception
+    {
+        Element root = XMLPathTest.parse();
+
+        assertEquals("7", XMLPath.compile("@id").getString(root));
+        assertEquals(Arrays.asList("1", "2"), XMLPath.compile("items/item/@id").getStrings(root));
+        assertEquals(2, XMLPath.compile("items/item/@id").getElements(root).size());
+        assertNull(XMLPath.compile("items/item/@missing").getString(root));
+    }
+
+    @Test
+    public void testText() throws Exception
+    {
+        Element root = XMLPathTest.parse();
+
+        assertEquals("firstinner item", XMLPath.compile("items/item").getString(root));
+        assertEquals("first item", XMLPath.compile("items/item/text()").getString(root));
+        assertEquals(Arrays.asList("first item", "second"), XMLPath.compile("items/item/text()").getStrings(root));
+        assertEquals(2, XMLPath.compile("items/item/text()").getElements(root).size());
+        assertNull(XMLPath.compile("text()").getString(root));
+        assertEquals("3", XMLPath.compile("count/text()").getString(root));
+    }
+
+    @Test
+    public void testNumbers() throws Exception
+    {
+        Element root = XMLPathTest.parse();
+
+        assertEquals(3, XMLPath.compile("count").getInt(root));
+        assertEquals(3L, XMLPath.compile("count/text()").getLong(root));
+        assertEquals(2.5, XMLPath.compile("price").getDouble(root), 0);
+        assertTrue(XMLPath.compile("paid").getBoolean(root));
+        assertEquals(7, XMLPath.compile("@id").getInt(root));
+    }
+
+    @Test
+    public void testMissingNumbers() throws Exception
+    {
+        Element root = XMLPathTest.parse();
+
+        for (String path : new String[] {"missing", "count/@missing", "items/text()"})
+        {
+            XMLPath compiled = XMLPath.compile(path);
+
+            try
+            {
+                compiled.getInt(root);
+                fail("Missing exception for " + path);
+            }
+            catch (IllegalArgumentException e)
+            {
+                assertFalse(e instanceof NumberFormatException);
+                assertTrue(e.getMessage().contains(path));
+            }
+
+            try
+            {
+                compiled.getDouble(root);
+                fail("Missing exception for " + path);
+            }
+            catch (IllegalArgumentException e)
+            {
+                assertFalse(e instanceof NumberFormatException);
+                assertTrue(e.getMessage().contains(path));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingLong() throws Exception
+    {
+        XMLPath.compile("missing").getLong(XMLPathTest.parse());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingBoolean() throws Exception
+    {
+        XMLPath.compile("missing").getBoolean(XMLPathTest.parse());
+    }
+
+    @Test
+    public void testInvalidPaths()
+    {
+        for (String path : new String[] {"", "/order", "items//item", "@id/item", "text()/item", "items/@"})
+        {
+            try
+            {
+                XMLPath.compile(path);
+                fail("Missing exception for " + path);
+            }
+            catch (IllegalArgumentException e)
+            {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+
+package antafes.myXML;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ *
+ * @author Neithan
+ */
+public class XMLRecordIteratorTest
+{
+    private static final String XML = "<?xml version=\"1.0\"?>"
+        + "<export><header><record id=\"h\">in header</record></header>"
+        + "<records>"
+        + "<record id=\"1\"><name>first</name><value>1</value></record>"
+        + "<!-- between -->"
+        + "<record id=\"2\">mixed <b>bold</b> &amp; <![CDATA[<raw>]]><?pi data?><!--c--></record>"
+        + "<record id=\"3\"><record id=\"inner\"/></record>"
+        + "</records></export>";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * An input stream remembering whether it has been closed.
+     */
+    private static final class TrackingStream extends ByteArrayInputStream
+    {
+        private boolean closed;
+
+        /**
+         * Create a new stream over the given content.
+         *
+         * @param content The content.
+         */
+        TrackingStream(String content)
+        {
+            super(content.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            this.closed = true;
+            super.close();
+        }
+    }
+
+    /**
+     * Read all records with the given tag from the content.
+     *
+     * @param content The content.
+     * @param tag     The tag name of the records.
+     *
+     * @return The records.
+     */
+    private static ArrayList<Element> readAll(InputStream content, String tag)
+    {
+        ArrayList<Element> records = new ArrayList<>();
+
+        try (XMLRecordIterator iterator = new XMLParser().stream(content, tag))
+        {
+            iterator.forEachRemaining(records::add);
+        }
+
+        return records;
+    }
+
+    @Test
+    public void testIterateRecords()
+    {
+        ArrayList<Element> records = XMLRecordIteratorTest.readAll(XMLValidatorTest.stream(XML), "record");
+        List<String> ids = records.stream().map(record -> record.getAttribute("id")).collect(Collectors.toList());
+
+        // A nested record is part of its outer record and not reported on its own.
+        assertEquals(Arrays.asList("h", "1", "2", "3"), ids);
+        assertEquals("first", XMLParser.getTagValue("name", records.get(1)));
+        assertEquals(1, XMLParser.getTagValueInt("value", records.get(1)));
+        assertEquals("inner", ((Element) records.get(3).getFirstChild()).getAttribute("id"));
+    }
+
+    @Test
+    public void testRecordsHaveOwnDocuments()
+    {
+        ArrayList<Element> records = XMLRecordIteratorTest.readAll(XMLValidatorTest.stream(XML), "record");
+
+        for (Element record : records)
+        {
+            assertSame(record, record.getOwnerDocument().getDocumentElement());
+        }
+
+        assertNotSame(records.get(0).getOwnerDocument(), records.get(1).getOwnerDocument());
+    }
+
+    @Test
+    public void testMixedContent()
+    {
+        Element record = XMLRecordIteratorTest.readAll(XMLValidatorTest.stream(XML), "record").get(2);
+        StringBuilder types = new StringBuilder();
+
+        for (Node child = record.getFirstChild(); child != null; child = child.getNextSibling())
+        {
+            types.append(child.getNodeType()).append(' ');
+        }
+
+        assertEquals("mixed bold & <raw>", record.getTextContent());
+        assertEquals("bold", XMLParser.getTagValue("b", record));
+        assertTrue(types.toString(), types.toString().contains(Node.PROCESSING_INSTRUCTION_NODE + " " + Node.COMMENT_NODE));
+    }
+
+    @Test
+    public void testNamespaces()
+    {
+        String xml = "<list xmlns=\"urn:default\" xmlns:p=\"urn:p\">"
+            + "<p:item p:code=\"a\" plain=\"b\"><child/></p:item>"
+            + "<item/>"
+            + "</list>";
+
+        ArrayList<Element> prefixed = XMLRecordIteratorTest.readAll(XMLValidatorTest.stream(xml), "p:item");
+        ArrayList<Element> local = XMLRecordIteratorTest.readAll(XMLValidatorTest.stream(xml), "item");
+
+        assertEquals(1, prefixed.size());
+        assertEquals(2, local.size());
+        assertEquals("urn:p", prefixed.get(0).getNamespaceURI());
+        assertEquals("a", prefixed.get(0).getAttributeNS("urn:p", "code"));
+        assertEquals("b", prefixed.get(0).getAttribute("plain"));
+        assertEquals("urn:default", ((Element) prefixed.get(0).getFirstChild()).getNamespaceURI());
+        assertEquals("urn:default", local.get(1).getNamespaceURI());
+    }
+
+    @Test
+    public void testIteratorContract()
+    {
+        XMLRecordIterator iterator = new XMLParser().stream(XMLValidatorTest.stream("<a><r>1</r><r>2</r></a>"), "r");
+
+        assertTrue(iterator.hasNext());
+        assertTrue(iterator.hasNext());
+        assertEquals("1", iterator.next().getTextContent());
+        assertEquals("2", iterator.next().getTextContent());
+        assertFalse(iterator.hasNext());
+
+        try
+        {
+            iterator.next();
+            fail("Missing exception");
+        }
+        catch (NoSuchElementException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void testStream()
+    {
+        TrackingStream input = new TrackingStream("<a><r>1</r><r>2</r><r>3</r></a>");
+        XMLParser parser = new XMLParser();
+        List<String> values;
+
+        try (Stream<Element> records = parser.stream(input, "r").stream())
+        {
+            values = records.map(Element::getTextContent).filter(value -> !value.equals("2")).collect(Collectors.toList());
+        }
+
+        assertEquals(Arrays.asList("1", "3"), values);
+        assertTrue(input.closed);
+        assertTrue(parser.getExceptionList().isEmpty());
+    }
+
+    @Test
+    public void testCloseEarly()
+    {
+        TrackingStream input = new TrackingStream("<a><r>1</r><r>2</r></a>");
+        XMLRecordIterator iterator = new XMLParser().stream(input, "r");
+
+        assertEquals("1", iterator.next().getTextContent());
+        iterator.close();
+
+        assertTrue(input.closed);
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testEndOfStreamClosesInput()
+    {
+        TrackingStream input = new TrackingStream("<a><r>1</r></a>");
+        XMLRecordIterator iterator = new XMLParser().stream(input, "r");
+
+        iterator.next();
+
+        assertFalse(iterator.hasNext());
+        assertTrue(input.closed);
+    }
+
+    @Test
+    public void testMalformedInput()
+    {
+        TrackingStream input = new TrackingStream("<a><r>1</r><r>2</a>");
+        XMLParser parser = new XMLParser();
+        ArrayList<String> values = new ArrayList<>();
+
+        parser.stream(input, "r").forEachRemaining(record -> values.add(record.getTextContent()));
+
+        assertEquals(Arrays.asList("1"), values);
+        assertEquals(1, parser.getExceptionList().size());
+        assertTrue(input.closed);
+    }
+
+    @Test
+    public void testMissingFile()
+    {
+        XMLParser parser = new XMLParser();
+        XMLRecordIterator iterator = parser.stream(new File(this.folder.getRoot(), "missing.xml"), "r");
+
+        assertFalse(iterator.hasNext());
+        assertEquals(1, parser.getExceptionList().size());
+    }
+
+    @Test
+    public void testFilesAndCompression() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes))
+        {
+            gzip.write(XML.getBytes(StandardCharsets.UTF_8));
+        }
+
+        File plain = this.folder.newFile("plain.xml");
+        File compressed = this.folder.newFile("compressed.xml.gz");
+        Files.write(plain.toPath(), XML.getBytes(StandardCharsets.UTF_8));
+        Files.write(compressed.toPath(), bytes.toByteArray());
+
+        for (File file : new File[] {plain, compressed})
+        {
+            XMLParser parser = new XMLParser();
+            long count;
+
+            try (Stream<Element> records = parser.stream(file.getPath(), "record").stream())
+            {
+                count = records.count();
+            }
+
+            assertEquals(file.getName(), 4, count);
+            assertTrue(parser.getExceptionList().isEmpty());
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML;
+
+import java.io.UnsupportedEncodingException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author Neithan
+ */
+public class XMLRowTemplateTest
+{
+    @Test
+    public void testAttributesInTemplateOrder() throws UnsupportedEncodingException
+    {
+        XMLRowTemplate<String[]> template = XMLRowTemplate.ofArrays("row", new String[] {"z", "a", "m"}, "text");
+        XMLWriter writer = new XMLWriter("rows");
+
+        int count = writer.addRows(template, Arrays.asList(
+            new String[] {"1", "2", "3", "x"},
+            new String[] {null, "5", null, null},
+            new String[] {"7", null, "9", "y"}
+        ));
+
+        String xml = writer.writeToOutputStream().toString("UTF-8");
+
+        assertEquals(3, count);
+        assertTrue(xml, xml.contains("<row a=\"2\" m=\"3\" z=\"1\"><text>x</text></row>"));
+        assertTrue(xml, xml.contains("<row a=\"5\"><text/></row>"));
+        assertTrue(xml, xml.contains("<row m=\"9\" z=\"7\"><text>y</text></row>"));
+    }
+
+    @Test
+    public void testBuilderValueAndChildren() throws UnsupportedEncodingException
+    {
+        XMLRowTemplate<Integer> template = XMLRowTemplate.<Integer>builder("number")
+            .attribute("odd", number -> number % 2 == 1 ? "yes" : null)
+            .value(String::valueOf)
+            .child("square", number -> String.valueOf(number * number))
+            .build();
+        XMLWriter writer = new XMLWriter("numbers");
+        writer.addRows(template, Arrays.asList(2, 3));
+
+        String xml = writer.writeToOutputStream().toString("UTF-8");
+
+        assertTrue(xml, xml.contains("<number>2<square>4</square></number>"));
+        assertTrue(xml, xml.contains("<number odd=\"yes\">3<square>9</square></number>"));
+    }
+
+    @Test
+    public void testSharedBetweenWriters() throws UnsupportedEncodingException
+    {
+        XMLRowTemplate<String[]> template = XMLRowTemplate.ofArrays("row", new String[] {"id"}, "text");
+        XMLWriter first = new XMLWriter("rows");
+        XMLWriter second = new XMLWriter("rows");
+
+        first.addRows(template, Arrays.asList(new String[][] {{"1", "a"}}));
+        second.addRows(template, Arrays.asList(new String[][] {{"2", "b"}}));
+        first.addRows(template, Arrays.asList(new String[][] {{"3", "c"}}));
+
+        String xml = first.writeToOutputStream().toString("UTF-8");
+
+        assertTrue(xml, xml.contains("<row id=\"1\"><text>a</text></row><row id=\"3\"><text>c</text></row>"));
+        assertTrue(second.writeToOutputStream().toString("UTF-8").contains("<row id=\"2\"><text>b</text></row>"));
+    }
+
+    /**
+     * Add rows with the template to a new writer, which is dropped afterwards.
+     *
+     * @param template The template.
+     *
+     * @return A weak reference to the document of the writer.
+     */
+    private static WeakReference<Document> addRowsToNewWriter(XMLRowTemplate<String[]> template)
+    {
+        XMLWriter writer = new XMLWriter("rows");
+        writer.addRows(template, Arrays.asList(new String[][] {{"1", "a"}}));
+
+        return new WeakReference<>(writer.addChild("last").getOwnerDocument());
+    }
+
+    @Test
+    public void testTemplateKeepsNoDocument() throws InterruptedException
+    {
+        XMLRowTemplate<String[]> template = XMLRowTemplate.ofArrays("row", new String[] {"id"}, "text");
+        WeakReference<Document> document = XMLRowTemplateTest.addRowsToNewWriter(template);
+
+        for (int i = 0; i < 50 && document.get() != null; i++)
+        {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertNull(document.get());
+    }
+
+    @Test
+    public void testSharedBetweenThreads() throws Exception
+    {
+        XMLRowTemplate<Integer> template = XMLRowTemplate.<Integer>builder("number")
+            .attribute("value", String::valueOf)
+            .child("square", number -> String.valueOf(number * number))
+            .build();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        ArrayList<Future<String>> results = new ArrayList<>();
+
+        try
+        {
+            for (int i = 0; i < 200; i++)
+            {
+                int number = i;
+
+                results.add(executor.submit(() -> {
+                    XMLWriter writer = new XMLWriter("numbers");
+                    XMLWriter other = new XMLWriter("numbers");
+
+                    for (int j = 0; j < 20; j++)
+                    {
+                        writer.addRows(template, Arrays.asList(number));
+                        other.addRows(template, Arrays.asList(-1));
+                    }
+
+                    return writer.writeToOutputStream().toString("UTF-8");
+                }));
+            }
+
+            for (int i = 0; i < results.size(); i++)
+            {
+                String xml = results.get(i).get();
+                String row = "<number value=\"" + i + "\"><square>" + (i * i) + "</square></number>";
+
+                assertEquals(xml, 20, xml.split(row, -1).length - 1);
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+}
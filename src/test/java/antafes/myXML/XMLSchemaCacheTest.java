@@ -0,0 +1,118 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+
+package antafes.myXML;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xml.sax.SAXException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author Neithan
+ */
+public class XMLSchemaCacheTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void tearDown()
+    {
+        XMLSchemaCache.invalidateAll();
+    }
+
+    /**
+     * Write the schema file with the given item type.
+     *
+     * @param file The file.
+     * @param type The type of the items.
+     *
+     * @throws IOException
+     */
+    private static void writeSchema(File file, String type) throws IOException
+    {
+        long previous = file.lastModified();
+        Files.write(file.toPath(), XMLValidatorTest.SCHEMA.replace("xs:int", type).getBytes(StandardCharsets.UTF_8));
+
+        // Make sure the change is visible even on file systems with a coarse
+        // modification time.
+        if (previous != 0)
+        {
+            file.setLastModified(previous + 2000);
+        }
+    }
+
+    @Test
+    public void testCacheHit() throws IOException, SAXException
+    {
+        File file = this.folder.newFile("list.xsd");
+        XMLSchemaCacheTest.writeSchema(file, "xs:int");
+
+        assertSame(XMLSchemaCache.getSchema(file), XMLSchemaCache.getSchema(file));
+    }
+
+    @Test
+    public void testChangedFileIsCompiledAgain() throws IOException, SAXException
+    {
+        File file = this.folder.newFile("list.xsd");
+        XMLSchemaCacheTest.writeSchema(file, "xs:int");
+        Object before = XMLSchemaCache.getSchema(file);
+
+        assertTrue(new XMLValidator(file).validate(XMLValidatorTest.stream("<list><item>1</item></list>")));
+
+        XMLSchemaCacheTest.writeSchema(file, "xs:date");
+
+        assertNotSame(before, XMLSchemaCache.getSchema(file));
+        assertFalse(new XMLValidator(file).validate(XMLValidatorTest.stream("<list><item>1</item></list>")));
+        assertTrue(new XMLValidator(file).validate(XMLValidatorTest.stream("<list><item>2020-01-01</item></list>")));
+
+        XMLParser parser = new XMLParser(file);
+        assertFalse(parser.parse(XMLValidatorTest.stream("<list><item>1</item></list>")));
+    }
+
+    @Test
+    public void testSameSizeChange() throws IOException, SAXException
+    {
+        File file = this.folder.newFile("list.xsd");
+        XMLSchemaCacheTest.writeSchema(file, "xs:int");
+
+        assertTrue(new XMLValidator(file).validate(XMLValidatorTest.stream("<list><item>1</item></list>")));
+
+        XMLSchemaCacheTest.writeSchema(file, "xs:ID");
+
+        assertFalse(new XMLValidator(file).validate(XMLValidatorTest.stream("<list><item>1</item></list>")));
+    }
+}
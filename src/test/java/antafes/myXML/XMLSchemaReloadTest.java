@@ -0,0 +1,191 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+
+package antafes.myXML;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Reloading the schema of a validator, by hand and by watching the file.
+ *
+ * @author Neithan
+ */
+public class XMLSchemaReloadTest
+{
+    private static final String NUMBER = "<list><item>1</item></list>";
+    private static final long TIMEOUT = 10000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private File schema;
+    private XMLValidator validator;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.schema = this.folder.newFile("list.xsd");
+        this.writeSchema("xs:int");
+        this.validator = new XMLValidator(this.schema);
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.validator.stopWatching();
+        XMLSchemaCache.invalidateAll();
+    }
+
+    /**
+     * Write the schema file with the given item type.
+     *
+     * @param type The type of the items.
+     *
+     * @throws IOException
+     */
+    private void writeSchema(String type) throws IOException
+    {
+        this.writeSchemaContent(XMLValidatorTest.SCHEMA.replace("xs:int", type));
+    }
+
+    /**
+     * Write the schema file with a modification time differing from the
+     * previous one.
+     *
+     * @param content The schema.
+     *
+     * @throws IOException
+     */
+    private void writeSchemaContent(String content) throws IOException
+    {
+        long previous = this.schema.lastModified();
+        Files.write(this.schema.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        this.schema.setLastModified(previous + 2000);
+    }
+
+    @Test
+    public void testReloadSchema() throws IOException
+    {
+        assertTrue(this.validator.validate(XMLValidatorTest.stream(NUMBER)));
+
+        this.writeSchema("xs:date");
+
+        assertTrue(this.validator.validate(XMLValidatorTest.stream(NUMBER)));
+        assertTrue(this.validator.reloadSchema());
+        assertNull(this.validator.getReloadException());
+        assertFalse(this.validator.validate(XMLValidatorTest.stream(NUMBER)));
+    }
+
+    @Test
+    public void testFailedReloadKeepsSchema() throws IOException
+    {
+        this.writeSchemaContent("<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\"><xs:element");
+
+        assertFalse(this.validator.reloadSchema());
+        assertNotNull(this.validator.getReloadException());
+        assertTrue(this.validator.validate(XMLValidatorTest.stream(NUMBER)));
+
+        this.writeSchema("xs:date");
+
+        assertTrue(this.validator.reloadSchema());
+        assertNull(this.validator.getReloadException());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReloadStreamSchema()
+    {
+        new XMLValidator(XMLValidatorTest.stream(XMLValidatorTest.SCHEMA)).reloadSchema();
+    }
+
+    @Test
+    public void testWatching() throws Exception
+    {
+        assertFalse(this.validator.isWatching());
+
+        this.validator.startWatching();
+        this.validator.startWatching();
+
+        assertTrue(this.validator.isWatching());
+
+        this.writeSchema("xs:date");
+        long end = System.currentTimeMillis() + TIMEOUT;
+
+        while (this.validator.validate(XMLValidatorTest.stream(NUMBER)) && System.currentTimeMillis() < end)
+        {
+            Thread.sleep(50);
+        }
+
+        assertFalse(this.validator.validate(XMLValidatorTest.stream(NUMBER)));
+
+        this.validator.stopWatching();
+
+        assertFalse(this.validator.isWatching());
+
+        // Give a running watcher time to pick the change up, which it must
+        // not do after it has been stopped.
+        this.writeSchema("xs:int");
+        Thread.sleep(1000);
+
+        assertFalse(this.validator.validate(XMLValidatorTest.stream(NUMBER)));
+    }
+
+    @Test
+    public void testEngineUsesReloadedSchema() throws IOException
+    {
+        XMLParserEngine engine = new XMLParserEngine(this.validator);
+
+        assertTrue(engine.parse(XMLValidatorTest.stream(NUMBER)).isSuccessful());
+
+        this.writeSchema("xs:date");
+        assertTrue(this.validator.reloadSchema());
+
+        assertFalse(engine.parse(XMLValidatorTest.stream(NUMBER)).isSuccessful());
+        assertTrue(engine.parse(XMLValidatorTest.stream("<list><item>2020-01-01</item></list>")).isSuccessful());
+    }
+
+    @Test
+    public void testParserUsesReloadedSchema() throws IOException
+    {
+        XMLParser parser = new XMLParser(this.schema);
+
+        assertTrue(parser.parse(XMLValidatorTest.stream(NUMBER)));
+
+        this.writeSchema("xs:date");
+        assertTrue(parser.getValidator().reloadSchema());
+
+        assertFalse(parser.parse(XMLValidatorTest.stream(NUMBER)));
+    }
+}
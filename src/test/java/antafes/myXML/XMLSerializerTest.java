@@ -0,0 +1,282 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+
+package antafes.myXML;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the output of the XMLSerializer with the output of the identity
+ * transformer for every output profile.
+ *
+ * @author Neithan
+ */
+public class XMLSerializerTest
+{
+    /**
+     * Parse the given xml into a document.
+     *
+     * @param xml The xml.
+     *
+     * @return The document.
+     *
+     * @throws Exception
+     */
+    private static Document parse(String xml) throws Exception
+    {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Check that the serializer writes the same bytes as the transformer for
+     * every output profile, or fails like it. The indentation of the
+     * transformer changed with Java 9, so INDENTED is only compared on newer
+     * versions.
+     *
+     * @param document The document.
+     *
+     * @throws Exception
+     */
+    private static void assertSameOutput(Document document) throws Exception
+    {
+        boolean java8 = System.getProperty("java.specification.version").startsWith("1.");
+
+        for (XMLOutputProfile profile : XMLOutputProfile.values())
+        {
+            if (java8 && profile == XMLOutputProfile.INDENTED)
+            {
+                continue;
+            }
+
+            assertEquals(profile.name(), XMLSerializerTest.transform(document, profile), XMLSerializerTest.serialize(document, profile));
+        }
+    }
+
+    /**
+     * Write the document with the transformer.
+     *
+     * @param document The document.
+     * @param profile  The output profile.
+     *
+     * @return The output or the message of the IOException which stopped it.
+     *
+     * @throws Exception
+     */
+    private static String transform(Document document, XMLOutputProfile profile) throws Exception
+    {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+        try
+        {
+            XMLTransformers.get(profile).transform(new DOMSource(document), new StreamResult(stream));
+        }
+        catch (TransformerException ex)
+        {
+            XMLTransformers.discard(profile);
+
+            for (Throwable cause = ex; cause != null; cause = cause.getCause())
+            {
+                if (cause instanceof IOException)
+                {
+                    return "IOException: " + cause.getMessage();
+                }
+            }
+
+            throw ex;
+        }
+
+        return stream.toString("UTF-8");
+    }
+
+    /**
+     * Write the document with the serializer.
+     *
+     * @param document The document.
+     * @param profile  The output profile.
+     *
+     * @return The output or the message of the IOException which stopped it.
+     *
+     * @throws Exception
+     */
+    private static String serialize(Document document, XMLOutputProfile profile) throws Exception
+    {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+        try
+        {
+            new XMLSerializer(profile).serialize(document, stream);
+        }
+        catch (IOException ex)
+        {
+            return "IOException: " + ex.getMessage();
+        }
+
+        return stream.toString("UTF-8");
+    }
+
+    @Test
+    public void testElements() throws Exception
+    {
+        XMLSerializerTest.assertSameOutput(XMLSerializerTest.parse("<root><a/><b x=\"1\" y=\"2\"><c>text</c><d></d></b></root>"));
+    }
+
+    @Test
+    public void testMixedContent() throws Exception
+    {
+        XMLSerializerTest.assertSameOutput(XMLSerializerTest.parse("<root>text<a>x</a>tail<b/>more<c>in<d/>side</c>\n\n  end\n</root>"));
+    }
+
+    @Test
+    public void testWhitespace() throws Exception
+    {
+        XMLSerializerTest.assertSameOutput(XMLSerializerTest.parse("<root>\n    <a>\n        <b>1</b>\n    </a>\n    <c>  </c>\n</root>"));
+    }
+
+    @Test
+    public void testPreservedSpace() throws Exception
+    {
+        XMLSerializerTest.assertSameOutput(XMLSerializerTest.parse("<root><a xml:space=\"preserve\"><b>1</b> <c/></a><d/></root>"));
+    }
+
+    @Test
+    public void testCommentsAndProcessingInstructions() throws Exception
+    {
+        Document document = XMLSerializerTest.parse("<!-- head --><root><!--one--><a/><?pi data?>text<!-- two --></root>");
+        document.getDocumentElement().appendChild(document.createComment("a--b-"));
+        document.getDocumentElement().appendChild(document.createProcessingInstruction("pi", "a?>b"));
+
+        XMLSerializerTest.assertSameOutput(document);
+    }
+
+    @Test
+    public void testCData() throws Exception
+    {
+        Document document = XMLSerializerTest.parse("<root><a><![CDATA[x<y>&z]]></a><b>text<![CDATA[data]]>more</b><c><![CDATA[]]></c></root>");
+        Element root = document.getDocumentElement();
+        root.appendChild(document.createCDATASection("split]]>here\nline 😀 ä"));
+        root.appendChild(document.createCDATASection("\u0001control"));
+        root.appendChild(document.createElement("after"));
+
+        XMLSerializerTest.assertSameOutput(document);
+    }
+
+    @Test
+    public void testEscaping() throws Exception
+    {
+        Document document = XMLSerializerTest.parse("<root/>");
+        Element root = document.getDocumentElement();
+        Element text = document.createElement("text");
+        text.setTextContent("a<b>&c\"d'e\t\r\n\u0001\u001F\u007F\u0080\u0085\u009F  ä€");
+        root.appendChild(text);
+
+        Element attribute = document.createElement("attribute");
+        attribute.setAttribute("value", "a<b>&c\"d'e\t\r\n\u0001\u007F\u0085 ä€");
+        root.appendChild(attribute);
+
+        XMLSerializerTest.assertSameOutput(document);
+    }
+
+    @Test
+    public void testSurrogates() throws Exception
+    {
+        Document document = XMLSerializerTest.parse("<root/>");
+        Element root = document.getDocumentElement();
+        Element text = document.createElement("text");
+        text.setTextContent("pair 😀 𝄞");
+        root.appendChild(text);
+
+        Element attribute = document.createElement("attribute");
+        attribute.setAttribute("value", "😀");
+        root.appendChild(attribute);
+
+        XMLSerializerTest.assertSameOutput(document);
+    }
+
+    @Test
+    public void testLoneSurrogates() throws Exception
+    {
+        String[] values = {"a\uDE00b", "a\uD83D", "a\uD83Db", "\uD83D\uD83D\uDE00"};
+
+        for (String value : values)
+        {
+            Document text = XMLSerializerTest.parse("<root/>");
+            text.getDocumentElement().appendChild(text.createElement("text")).setTextContent(value);
+            XMLSerializerTest.assertSameOutput(text);
+
+            Document attribute = XMLSerializerTest.parse("<root/>");
+            ((Element) attribute.getDocumentElement().appendChild(attribute.createElement("attribute"))).setAttribute("value", value);
+            XMLSerializerTest.assertSameOutput(attribute);
+
+            Document cdata = XMLSerializerTest.parse("<root/>");
+            cdata.getDocumentElement().appendChild(cdata.createCDATASection(value));
+            XMLSerializerTest.assertSameOutput(cdata);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testLoneSurrogateInComment() throws Exception
+    {
+        Document document = XMLSerializerTest.parse("<root/>");
+        document.getDocumentElement().appendChild(document.createComment("a\uD83Db"));
+
+        new XMLSerializer(XMLOutputProfile.COMPACT).serialize(document, new ByteArrayOutputStream());
+    }
+
+    @Test
+    public void testTopLevelNodes() throws Exception
+    {
+        XMLSerializerTest.assertSameOutput(XMLSerializerTest.parse("<!--1--><?pi data?><!--2--><root>t<a/></root><!--3--><?p?>"));
+        XMLSerializerTest.assertSameOutput(XMLSerializerTest.parse("<!DOCTYPE root><!--1--><root/>"));
+    }
+
+    @Test
+    public void testWriterOutput() throws IOException
+    {
+        XMLWriter writer = new XMLWriter("root");
+        writer.addChild("text", "value ä 😀");
+        writer.addChild(writer.addChild("parent"), "child", "value");
+
+        for (XMLOutputProfile profile : XMLOutputProfile.values())
+        {
+            String transformed = writer.writeToOutputStream(profile).toString("UTF-8");
+            writer.setDirectSerialization(true);
+            String serialized = writer.writeToOutputStream(profile).toString("UTF-8");
+            writer.setDirectSerialization(false);
+
+            assertEquals(profile.name(), transformed, serialized);
+        }
+    }
+}
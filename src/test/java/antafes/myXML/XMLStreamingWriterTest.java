@@ -0,0 +1,151 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author Neithan
+ */
+public class XMLStreamingWriterTest
+{
+    private static final String TEXT = "a<b>&c\"d'e \u0001\u001F\u007F\u0080\u0085\u009F ä€ 😀 \t\r\n]]>";
+    private static final String ATTRIBUTE = "x<y>&\"z' \t\r\n\u0001\u007F\u0085ä 😀";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSameOutputAsXMLWriter() throws UnsupportedEncodingException
+    {
+        HashMap<String, String> attributes = new HashMap<>();
+        attributes.put("value", ATTRIBUTE);
+
+        XMLWriter writer = new XMLWriter("root");
+        writer.addChild("text", TEXT);
+        writer.addChild("attribute", attributes);
+        writer.addChild(writer.addChild("parent"), "child", "value");
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+        try (XMLStreamingWriter streamingWriter = new XMLStreamingWriter("root", stream))
+        {
+            streamingWriter.addChild("text", TEXT);
+            streamingWriter.addChild("attribute", attributes);
+            streamingWriter.startElement("parent");
+            streamingWriter.addChild("child", "value");
+            streamingWriter.endElement();
+        }
+
+        assertEquals(writer.writeToOutputStream(XMLOutputProfile.INDENTED).toString("UTF-8"), stream.toString("UTF-8"));
+    }
+
+    @Test
+    public void testCompressedStream() throws IOException
+    {
+        for (XMLCompression compression : XMLCompression.values())
+        {
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+            try (XMLStreamingWriter streamingWriter = new XMLStreamingWriter("root", stream, 16, compression))
+            {
+                for (int i = 0; i < 1000; i++)
+                {
+                    streamingWriter.addChild("text", TEXT);
+                }
+            }
+
+            XMLWriter writer = new XMLWriter("root");
+
+            for (int i = 0; i < 1000; i++)
+            {
+                writer.addChild("text", TEXT);
+            }
+
+            writer.setCompression(compression);
+
+            assertEquals(compression.name(), decompress(writer.writeToOutputStream(XMLOutputProfile.INDENTED).toByteArray()), decompress(stream.toByteArray()));
+        }
+    }
+
+    @Test
+    public void testCompressedFile() throws IOException
+    {
+        File file = new File(this.folder.getRoot(), "sub/compressed.xml.gz");
+
+        try (XMLStreamingWriter streamingWriter = new XMLStreamingWriter("root", file, XMLCompression.GZIP))
+        {
+            streamingWriter.addChild("text", "a<b>&c ä 😀");
+        }
+
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        assertEquals(0x1F, bytes[0] & 0xFF);
+        assertEquals(0x8B, bytes[1] & 0xFF);
+
+        XMLParser parser = new XMLParser();
+        assertTrue(parser.parse(file));
+        assertEquals("a<b>&c ä 😀", parser.getDocument().getDocumentElement().getTextContent().trim());
+    }
+
+    /**
+     * Decompress the data, if it is compressed.
+     *
+     * @param data The data to decompress.
+     *
+     * @return The data as string.
+     *
+     * @throws IOException
+     */
+    private static String decompress(byte[] data) throws IOException
+    {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+
+        try (InputStream stream = XMLCompression.decompress(new ByteArrayInputStream(data)))
+        {
+            byte[] buffer = new byte[4096];
+            int length;
+
+            while ((length = stream.read(buffer)) > 0)
+            {
+                result.write(buffer, 0, length);
+            }
+        }
+
+        return result.toString("UTF-8");
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+
+package antafes.myXML;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author Neithan
+ */
+public class XMLTransformersTest
+{
+    /**
+     * Transform the document with the transformer of the given profile.
+     *
+     * @param document The document.
+     * @param profile  The output profile.
+     *
+     * @return The output.
+     *
+     * @throws TransformerException
+     */
+    private static String transform(Document document, XMLOutputProfile profile) throws TransformerException
+    {
+        StringWriter writer = new StringWriter();
+        XMLTransformers.get(profile).transform(new DOMSource(document), new StreamResult(writer));
+
+        return writer.toString();
+    }
+
+    /**
+     * Create a small document.
+     *
+     * @return The document.
+     */
+    private static Document createDocument()
+    {
+        XMLWriter writer = XMLWriterTest.createList("1", "2");
+
+        return writer.addChild("last").getOwnerDocument();
+    }
+
+    @Test
+    public void testTransformerIsReusedPerThread() throws Exception
+    {
+        for (XMLOutputProfile profile : XMLOutputProfile.values())
+        {
+            Transformer transformer = XMLTransformers.get(profile);
+
+            assertSame(transformer, XMLTransformers.get(profile));
+
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+
+            try
+            {
+                assertNotSame(transformer, executor.submit(() -> XMLTransformers.get(profile)).get());
+            }
+            finally
+            {
+                executor.shutdownNow();
+            }
+        }
+
+        assertNotSame(XMLTransformers.get(XMLOutputProfile.INDENTED), XMLTransformers.get(XMLOutputProfile.COMPACT));
+    }
+
+    @Test
+    public void testDiscard() throws Exception
+    {
+        Transformer transformer = XMLTransformers.get(XMLOutputProfile.COMPACT);
+        Transformer other = XMLTransformers.get(XMLOutputProfile.INDENTED);
+        XMLTransformers.discard(XMLOutputProfile.COMPACT);
+
+        assertNotSame(transformer, XMLTransformers.get(XMLOutputProfile.COMPACT));
+        assertSame(other, XMLTransformers.get(XMLOutputProfile.INDENTED));
+    }
+
+    @Test
+    public void testOutputProperties() throws Exception
+    {
+        Transformer indented = XMLTransformers.get(XMLOutputProfile.INDENTED);
+        Transformer compact = XMLTransformers.get(XMLOutputProfile.COMPACT);
+        Transformer noDeclaration = XMLTransformers.get(XMLOutputProfile.NO_DECLARATION);
+
+        assertEquals("yes", indented.getOutputProperty(OutputKeys.INDENT));
+        assertEquals("4", indented.getOutputProperty("{http://xml.apache.org/xslt}indent-amount"));
+        assertEquals("UTF-8", indented.getOutputProperty(OutputKeys.ENCODING));
+        assertEquals("no", indented.getOutputProperty(OutputKeys.OMIT_XML_DECLARATION));
+        assertEquals("no", compact.getOutputProperty(OutputKeys.INDENT));
+        assertEquals("UTF-8", compact.getOutputProperty(OutputKeys.ENCODING));
+        assertEquals("no", compact.getOutputProperty(OutputKeys.OMIT_XML_DECLARATION));
+        assertEquals("no", noDeclaration.getOutputProperty(OutputKeys.INDENT));
+        assertEquals("yes", noDeclaration.getOutputProperty(OutputKeys.OMIT_XML_DECLARATION));
+    }
+
+    @Test
+    public void testProfileOutput() throws Exception
+    {
+        Document document = XMLTransformersTest.createDocument();
+        String indented = XMLTransformersTest.transform(document, XMLOutputProfile.INDENTED);
+        String compact = XMLTransformersTest.transform(document, XMLOutputProfile.COMPACT);
+        String noDeclaration = XMLTransformersTest.transform(document, XMLOutputProfile.NO_DECLARATION);
+
+        assertTrue(indented, indented.startsWith("<?xml"));
+        assertTrue(indented, indented.contains("\n    <item>1</item>\n    <item>2</item>\n    <last/>\n</list>"));
+        assertTrue(compact, compact.startsWith("<?xml"));
+        assertTrue(compact, compact.endsWith("<list><item>1</item><item>2</item><last/></list>"));
+        assertEquals("<list><item>1</item><item>2</item><last/></list>", noDeclaration);
+    }
+
+    @Test
+    public void testReusedTransformerKeepsOutput() throws Exception
+    {
+        XMLWriter writer = XMLWriterTest.createList("1", "2");
+        Document document = writer.addChild("last").getOwnerDocument();
+
+        for (XMLOutputProfile profile : XMLOutputProfile.values())
+        {
+            String first = XMLTransformersTest.transform(document, profile);
+
+            assertEquals(profile.name(), first, XMLTransformersTest.transform(document, profile));
+            assertEquals(profile.name(), first, writer.writeToOutputStream(profile).toString("UTF-8"));
+        }
+    }
+
+    @Test
+    public void testFailedTransformationCanBeDiscarded() throws Exception
+    {
+        Transformer transformer = XMLTransformers.get(XMLOutputProfile.COMPACT);
+        boolean failed = false;
+
+        try
+        {
+            transformer.transform(new DOMSource(XMLTransformersTest.createDocument()), new StreamResult((Writer) null));
+        }
+        catch (TransformerException | RuntimeException e)
+        {
+            XMLTransformers.discard(XMLOutputProfile.COMPACT);
+            failed = true;
+        }
+
+        assertTrue(failed);
+        assertNotSame(transformer, XMLTransformers.get(XMLOutputProfile.COMPACT));
+        assertTrue(XMLTransformersTest.transform(XMLTransformersTest.createDocument(), XMLOutputProfile.COMPACT).endsWith("<last/></list>"));
+    }
+}
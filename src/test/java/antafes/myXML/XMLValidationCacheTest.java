@@ -0,0 +1,211 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author Neithan
+ */
+public class XMLValidationCacheTest
+{
+    private static final String MAIN = "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">"
+        + "<xs:include schemaLocation=\"types.xsd\"/>"
+        + "<xs:element name=\"value\" type=\"valueType\"/>"
+        + "</xs:schema>";
+    private static final String INT_TYPE = "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">"
+        + "<xs:simpleType name=\"valueType\"><xs:restriction base=\"xs:int\"/></xs:simpleType>"
+        + "</xs:schema>";
+    private static final String DATE_TYPE = "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">"
+        + "<xs:simpleType name=\"valueType\"><xs:restriction base=\"xs:date\"/></xs:simpleType>"
+        + "</xs:schema>";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Write the content into a file of the temporary folder.
+     *
+     * @param name    The file name.
+     * @param content The content.
+     *
+     * @return The file.
+     *
+     * @throws IOException
+     */
+    private File write(String name, String content) throws IOException
+    {
+        File file = new File(this.folder.getRoot(), name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+
+        return file;
+    }
+
+    @Test
+    public void testReloadAfterIncludeChanged() throws IOException
+    {
+        File schema = this.write("main.xsd", MAIN);
+        this.write("types.xsd", INT_TYPE);
+        File document = this.write("value.xml", "<value>1</value>");
+
+        XMLValidator validator = new XMLValidator(schema);
+        validator.setValidationCache(new XMLValidationCache(16));
+
+        assertTrue(validator.validate(document));
+        assertEquals(1, validator.getValidationCache().size());
+
+        this.write("types.xsd", DATE_TYPE);
+
+        assertTrue(validator.reloadSchema());
+        assertFalse(validator.validate(document));
+    }
+
+    @Test
+    public void testPersistedCacheAfterIncludeChanged() throws IOException
+    {
+        File schema = this.write("main.xsd", MAIN);
+        this.write("types.xsd", INT_TYPE);
+        File document = this.write("value.xml", "<value>1</value>");
+        File cacheFile = new File(this.folder.getRoot(), "cache");
+
+        XMLValidator validator = new XMLValidator(schema);
+        validator.setValidationCache(new XMLValidationCache(16, cacheFile));
+        assertTrue(validator.validate(document));
+        validator.getValidationCache().save();
+
+        this.write("types.xsd", DATE_TYPE);
+        XMLSchemaCache.invalidate(schema);
+
+        XMLValidator restarted = new XMLValidator(schema);
+        restarted.setValidationCache(new XMLValidationCache(16, cacheFile));
+
+        assertEquals(1, restarted.getValidationCache().size());
+        assertFalse(restarted.validate(document));
+    }
+
+    @Test
+    public void testCacheHit() throws IOException
+    {
+        File schema = this.write("main.xsd", MAIN);
+        this.write("types.xsd", INT_TYPE);
+        File document = this.write("value.xml", "<value>1</value>");
+        File invalid = this.write("invalid.xml", "<value>a</value>");
+
+        XMLValidator validator = new XMLValidator(schema);
+        validator.setValidationCache(new XMLValidationCache(16));
+
+        assertTrue(validator.validate(document));
+        assertTrue(validator.validate(document));
+        assertFalse(validator.validate(invalid));
+        assertEquals(1, validator.getValidationCache().size());
+    }
+
+    /**
+     * Get the cache key of the given content validated against the schema.
+     *
+     * @param content The document content.
+     * @param schema  The schema.
+     *
+     * @return The cache key.
+     *
+     * @throws Exception
+     */
+    private static String getKey(byte[] content, String schema) throws Exception
+    {
+        byte[] schemaContent = schema.getBytes(StandardCharsets.UTF_8);
+        MessageDigest digest = XMLValidationCache.newDigest();
+        digest.update(content);
+
+        return XMLValidationCache.getKey(digest, XMLSchemaCache.compile(XMLSchemaCache.hash(schemaContent), schemaContent).fingerprint);
+    }
+
+    @Test
+    public void testStreamLookup() throws Exception
+    {
+        byte[] invalid = "<list><item>a</item></list>".getBytes(StandardCharsets.UTF_8);
+        XMLValidator validator = new XMLValidator(XMLValidatorTest.stream(XMLValidatorTest.SCHEMA));
+        validator.setValidationCache(new XMLValidationCache(16));
+
+        assertTrue(validator.validate(XMLValidatorTest.stream("<list><item>1</item></list>")));
+        assertEquals(1, validator.getValidationCache().size());
+
+        // A cached key skips the validation.
+        validator.getValidationCache().add(XMLValidationCacheTest.getKey(invalid, XMLValidatorTest.SCHEMA));
+        assertTrue(validator.validate(XMLValidatorTest.stream("<list><item>a</item></list>")));
+    }
+
+    @Test
+    public void testLargeDocuments() throws Exception
+    {
+        File document = this.folder.newFile("large.xml");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(document.toPath(), StandardCharsets.UTF_8))
+        {
+            writer.write("<list>\n");
+
+            for (int i = 0; i < 1000000; i++)
+            {
+                writer.write("<item>" + i + "</item>\n");
+            }
+
+            writer.write("</list>\n");
+        }
+
+        assertTrue(document.length() > 8 << 20);
+
+        XMLValidator validator = new XMLValidator(XMLValidatorTest.stream(XMLValidatorTest.SCHEMA));
+        validator.setValidationCache(new XMLValidationCache(16));
+        String key = XMLValidationCacheTest.getKey(Files.readAllBytes(document.toPath()), XMLValidatorTest.SCHEMA);
+
+        try (InputStream stream = new FileInputStream(document))
+        {
+            assertTrue(validator.validate(stream));
+        }
+
+        assertEquals(1, validator.getValidationCache().size());
+        assertTrue(validator.getValidationCache().contains(key));
+
+        validator.getValidationCache().clear();
+
+        assertTrue(validator.validate(document));
+        assertEquals(1, validator.getValidationCache().size());
+        assertTrue(validator.getValidationCache().contains(key));
+        assertTrue(validator.validate(document));
+    }
+}
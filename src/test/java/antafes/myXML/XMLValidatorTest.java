@@ -0,0 +1,228 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author Neithan
+ */
+public class XMLValidatorTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    static final String SCHEMA = "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">"
+        + "<xs:element name=\"list\"><xs:complexType><xs:sequence>"
+        + "<xs:element name=\"item\" type=\"xs:int\" minOccurs=\"0\" maxOccurs=\"unbounded\"/>"
+        + "</xs:sequence></xs:complexType></xs:element>"
+        + "</xs:schema>";
+
+    static InputStream stream(String content)
+    {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testNullSchemaStream()
+    {
+        XMLValidator validator = new XMLValidator((InputStream) null);
+
+        assertNull(validator.getSchema());
+        assertEquals(1, validator.getExceptionList().size());
+        assertTrue(validator.getLastException() instanceof SAXException);
+        assertFalse(validator.validate(XMLValidatorTest.stream("<list/>")));
+    }
+
+    @Test
+    public void testValidateStream()
+    {
+        XMLValidator validator = new XMLValidator(XMLValidatorTest.stream(SCHEMA));
+
+        assertTrue(validator.validate(XMLValidatorTest.stream("<list><item>1</item></list>")));
+        assertFalse(validator.validate(XMLValidatorTest.stream("<list><item>a</item></list>")));
+    }
+
+    @Test
+    public void testMaxErrorsCountsPositions()
+    {
+        XMLValidator validator = new XMLValidator(XMLValidatorTest.stream(SCHEMA));
+        validator.setMaxErrors(2);
+
+        assertFalse(validator.validate(XMLValidatorTest.stream("<list>\n<item>a</item>\n<item>b</item>\n<item>c</item>\n</list>")));
+
+        HashSet<Integer> lines = new HashSet<>();
+
+        for (Exception exception : validator.getExceptionList())
+        {
+            lines.add(((SAXParseException) exception).getLineNumber());
+        }
+
+        assertEquals(2, lines.size());
+        assertTrue(lines.contains(2));
+        assertTrue(lines.contains(3));
+    }
+
+    @Test
+    public void testUnlimitedErrors()
+    {
+        XMLValidator validator = new XMLValidator(XMLValidatorTest.stream(SCHEMA));
+        validator.setMaxErrors(0);
+
+        assertFalse(validator.validate(XMLValidatorTest.stream("<list>\n<item>a</item>\n<item>b</item>\n<item>c</item>\n</list>")));
+        assertEquals(6, validator.getExceptionList().size());
+    }
+
+    @Test
+    public void testValidateAll() throws IOException
+    {
+        ArrayList<Path> paths = XMLParserEngineTest.writeBatch(this.folder, 20);
+        XMLValidator validator = new XMLValidator(XMLValidatorTest.stream(SCHEMA));
+        LinkedHashMap<Path, XMLValidationResult> results = validator.validateAll(paths, 4);
+
+        assertEquals(paths, new ArrayList<>(results.keySet()));
+
+        for (int i = 0; i < 20; i++)
+        {
+            assertTrue(results.get(paths.get(i)).isValid());
+            assertTrue(results.get(paths.get(i)).getExceptionList().isEmpty());
+            assertTrue(validator.validate(paths.get(i).toFile()));
+        }
+
+        assertFalse(results.get(paths.get(20)).isValid());
+        assertTrue(results.get(paths.get(20)).getLastException() instanceof SAXParseException);
+        assertFalse(results.get(paths.get(21)).isValid());
+        assertTrue(results.get(paths.get(21)).getLastException() instanceof SAXException);
+        assertFalse(results.get(paths.get(22)).isValid());
+        assertTrue(results.get(paths.get(22)).getLastException() instanceof IOException);
+        assertTrue(validator.getExceptionList().isEmpty());
+    }
+
+    @Test
+    public void testValidateAllMaxErrorsPerFile() throws IOException
+    {
+        ArrayList<Path> paths = new ArrayList<>();
+
+        for (int i = 0; i < 8; i++)
+        {
+            paths.add(XMLParserEngineTest.write(this.folder, "invalid" + i + ".xml", "<list>\n<item>a</item>\n<item>b</item>\n<item>c</item>\n</list>"));
+        }
+
+        XMLValidator validator = new XMLValidator(XMLValidatorTest.stream(SCHEMA));
+        AtomicInteger reported = new AtomicInteger();
+        validator.setErrorHandler(new ErrorHandler()
+        {
+            @Override
+            public void warning(SAXParseException exception)
+            {
+                reported.incrementAndGet();
+            }
+
+            @Override
+            public void error(SAXParseException exception)
+            {
+                reported.incrementAndGet();
+            }
+
+            @Override
+            public void fatalError(SAXParseException exception)
+            {
+                reported.incrementAndGet();
+            }
+        });
+        validator.setMaxErrors(2);
+
+        int errors = 0;
+
+        for (XMLValidationResult result : validator.validateAll(paths, 3).values())
+        {
+            HashSet<Integer> lines = new HashSet<>();
+
+            for (Exception exception : result.getExceptionList())
+            {
+                if (exception instanceof SAXParseException)
+                {
+                    lines.add(((SAXParseException) exception).getLineNumber());
+                    errors++;
+                }
+            }
+
+            assertFalse(result.isValid());
+            assertEquals(2, lines.size());
+        }
+
+        assertEquals(errors, reported.get());
+        assertTrue(validator.getExceptionList().isEmpty());
+    }
+
+    @Test
+    public void testValidateAllWithoutSchema() throws IOException
+    {
+        ArrayList<Path> paths = XMLParserEngineTest.writeBatch(this.folder, 2);
+        XMLValidator validator = new XMLValidator((InputStream) null);
+        LinkedHashMap<Path, XMLValidationResult> results = validator.validateAll(paths, 2);
+
+        assertEquals(paths, new ArrayList<>(results.keySet()));
+
+        for (XMLValidationResult result : results.values())
+        {
+            assertFalse(result.isValid());
+            assertTrue(result.getLastException() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testValidateAllEmpty()
+    {
+        XMLValidator validator = new XMLValidator(XMLValidatorTest.stream(SCHEMA));
+
+        assertTrue(validator.validateAll(new ArrayList<>(), 4).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValidateAllInvalidParallelism()
+    {
+        new XMLValidator(XMLValidatorTest.stream(SCHEMA)).validateAll(new ArrayList<>(), 0);
+    }
+}
@@ -0,0 +1,347 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+
+package antafes.myXML;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ *
+ * @author Neithan
+ */
+public class XMLWriterDeliveryTest
+{
+    private static final String TEXT = "a<b>&c=d+e%f ä€ 😀";
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private String url;
+    private volatile String contentType;
+    private volatile String contentEncoding;
+    private volatile String query;
+    private volatile byte[] body;
+    private volatile boolean deliveryThread;
+    private volatile int status = 200;
+    private volatile long delay;
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/", exchange -> {
+            this.contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            this.contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            this.query = exchange.getRequestURI().getRawQuery();
+            this.deliveryThread = Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(thread -> thread.getName().startsWith("XMLWriter delivery"));
+            this.maxRunning.accumulateAndGet(this.running.incrementAndGet(), Math::max);
+
+            try
+            {
+                Thread.sleep(this.delay);
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+            finally
+            {
+                this.running.decrementAndGet();
+            }
+
+            try (InputStream stream = exchange.getRequestBody())
+            {
+                this.body = read(stream);
+            }
+
+            byte[] response = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(this.status, response.length);
+
+            try (OutputStream stream = exchange.getResponseBody())
+            {
+                stream.write(response);
+            }
+        });
+        this.serverExecutor = Executors.newCachedThreadPool();
+        this.server.setExecutor(this.serverExecutor);
+        this.server.start();
+        this.url = "http://127.0.0.1:" + this.server.getAddress().getPort() + "/xml";
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.server.stop(0);
+        this.serverExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testDeliveryModes() throws IOException
+    {
+        HashMap<String, Object> params = new HashMap<>();
+        params.put("key", "a&b=c ä");
+
+        for (XMLDeliveryMode mode : XMLDeliveryMode.values())
+        {
+            XMLWriter writer = createWriter();
+            writer.setDeliveryMode(mode);
+
+            assertResponse(writer.writeToURL(this.url, params));
+            assertTrue(writer.getExceptionList().isEmpty());
+            assertEquals(mode.name(), mode.getContentType(), this.contentType);
+
+            String content = new String(this.body, StandardCharsets.UTF_8);
+
+            if (mode == XMLDeliveryMode.RAW)
+            {
+                assertEquals(serialize(writer), content);
+                assertEquals("a&b=c ä", parseForm(this.query).get("key"));
+            }
+            else
+            {
+                LinkedHashMap<String, String> fields = parseForm(content);
+                assertEquals(mode.name(), 2, fields.size());
+                assertEquals(mode.name(), "a&b=c ä", fields.get("key"));
+                assertEquals(mode.name(), serialize(writer), fields.get("message"));
+                assertNull(this.query);
+            }
+        }
+    }
+
+    @Test
+    public void testAsyncDelivery() throws Exception
+    {
+        for (XMLDeliveryMode mode : XMLDeliveryMode.values())
+        {
+            XMLWriter writer = createWriter();
+            writer.setDeliveryMode(mode);
+
+            assertResponse(writer.writeToURLAsync(this.url).get(10, TimeUnit.SECONDS));
+            assertTrue(mode.name(), this.deliveryThread);
+
+            String content = new String(this.body, StandardCharsets.UTF_8);
+            assertEquals(mode.name(), serialize(writer), mode == XMLDeliveryMode.RAW ? content : parseForm(content).get("message"));
+        }
+    }
+
+    @Test
+    public void testAsyncDeliveryIsBounded() throws Exception
+    {
+        this.delay = 100;
+        ArrayList<CompletableFuture<InputStream>> futures = new ArrayList<>();
+
+        for (int i = 0; i < 4 * XMLWriter.MAX_DELIVERY_THREADS; i++)
+        {
+            futures.add(createWriter().writeToURLAsync(this.url));
+        }
+
+        for (CompletableFuture<InputStream> future : futures)
+        {
+            assertResponse(future.get(30, TimeUnit.SECONDS));
+        }
+
+        assertTrue(String.valueOf(this.maxRunning.get()), this.maxRunning.get() <= XMLWriter.MAX_DELIVERY_THREADS);
+        assertTrue(String.valueOf(this.maxRunning.get()), this.maxRunning.get() > 1);
+    }
+
+    @Test
+    public void testFailedDelivery() throws Exception
+    {
+        this.status = 500;
+
+        for (XMLDeliveryMode mode : XMLDeliveryMode.values())
+        {
+            XMLWriter writer = createWriter();
+            writer.setDeliveryMode(mode);
+
+            assertNull(writer.writeToURL(this.url));
+            assertEquals(mode.name(), 1, writer.getExceptionList().size());
+            assertTrue(mode.name(), writer.getExceptionList().get(0) instanceof IOException);
+
+            try
+            {
+                writer.writeToURLAsync(this.url).get(10, TimeUnit.SECONDS);
+                fail(mode.name());
+            }
+            catch (ExecutionException ex)
+            {
+                assertTrue(mode.name(), ex.getCause() instanceof IOException);
+            }
+        }
+    }
+
+    @Test
+    public void testCompressedDelivery() throws IOException
+    {
+        HashMap<String, Object> params = new HashMap<>();
+        params.put("key", "value");
+
+        for (XMLDeliveryMode mode : XMLDeliveryMode.values())
+        {
+            for (XMLCompression compression : XMLCompression.values())
+            {
+                XMLWriter writer = createWriter();
+                writer.setDeliveryMode(mode);
+                writer.setCompression(compression);
+
+                assertResponse(writer.writeToURL(this.url, params));
+                assertEquals(mode + " " + compression, compression.getContentEncoding(), this.contentEncoding);
+
+                String content = new String(read(XMLCompression.decompress(new ByteArrayInputStream(this.body))), StandardCharsets.UTF_8);
+                String document = mode == XMLDeliveryMode.RAW ? content : parseForm(content).get("message");
+                String key = mode == XMLDeliveryMode.RAW ? parseForm(this.query).get("key") : parseForm(content).get("key");
+
+                assertEquals(mode + " " + compression, "value", key);
+
+                assertEquals(mode + " " + compression, serialize(writer), document);
+            }
+        }
+    }
+
+    /**
+     * Create a writer with a small document.
+     *
+     * @return The writer.
+     */
+    static XMLWriter createWriter()
+    {
+        XMLWriter writer = new XMLWriter("root");
+        writer.addChild("text", TEXT);
+        writer.addChild(writer.addChild("parent"), "child", "value");
+
+        return writer;
+    }
+
+    /**
+     * Write the document of the writer uncompressed.
+     *
+     * @param writer The writer.
+     *
+     * @return The compact document.
+     *
+     * @throws IOException
+     */
+    static String serialize(XMLWriter writer) throws IOException
+    {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+        try (OutputStreamWriter streamWriter = new OutputStreamWriter(stream, StandardCharsets.UTF_8))
+        {
+            writer.write(streamWriter, XMLOutputProfile.COMPACT);
+        }
+
+        return stream.toString("UTF-8");
+    }
+
+    /**
+     * Check that the response of the server has been returned.
+     *
+     * @param response The response stream.
+     *
+     * @throws IOException
+     */
+    static void assertResponse(InputStream response) throws IOException
+    {
+        assertNotNull(response);
+
+        try (InputStream stream = response)
+        {
+            assertEquals("ok", new String(read(stream), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Decode the fields of an url encoded form.
+     *
+     * @param form The form.
+     *
+     * @return The fields in order.
+     *
+     * @throws IOException
+     */
+    static LinkedHashMap<String, String> parseForm(String form) throws IOException
+    {
+        LinkedHashMap<String, String> fields = new LinkedHashMap<>();
+
+        for (String field : form.split("&"))
+        {
+            int separator = field.indexOf('=');
+            assertTrue(field, separator > 0);
+            fields.put(URLDecoder.decode(field.substring(0, separator), "UTF-8"), URLDecoder.decode(field.substring(separator + 1), "UTF-8"));
+        }
+
+        return fields;
+    }
+
+    /**
+     * Read the stream completely.
+     *
+     * @param stream The stream to read.
+     *
+     * @return The bytes read.
+     *
+     * @throws IOException
+     */
+    static byte[] read(InputStream stream) throws IOException
+    {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int length;
+
+        while ((length = stream.read(buffer)) > 0)
+        {
+            result.write(buffer, 0, length);
+        }
+
+        return result.toByteArray();
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * This file is part of MyXML_v8.
+ *
+ * MyXML_v8 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MyXML_v8 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with MyXML_v8. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * @package MyXML_v8
+ * @author Marian Pollzien <map@wafriv.de>
+ * @copyright (c) 2019, Marian Pollzien
+ * @license https://www.gnu.org/licenses/lgpl.html LGPLv3
+ */
+
+
+package antafes.myXML;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ *
+ * @author Neithan
+ */
+public class XMLWriterTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Create a writer with a list of the given items.
+     *
+     * @param items The item values.
+     *
+     * @return The writer.
+     */
+    static XMLWriter createList(String... items)
+    {
+        XMLWriter writer = new XMLWriter("list");
+
+        for (String item : items)
+        {
+            writer.addChild("item", item);
+        }
+
+        return writer;
+    }
+
+    /**
+     * Write a list with the given items to the file.
+     *
+     * @param file   The file.
+     * @param atomic Whether to write atomically.
+     * @param sync   Whether to sync the file.
+     * @param items  The item values.
+     *
+     * @return The written content.
+     *
+     * @throws IOException
+     */
+    private static String write(File file, boolean atomic, boolean sync, String... items) throws IOException
+    {
+        XMLWriter writer = XMLWriterTest.createList(items);
+        writer.setAtomicWrite(atomic);
+        writer.setSyncOnWrite(sync);
+        writer.write(file);
+
+        assertTrue(writer.getExceptionList().isEmpty());
+
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get the permissions of the file.
+     *
+     * @param path The file.
+     *
+     * @return The permissions.
+     *
+     * @throws IOException
+     */
+    private static Set<PosixFilePermission> permissions(Path path) throws IOException
+    {
+        return Files.getFileAttributeView(path, PosixFileAttributeView.class).readAttributes().permissions();
+    }
+
+    @Test
+    public void testAtomicWrite() throws IOException
+    {
+        File file = new File(this.folder.getRoot(), "list.xml");
+
+        assertTrue(XMLWriterTest.write(file, true, false, "1").contains("<item>1</item>"));
+
+        String content = XMLWriterTest.write(file, true, false, "2", "3");
+
+        assertTrue(content, content.contains("<item>2</item>"));
+        assertTrue(content, !content.contains("<item>1</item>"));
+        assertEquals(1, this.folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testSyncedWrite() throws IOException
+    {
+        File plain = new File(this.folder.getRoot(), "sub/plain.xml");
+        File atomic = new File(this.folder.getRoot(), "sub/atomic.xml");
+
+        assertTrue(XMLWriterTest.write(plain, false, true, "1").contains("<item>1</item>"));
+        assertTrue(XMLWriterTest.write(atomic, true, true, "1").contains("<item>1</item>"));
+        assertTrue(XMLWriterTest.write(atomic, true, true, "2").contains("<item>2</item>"));
+        assertEquals(2, plain.getParentFile().list().length);
+    }
+
+    @Test
+    public void testAtomicWriteKeepsPermissions() throws IOException
+    {
+        File file = new File(this.folder.getRoot(), "list.xml");
+        assumeTrue(Files.getFileAttributeView(this.folder.getRoot().toPath(), PosixFileAttributeView.class) != null);
+
+        XMLWriterTest.write(file, false, false, "1");
+
+        for (String permissions : new String[] {"rw-r-----", "rw-rw-rw-", "r--r--r--"})
+        {
+            Set<PosixFilePermission> expected = PosixFilePermissions.fromString(permissions);
+            Files.setPosixFilePermissions(file.toPath(), expected);
+            Object owner = Files.getOwner(file.toPath());
+
+            String content = XMLWriterTest.write(file, true, false, permissions);
+
+            assertTrue(content, content.contains("<item>" + permissions + "</item>"));
+            assertEquals(expected, XMLWriterTest.permissions(file.toPath()));
+            assertEquals(owner, Files.getOwner(file.toPath()));
+        }
+    }
+
+    @Test
+    public void testAtomicWriteOfNewFile() throws IOException
+    {
+        File file = new File(this.folder.getRoot(), "list.xml");
+        assumeTrue(Files.getFileAttributeView(this.folder.getRoot().toPath(), PosixFileAttributeView.class) != null);
+
+        Path plain = Files.createFile(this.folder.getRoot().toPath().resolve("plain.xml"));
+        XMLWriterTest.write(file, true, false, "1");
+
+        assertEquals(XMLWriterTest.permissions(plain), XMLWriterTest.permissions(file.toPath()));
+    }
+
+    @Test
+    public void testValidateBeforeWriting()
+    {
+        XMLValidator validator = new XMLValidator(XMLValidatorTest.stream(XMLValidatorTest.SCHEMA));
+        XMLWriter valid = XMLWriterTest.createList("1", "2");
+        XMLWriter invalid = XMLWriterTest.createList("1", "a");
+        valid.setValidator(validator);
+        invalid.setValidator(validator);
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        valid.write(stream, XMLOutputProfile.COMPACT);
+        assertTrue(stream.size() > 0);
+        assertTrue(valid.getExceptionList().isEmpty());
+
+        stream.reset();
+        invalid.write(stream, XMLOutputProfile.COMPACT);
+        assertEquals(0, stream.size());
+        assertEquals(1, invalid.getExceptionList().size());
+        assertTrue(validator.getExceptionList().isEmpty());
+    }
+
+    @Test
+    public void testSharedValidator() throws Exception
+    {
+        XMLValidator validator = new XMLValidator(XMLValidatorTest.stream(XMLValidatorTest.SCHEMA));
+        validator.setMaxErrors(0);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        ArrayList<Future<Boolean>> results = new ArrayList<>();
+
+        try
+        {
+            for (int i = 0; i < 400; i++)
+            {
+                boolean expected = i % 2 == 0;
+
+                results.add(executor.submit(() -> {
+                    String[] items = new String[200];
+
+                    for (int j = 0; j < items.length; j++)
+                    {
+                        items[j] = expected || j % 50 != 0 ? String.valueOf(j) : "x";
+                    }
+
+                    XMLWriter writer = XMLWriterTest.createList(items);
+                    writer.setValidator(validator);
+                    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+                    writer.write(stream, XMLOutputProfile.COMPACT);
+
+                    return expected == writer.getExceptionList().isEmpty()
+                        && (expected || writer.getExceptionList().size() == 8)
+                        && expected == stream.size() > 0;
+                }));
+            }
+
+            for (Future<Boolean> result : results)
+            {
+                assertTrue(result.get());
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        assertTrue(validator.getExceptionList().isEmpty());
+    }
+}